@@ -0,0 +1,74 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+//@author A0105667B
+/**
+ *
+ * This class replaces the content of a file without ever leaving it half written.
+ * The new content is written to a temporary file and synced to disk, then the
+ * current file is kept as the previous version and the temporary file is renamed
+ * to the file. A reader finding the file missing or damaged can fall back to the
+ * previous version.
+ *
+ */
+class AtomicFile {
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String PREVIOUS_SUFFIX = ".prev";
+
+	/**
+	 * Replace the content of the file with the given data
+	 * @param file    file to be written
+	 * @param data    new content of the file
+	 * @throws IOException
+	 */
+	static void write(File file, byte[] data) throws IOException {
+		File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+		FileOutputStream output = new FileOutputStream(tempFile);
+		try {
+			output.write(data);
+			output.flush();
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+		if (file.exists()) {
+			move(file, getPreviousFile(file));
+		}
+		move(tempFile, file);
+	}
+
+	/**
+	 * @return the file holding the content the given file had before its last write
+	 */
+	static File getPreviousFile(File file) {
+		return new File(file.getPath() + PREVIOUS_SUFFIX);
+	}
+
+	/**
+	 * @return whether the file or its previous version exists
+	 */
+	static boolean exists(File file) {
+		return file.exists() || getPreviousFile(file).exists();
+	}
+
+	/**
+	 * Delete the file together with its previous version
+	 */
+	static void delete(File file) {
+		file.delete();
+		getPreviousFile(file).delete();
+	}
+
+	private static void move(File source, File target) throws IOException {
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException amnse) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -2,8 +2,10 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.List;
 
 
 import com.google.gdata.util.AuthenticationException;
@@ -219,6 +221,8 @@ abstract class TwoWayCommand extends Command {
 	public abstract String undo();
 	// Abstract function redoing command to be implemented in extended classes
 	public abstract String redo();
+	// Abstract function returning the tasks modified by the command to be implemented in extended classes
+	public abstract List<Task> getChangedTasks();
 	
 	//@author A0105667B
 	/**
@@ -395,8 +399,7 @@ class AddCommand extends TwoWayCommand {
 		createdTask = new Task();
 		updateTask();
 		// Add the task to the pending list
-		model.addTaskToPending(createdTask);
-		Common.sortList(model.getPendingList());
+		model.insertTask(createdTask, Common.PENDING_TAB);
 		return Common.MESSAGE_SUCCESSFUL_ADD;
 	}
 	
@@ -454,12 +457,12 @@ class AddCommand extends TwoWayCommand {
 			cur.setMonth(endDate.getMonth());
 			cur.setDate(endDate.getDate());
 			createdTask.setStartDate(cur);
+			updateTimeForEndDate(cur, endDate);
 			createdTask.setEndDate(endDate);
-			updateTimeForEndDate(createdTask.getStartDate(), endDate);
 		} else {
 			createdTask.setStartDate(cur);
+			updateTimeForEndDate(cur, endDate);
 			createdTask.setEndDate(endDate);
-			updateTimeForEndDate(createdTask.getStartDate(), endDate);
 		}
 	}
 	
@@ -505,13 +508,16 @@ class AddCommand extends TwoWayCommand {
 	 * Redo the ADD command
 	 */
 	public String redo(){
-		model.addTaskToPending(createdTask);
 		createdTask.setStatus(Task.Status.NEWLY_ADDED);
-		Common.sortList(model.getPendingList());
+		model.insertTask(createdTask, Common.PENDING_TAB);
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
 	
 	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(createdTask);
+	}
+	
 	/**
 	 * This function is used to split the recurring info from the command From
 	 * this function, we can determine the number of occurrences and type of
@@ -540,9 +546,9 @@ class AddCommand extends TwoWayCommand {
 	 */
 	private void setTag(){
 		if (tag.equals(Common.NULL) || tag.equals(Common.HASH_TAG)) {
-				createdTask.setTag(new Tag(Common.HYPHEN, repeatingType));
+				createdTask.setTag(Tag.valueOf(Common.HYPHEN, repeatingType));
 		} else {
-				createdTask.setTag(new Tag(tag, repeatingType));
+				createdTask.setTag(Tag.valueOf(tag, repeatingType));
 		}
 	}
 }
@@ -614,7 +620,7 @@ class EditCommand extends TwoWayCommand {
 		processEditing();
 		setTargetTask();
 		editedTask.updateLatestModifiedDate();
-		Common.sortList(modifiedList);
+		Common.repositionTask(modifiedList, editedTask);
 		return Common.MESSAGE_SUCCESSFUL_EDIT;
 	}
 	
@@ -706,12 +712,12 @@ class EditCommand extends TwoWayCommand {
 			cur.setMonth(endDate.getMonth());
 			cur.setDate(endDate.getDate());
 			editedTask.setStartDate(cur);
+			updateTimeForEndDate(cur, endDate);
 			editedTask.setEndDate(endDate);
-			updateTimeForEndDate(editedTask.getStartDate(), endDate);
 		} else {
 			editedTask.setStartDate(cur);
+			updateTimeForEndDate(cur, endDate);
 			editedTask.setEndDate(endDate);
-			updateTimeForEndDate(editedTask.getStartDate(), endDate);
 		}
 	}
 	
@@ -798,13 +804,12 @@ class EditCommand extends TwoWayCommand {
 	 * This function is used to modify the tag for the editedTask
 	 */
 	private void setTag() {
-		if (!tag.equals(Common.NULL)) {
-			editedTask.setTag(new Tag(tag, repeatingType));
-			if (tag.equals(Common.HASH_TAG)) {
-				editedTask.getTag().setTag(Common.HYPHEN);
-			}
+		if (tag.equals(Common.HASH_TAG)) {
+			editedTask.setTag(Tag.valueOf(Common.HYPHEN, repeatingType));
+		} else if (!tag.equals(Common.NULL)) {
+			editedTask.setTag(Tag.valueOf(tag, repeatingType));
 		} else {
-			editedTask.setTag(new Tag(editedTask.getTag().getTag(), repeatingType));
+			editedTask.setTag(Tag.valueOf(editedTask.getTag().getTag(), repeatingType));
 		}
 	}
 	
@@ -882,7 +887,7 @@ class EditCommand extends TwoWayCommand {
 		editedTask.setLatestModifiedDate(originalTask.getLatestModifiedDate());
 		editedTask.setOccurrence(originalTask.getNumOccurrences(), originalTask.getCurrentOccurrence());
 		editedTask.updateLatestModifiedDate();
-		Common.sortList(modifiedList);
+		Common.repositionTask(modifiedList, editedTask);
 
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
@@ -903,10 +908,15 @@ class EditCommand extends TwoWayCommand {
 		editedTask.setLatestModifiedDate(targetTask.getLatestModifiedDate());
 		editedTask.setOccurrence(targetTask.getNumOccurrences(), targetTask.getCurrentOccurrence());
 		editedTask.updateLatestModifiedDate();
-		Common.sortList(modifiedList);
+		Common.repositionTask(modifiedList, editedTask);
 		
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
+	
+	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(editedTask);
+	}
 }
 
 /*****************************Subclass of IndexCommand************************************************/
@@ -918,6 +928,8 @@ class EditCommand extends TwoWayCommand {
 class RemoveCommand extends IndexCommand {
 	// List of removed tasks
 	private ArrayList<Task> removedTaskInfo;
+	// List of tasks involved in the command, kept after undo
+	private Task[] involvedTasks;
 	
 	/**
 	 * Constructor of this class
@@ -946,7 +958,7 @@ class RemoveCommand extends IndexCommand {
 		Arrays.sort(indexList);
 		checkValidIndexes();
 		processRemove();
-		sortInvolvedLists();
+		involvedTasks = removedTaskInfo.toArray(new Task[removedTaskInfo.size()]);
 		return Common.MESSAGE_SUCCESSFUL_REMOVE;
 	}
 	
@@ -956,24 +968,12 @@ class RemoveCommand extends IndexCommand {
 	private void processRemove(){
 		for (int i = indexCount - 1; i >= 0; i--) {
 			int removedIndex = convertIndex(indexList[i] - 1);
-			Task removedTask = modifiedList.get(removedIndex);
-			removedTaskInfo.add(removedTask);
-			model.removeTask(removedIndex, tabIndex);
-			modifyStatus(removedTask);
+			removedTaskInfo.add(modifiedList.get(removedIndex));
 		}
-	}
-	
-	/**
-	 * This function sort all lists involved in the removing process
-	 */
-	private void sortInvolvedLists(){
-		if (isPendingTab()) {
-			Common.sortList(model.getPendingList());
-		} else if (isCompleteTab()) {
-			Common.sortList(model.getCompleteList());
+		model.removeTasks(removedTaskInfo, tabIndex);
+		for (Task removedTask : removedTaskInfo) {
+			modifyStatus(removedTask);
 		}
-		
-		Common.sortList(model.getTrashList());
 	}
 	
 	//@author A0100927M
@@ -981,25 +981,19 @@ class RemoveCommand extends IndexCommand {
 	 * Undo the REMOVE command
 	 */
 	public String undo() {
-		for (int i = 0; i < removedTaskInfo.size(); i++) {
-			Task removedTask = removedTaskInfo.get(i);
+		for (Task removedTask : removedTaskInfo) {
 			reverseStatus(removedTask);
-			modifiedList.add(removedTask);
-			removeTaskFromTrash(i);
+		}
+		if (isPendingTab() || isCompleteTab()) {
+			model.moveTasks(removedTaskInfo, Common.TRASH_TAB, tabIndex);
+		} else {
+			model.insertTasks(removedTaskInfo, tabIndex);
 		}
 		
 		removedTaskInfo.clear();
-		Common.sortList(modifiedList);
 
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
-
-	private void removeTaskFromTrash(int i) {
-		if (isPendingTab() || isCompleteTab()) {
-			int index = model.getIndexFromTrash(removedTaskInfo.get(i));
-			model.removeTask(index, Common.TRASH_TAB);
-		}
-	}
 	
 	//@author A0098077N
 	/**
@@ -1007,11 +1001,17 @@ class RemoveCommand extends IndexCommand {
 	 */
 	public String redo(){
 		processRemove();
-		sortInvolvedLists();
+		involvedTasks = removedTaskInfo.toArray(new Task[removedTaskInfo.size()]);
 
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
 	
+	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(involvedTasks);
+	}
+	
+	//@author A0098077N
 	/**
 	 * This function is used to modify the status of a task when the a certain
 	 * command is working on it
@@ -1119,19 +1119,18 @@ class ClearAllCommand extends IndexCommand {
 	 */
 	private void processClear(){
 		clearedTasks = new Task[modifiedList.size()];
+		List<Task> removedTasks = new ArrayList<Task>();
 		for (int i = modifiedList.size() - 1; i >= 0; i--) {
+			Task removedTask = getModifiedList(tabIndex).get(convertIndex(i));
 			if (isPendingTab()) {
-				clearedTasks[i] = model.getTaskFromPending(convertIndex(i));
+				clearedTasks[i] = removedTask;
 				modifyStatus(clearedTasks[i]);
 			} else if (isCompleteTab()) {
-				clearedTasks[i] = model.getTaskFromComplete(convertIndex(i));
+				clearedTasks[i] = removedTask;
 			}
-			model.removeTask(convertIndex(i), tabIndex);
-		}
-		
-		if (isPendingTab() || isCompleteTab()) {
-			Common.sortList(model.getTrashList());
+			removedTasks.add(removedTask);
 		}
+		model.removeTasks(removedTasks, tabIndex);
 	}
 	
 	/**
@@ -1145,7 +1144,6 @@ class ClearAllCommand extends IndexCommand {
 		}
 		
 		resetTasksInTrash();
-		Common.sortList(model.getTrashList());
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
 
@@ -1153,20 +1151,14 @@ class ClearAllCommand extends IndexCommand {
 	 * This function resets the list of tasks in trash tab back to its original state
 	 */
 	private void resetTasksInTrash() {
-		model.getTrashList().clear();
-		for (int i = 0; i < originalTrashTasks.length; i++) {
-			model.addTaskToTrash(originalTrashTasks[i]);
-		}
+		model.setTasks(Arrays.asList(originalTrashTasks), Common.TRASH_TAB);
 	}
 	
 	/**
 	 * This function recover cleared tasks for complete tab
 	 */
 	private void recoverTasksForCompleteTab() {
-		for (int i = 0; i < clearedTasks.length; i++) {
-			model.addTaskToComplete(clearedTasks[i]);
-		}
-		Common.sortList(model.getCompleteList());
+		model.insertTasks(Arrays.asList(clearedTasks), Common.COMPLETE_TAB);
 	}
 	
 	/**
@@ -1174,10 +1166,9 @@ class ClearAllCommand extends IndexCommand {
 	 */
 	private void recoverTasksForPendingTab() {
 		for (int i = 0; i < clearedTasks.length; i++) {
-			model.addTaskToPending(clearedTasks[i]);
 			reverseStatus(clearedTasks[i]);
 		}
-		Common.sortList(model.getPendingList());
+		model.insertTasks(Arrays.asList(clearedTasks), Common.PENDING_TAB);
 	}
 	
 	//@author A0098077N
@@ -1189,6 +1180,21 @@ class ClearAllCommand extends IndexCommand {
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
 	
+	//@author A0105667B
+	/**
+	 * The changed tasks are the cleared tasks and all tasks originally in trash
+	 */
+	public List<Task> getChangedTasks() {
+		List<Task> changedTasks = new ArrayList<Task>(Arrays.asList(originalTrashTasks));
+		for (int i = 0; i < clearedTasks.length; i++) {
+			if (clearedTasks[i] != null) {
+				changedTasks.add(clearedTasks[i]);
+			}
+		}
+		return changedTasks;
+	}
+	
+	//@author A0098077N
 	/**
 	 * This function is used to modify the status of a task when the a certain
 	 * command is working on it
@@ -1291,18 +1297,8 @@ class CompleteCommand extends IndexCommand {
 			Task toComplete = model.getTaskFromPending(completeIndex);
 			toCompleteTasks[i] = toComplete;
 			modifyStatus(toComplete);
-			model.completeTaskFromPending(completeIndex);
 		}
-		sortInvolvedLists();
-	}
-	
-	//@author A0098077N
-	/**
-	 * Sort the 2 lists which are involved in this process
-	 */
-	private void sortInvolvedLists() {
-		Common.sortList(model.getPendingList());
-		Common.sortList(model.getCompleteList());
+		model.completeTasksFromPending(Arrays.asList(toCompleteTasks));
 	}
 	
 	//@author A0100927M
@@ -1331,13 +1327,13 @@ class CompleteCommand extends IndexCommand {
 	 * Undo COMPLETE command
 	 */
 	public String undo() {
+		List<Task> toPendingTasks = new ArrayList<Task>();
 		for (int i = indexCount - 1; i >= 0; i--) {
 			Task toPending = model.getTaskFromComplete(indexInCompleteList[i]);
 			reverseStatus(toPending);
-			model.removeTaskFromCompleteNoTrash(indexInCompleteList[i]);
-			model.addTaskToPending(toPending);
+			toPendingTasks.add(toPending);
 		}
-		sortInvolvedLists();
+		model.moveTasks(toPendingTasks, Common.COMPLETE_TAB, Common.PENDING_TAB);
 
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
@@ -1353,6 +1349,12 @@ class CompleteCommand extends IndexCommand {
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
 	
+	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(toCompleteTasks);
+	}
+	
+	//@author A0098077N
 	/**
 	 * This function is used to modify the status of a task when the a certain
 	 * command is working on it
@@ -1457,19 +1459,8 @@ class IncompleteCommand extends IndexCommand {
 			Task toPending = model.getTaskFromComplete(incompleteIndex);
 			modifyStatus(toPending);
 			toIncompleteTasks[i] = toPending;
-			model.getCompleteList().remove(incompleteIndex);
-			model.addTaskToPending(toPending);
 		}
-		sortInvolvedLists();
-	}
-	
-	//@author A0098077N
-	/**
-	 * This function is used to sort the involved lists in the process
-	 */
-	private void sortInvolvedLists() {
-		Common.sortList(model.getPendingList());
-		Common.sortList(model.getCompleteList());
+		model.moveTasks(Arrays.asList(toIncompleteTasks), Common.COMPLETE_TAB, Common.PENDING_TAB);
 	}
 	
 	//@author A0100927M
@@ -1503,10 +1494,8 @@ class IncompleteCommand extends IndexCommand {
 			Task toComplete = model.getTaskFromPending(indexInIncompleteList[i]);
 			reverseStatus(toComplete);
 			toIncompleteTasks[i] = toComplete;
-			model.getPendingList().remove(indexInIncompleteList[i]);
-			model.addTaskToComplete(toComplete);
 		}
-		sortInvolvedLists();
+		model.moveTasks(Arrays.asList(toIncompleteTasks), Common.PENDING_TAB, Common.COMPLETE_TAB);
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
 	
@@ -1521,6 +1510,12 @@ class IncompleteCommand extends IndexCommand {
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
 	
+	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(toIncompleteTasks);
+	}
+	
+	//@author A0098077N
 	/**
 	 * This function is used to modify the status of a task when the a certain
 	 * command is working on it
@@ -1624,18 +1619,8 @@ class RecoverCommand extends IndexCommand {
 			Task toPending = model.getTaskFromTrash(recoverIndex);
 			modifyStatus(toPending);
 			toRecoverTasks[i] = toPending;
-			model.getTrashList().remove(recoverIndex);
-			model.addTaskToPending(toPending);
 		}
-		sortInvolvedLists();
-	}
-	
-	/**
-	 * This function is used to sort involved lists in the process
-	 */
-	private void sortInvolvedLists() {
-		Common.sortList(model.getPendingList());
-		Common.sortList(model.getTrashList());
+		model.moveTasks(Arrays.asList(toRecoverTasks), Common.TRASH_TAB, Common.PENDING_TAB);
 	}
 	
 	/**
@@ -1666,10 +1651,8 @@ class RecoverCommand extends IndexCommand {
 			Task toTrash = model.getTaskFromPending(indexInPendingList[i]);
 			reverseStatus(toTrash);
 			toRecoverTasks[i] = toTrash;
-			model.getPendingList().remove(indexInPendingList[i]);
-			model.addTaskToTrash(toTrash);
 		}
-		sortInvolvedLists();
+		model.moveTasks(Arrays.asList(toRecoverTasks), Common.PENDING_TAB, Common.TRASH_TAB);
 
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
@@ -1684,6 +1667,12 @@ class RecoverCommand extends IndexCommand {
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
 	
+	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(toRecoverTasks);
+	}
+	
+	//@author A0098077N
 	/**
 	 * This function is used to modify the status of a task when the a certain
 	 * command is working on it
@@ -1738,6 +1727,8 @@ class RecoverCommand extends IndexCommand {
  * 
  */
 class MarkCommand extends IndexCommand {
+	// List of tasks to be marked
+	private Task[] markedTasks;
 	
 	/**
 	 * Constructor of this class
@@ -1763,11 +1754,13 @@ class MarkCommand extends IndexCommand {
 	public String execute() {
 		Arrays.sort(indexList);
 		checkValidIndexes();
+		markedTasks = new Task[indexCount];
 		for (int i = 0; i < indexCount; i++) {
 			int markIndex = convertIndex(indexList[i] - 1);
 			Task targetTask = modifiedList.get(markIndex);
 			targetTask.setIsImportant(true);
 			targetTask.updateLatestModifiedDate();
+			markedTasks[i] = targetTask;
 		}
 
 		return Common.MESSAGE_SUCCESSFUL_MARK;
@@ -1782,6 +1775,7 @@ class MarkCommand extends IndexCommand {
 			Task targetTask = modifiedList.get(unmarkIndex);
 			targetTask.setIsImportant(false);
 			targetTask.updateLatestModifiedDate();
+			markedTasks[i] = targetTask;
 		}
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
@@ -1796,10 +1790,16 @@ class MarkCommand extends IndexCommand {
 			Task targetTask = modifiedList.get(markIndex);
 			targetTask.setIsImportant(true);
 			targetTask.updateLatestModifiedDate();
+			markedTasks[i] = targetTask;
 		}
 
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
+	
+	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(markedTasks);
+	}
 }
 
 //@author A0100927M
@@ -1809,6 +1809,9 @@ class MarkCommand extends IndexCommand {
  * 
  */
 class UnmarkCommand extends IndexCommand {
+	// List of tasks to be unmarked
+	private Task[] unmarkedTasks;
+	
 	/**
 	 * Constructor of this class
 	 * 
@@ -1833,11 +1836,13 @@ class UnmarkCommand extends IndexCommand {
 	public String execute() {
 		Arrays.sort(indexList);
 		checkValidIndexes();
+		unmarkedTasks = new Task[indexCount];
 		for (int i = 0; i < indexCount; i++) {
 			int unmarkIndex = convertIndex(indexList[i] - 1);
 			Task targetTask = modifiedList.get(unmarkIndex);
 			targetTask.setIsImportant(false);
 			targetTask.updateLatestModifiedDate();
+			unmarkedTasks[i] = targetTask;
 		}
 
 		return Common.MESSAGE_SUCCESSFUL_UNMARK;
@@ -1852,6 +1857,7 @@ class UnmarkCommand extends IndexCommand {
 			Task targetTask = modifiedList.get(markIndex);
 			targetTask.setIsImportant(true);
 			targetTask.updateLatestModifiedDate();
+			unmarkedTasks[i] = targetTask;
 		}
 		return Common.MESSAGE_SUCCESSFUL_UNDO;
 	}
@@ -1866,10 +1872,16 @@ class UnmarkCommand extends IndexCommand {
 			Task targetTask = modifiedList.get(unmarkIndex);
 			targetTask.setIsImportant(false);
 			targetTask.updateLatestModifiedDate();
+			unmarkedTasks[i] = targetTask;
 		}
 
 		return Common.MESSAGE_SUCCESSFUL_REDO;
 	}
+	
+	//@author A0105667B
+	public List<Task> getChangedTasks() {
+		return Arrays.asList(unmarkedTasks);
+	}
 }
 
 //@author A0098077N
@@ -1906,6 +1918,10 @@ class SearchCommand extends Command {
 	private boolean isFirstTimeSearch;
 	// Indicator if this is currently under real time search
 	private boolean isRealTimeSearch;
+	// Indicator if the initial list is the results of the previous search
+	private boolean isRefinedSearch;
+	// Changes to the list of the tab and to the work info and tags of its tasks when the search was made
+	private int listChanges;
 	
 	/**
 	 * 
@@ -1915,7 +1931,34 @@ class SearchCommand extends Command {
 	 * @param isRealTimeSearch
 	 */
 	public SearchCommand(String[] parsedUserCommand, Model model, View view, boolean isRealTimeSearch) {
-		super(model, view.getTabIndex());
+		this(parsedUserCommand, model, view, isRealTimeSearch, null);
+	}
+	
+	//@author A0105667B
+	/**
+	 * Constructor of a search which only looks through the results of the
+	 * previous real time search when its requested infos narrow down the
+	 * previous ones
+	 * 
+	 * @param parsedUserCommand
+	 * @param model
+	 * @param view
+	 * @param isRealTimeSearch
+	 * @param previousSearch
+	 *            the previous real time search, or null if there is none
+	 */
+	public SearchCommand(String[] parsedUserCommand, Model model, View view, boolean isRealTimeSearch,
+			SearchCommand previousSearch) {
+		this(parsedUserCommand, model, view, view.getTabIndex(), isRealTimeSearch, previousSearch);
+	}
+	
+	/**
+	 * Constructor of a search in the given tab, the view being only used to
+	 * show the results when the search is executed
+	 */
+	SearchCommand(String[] parsedUserCommand, Model model, View view, int tabIndex, boolean isRealTimeSearch,
+			SearchCommand previousSearch) {
+		super(model, tabIndex);
 		assert parsedUserCommand != null;
 		this.view = view;
 		this.isRealTimeSearch = isRealTimeSearch;
@@ -1928,12 +1971,109 @@ class SearchCommand extends Command {
 		repeatingType = parsedUserCommand[5];
 		splitRepeatingInfo();
 		
+		model.loadList(tabIndex);
 		initialList = getModifiedList(tabIndex);
+		listChanges = model.getListChanges(tabIndex);
+		if (isRealTimeSearch && isRefinementOf(previousSearch)) {
+			initialList = previousSearch.searchList;
+			isRefinedSearch = true;
+		} else if (!isRealTimeSearch && !isPendingTab()) {
+			initialList = addArchivedTasks(initialList);
+		}
 		searchList = FXCollections.observableArrayList();
 		
 		isFirstTimeSearch = true;
 	}
 	
+	/**
+	 * Check whether every task found by this search is among the results of
+	 * the previous real time search, which is when each requested info
+	 * contains the previous one or the previous one was not requested, and
+	 * nothing changed in the lists since the previous search. An end date
+	 * without a date takes the date of the start date, so the start date
+	 * cannot be added to it. A previous search without any requested info
+	 * has no results.
+	 * 
+	 * @param previousSearch
+	 *            the previous real time search
+	 * @return true if the search only needs to look through the previous results
+	 */
+	private boolean isRefinementOf(SearchCommand previousSearch) {
+		if (previousSearch == null || !previousSearch.isRealTimeSearch || previousSearch.isFirstTimeSearch) {
+			return false;
+		}
+		boolean isUnchanged = previousSearch.tabIndex == tabIndex
+				&& previousSearch.listChanges == listChanges;
+		return isUnchanged && containsInfo(workInfo, previousSearch.workInfo)
+				&& containsInfo(tag, previousSearch.tag)
+				&& hasSameInfo(startDateString, previousSearch.startDateString)
+				&& hasSameInfo(endDateString, previousSearch.endDateString)
+				&& (previousSearch.endDateString.equals(Common.NULL)
+						|| startDateString.equals(previousSearch.startDateString))
+				&& (!previousSearch.isImpt.equals(Common.TRUE) || isImpt.equals(Common.TRUE))
+				&& hasSameInfo(repeatingType, previousSearch.repeatingType)
+				&& (previousSearch.numOccurrences == 0 || numOccurrences == previousSearch.numOccurrences);
+	}
+	
+	// The work info and tag are matched by containing them, ignoring case
+	private static boolean containsInfo(String info, String previousInfo) {
+		return previousInfo.equals(Common.NULL)
+				|| (!info.equals(Common.NULL) && info.toLowerCase().contains(previousInfo.toLowerCase()));
+	}
+	
+	// The dates and repetition are matched by their whole value
+	private static boolean hasSameInfo(String info, String previousInfo) {
+		return previousInfo.equals(Common.NULL) || info.equals(previousInfo);
+	}
+	
+	ObservableList<Task> getSearchListForTest() {
+		return searchList;
+	}
+	
+	boolean isRefinedSearchForTest() {
+		return isRefinedSearch;
+	}
+	
+	//@author A0105667B
+	/**
+	 * This function is used to add the archived tasks of the current tab to
+	 * the searched tasks. They are not in any list, so commands refering to
+	 * them by their index in the search results are rejected, their index in
+	 * list being invalid. The archived tasks are not copied: each one is only
+	 * created read-only when the search reads it, and only the matching ones
+	 * are kept in the results. The storage is asked for the archived tasks
+	 * which may have the requested tag and end date, so that it can leave out
+	 * the others without reading them.
+	 * 
+	 * @param list
+	 *            the list of the current tab
+	 * @return the list followed by its archived tasks
+	 */
+	private ObservableList<Task> addArchivedTasks(final ObservableList<Task> list) {
+		String searchedTag = tag.equals(Common.NULL) ? null : tag;
+		CustomDate searchedEndDate = endDateString.equals(Common.NULL) ? null : getSearchedEndDate();
+		final List<Task> archivedTasks = model.getArchivedTasks(tabIndex, searchedTag, searchedEndDate);
+		if (archivedTasks.isEmpty()) {
+			return list;
+		}
+		return FXCollections.observableList(new AbstractList<Task>() {
+			@Override
+			public Task get(int index) {
+				if (index < list.size()) {
+					return list.get(index);
+				}
+				return archivedTasks.get(index - list.size());
+			}
+			
+			@Override
+			public int size() {
+				return list.size() + archivedTasks.size();
+			}
+		});
+	}
+	
+	//@author A0098077N
+	
 	/**
 	 * Execute the SEARCH command
 	 */
@@ -2015,13 +2155,10 @@ class SearchCommand extends Command {
 	// Process searching for end date
 	private void processEndDate() {
 		if (!endDateString.equals(Common.NULL)) {
-			endDate = new CustomDate(endDateString);
-			if (startDate != null && endDate.hasIndicatedDate() == false) {
-				endDate.setYear(startDate.getYear());
-				endDate.setMonth(startDate.getMonth());
-				endDate.setDate(startDate.getDate());
-			}
-			if (isFirstTimeSearch) {
+			endDate = getSearchedEndDate();
+			if (isFirstTimeSearch && !isRefinedSearch) {
+				searchList = searchEndDateOfTab(endDate);
+			} else if (isFirstTimeSearch) {
 				searchList = searchEndDate(initialList, endDate);
 			} else {
 				searchList = searchEndDate(searchList, endDate);
@@ -2082,8 +2219,10 @@ class SearchCommand extends Command {
 	// Process searching for task info
 	private void processWorkInfo(){
 		if (!workInfo.equals(Common.NULL)) {
-			if (isFirstTimeSearch) {
+			if (isFirstTimeSearch && isRefinedSearch) {
 				searchList = searchWorkInfo(initialList, workInfo);
+			} else if (isFirstTimeSearch) {
+				searchList = searchWorkInfoOfTab(workInfo);
 			} else {
 				searchList = searchWorkInfo(searchList, workInfo);
 			}
@@ -2284,7 +2423,7 @@ class SearchCommand extends Command {
 	 * @return the result list
 	 */
 	private static ObservableList<Task> searchWorkInfo(
-			ObservableList<Task> list, String workInfo) {
+			List<Task> list, String workInfo) {
 		ObservableList<Task> result = FXCollections.observableArrayList();
 		for (int i = 0; i < list.size(); i++) {
 			String searchedWorkInfo = list.get(i).getWorkInfo().toLowerCase();
@@ -2295,6 +2434,93 @@ class SearchCommand extends Command {
 		}
 		return result;
 	}
+	
+	//@author A0105667B
+	/**
+	 * This function is used to return the results of the tasks of the current
+	 * tab containing requested work info. Only the tasks having the words of
+	 * the work info in the index of the tab are checked, followed by the
+	 * archived tasks searched with it.
+	 * 
+	 * @param workInfo
+	 *            the requested work info
+	 * @return the result list
+	 */
+	private ObservableList<Task> searchWorkInfoOfTab(String workInfo) {
+		List<Task> candidates = model.getTasksWithWords(workInfo, tabIndex);
+		if (candidates == null) {
+			return searchWorkInfo(initialList, workInfo);
+		}
+		ObservableList<Task> result = searchWorkInfo(candidates, workInfo);
+		int numTabTasks = getModifiedList(tabIndex).size();
+		if (initialList.size() > numTabTasks) {
+			result.addAll(searchWorkInfo(initialList.subList(numTabTasks, initialList.size()), workInfo));
+		}
+		return result;
+	}
+	
+	/**
+	 * This function is used to return the results of the tasks of the current
+	 * tab ending by the requested date. The list of the tab is sorted by end
+	 * date, the tasks without one being last, so these tasks are those before
+	 * the first one ending after the date, which is found by binary search.
+	 * The archived tasks searched with the list are checked one by one.
+	 * 
+	 * @param date
+	 *            the requested date
+	 * @return the result list
+	 */
+	private ObservableList<Task> searchEndDateOfTab(CustomDate date) {
+		updateDateForEndDate(date);
+		boolean hasIndicatedTime = date.getHour() != 23 && date.getMinute() != 59;
+		List<Task> tabList = getModifiedList(tabIndex);
+		int low = 0;
+		int high = tabList.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (isEndedBy(tabList.get(middle), date, hasIndicatedTime)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		ObservableList<Task> result = FXCollections.observableArrayList(tabList.subList(0, low));
+		for (int i = tabList.size(); i < initialList.size(); i++) {
+			if (isEndedBy(initialList.get(i), date, hasIndicatedTime)) {
+				result.add(initialList.get(i));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * This function is used to get the requested end date, which takes the
+	 * date of the requested start date if it has no date of its own
+	 * 
+	 * @return the requested end date
+	 */
+	private CustomDate getSearchedEndDate() {
+		CustomDate date = new CustomDate(endDateString);
+		if (!startDateString.equals(Common.NULL) && date.hasIndicatedDate() == false) {
+			CustomDate searchedStartDate = new CustomDate(startDateString);
+			date.setYear(searchedStartDate.getYear());
+			date.setMonth(searchedStartDate.getMonth());
+			date.setDate(searchedStartDate.getDate());
+		}
+		return date;
+	}
+	
+	// Check the end date of a task as searchEndDate() does, by its date or its time
+	private static boolean isEndedBy(Task task, CustomDate date, boolean hasIndicatedTime) {
+		CustomDate endDate = task.getEndDate();
+		if (endDate == null) {
+			return false;
+		} else if (hasIndicatedTime) {
+			return CustomDate.compare(endDate, date) <= 0;
+		} else {
+			return CustomDate.dateCompare(endDate, date) <= 0;
+		}
+	}
 }
 
 //@author A0098077N
@@ -2477,8 +2703,10 @@ class SyncCommand extends Command implements Runnable {
 		}
 	}
 	
-	// Begin the syncing phase
+	// Begin the syncing phase, the lists it goes through being loaded first
 	private void startSyncing() {
+		model.loadList(Common.COMPLETE_TAB);
+		model.loadList(Common.TRASH_TAB);
 		syncingThread = new Thread(this, "Sync Thread");
 		syncingThread.start();
 	}
@@ -1,4 +1,10 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 import javafx.collections.ObservableList;
 import javafx.scene.input.KeyCode;
@@ -11,13 +17,13 @@ public class Common {
 	//@author A0105667B
 	/***********************************Command Types **************************************************/
 	static enum COMMAND_TYPES {
-		ADD, REMOVE, RECOVER, SEARCH, EDIT, COMPLETE, INCOMPLETE, UNDO, REDO, CLEAR_ALL, TODAY, SHOW_ALL, SYNC, SETTINGS, HELP, EXIT, INVALID, MARK, UNMARK
+		ADD, REMOVE, RECOVER, SEARCH, EDIT, COMPLETE, INCOMPLETE, UNDO, REDO, CLEAR_ALL, TODAY, SHOW_ALL, SYNC, SETTINGS, HELP, EXIT, INVALID, MARK, UNMARK, IMPORT, EXPORT
 	}
 	
 	static String[] COMMAND_TYPES_STR = { "add", "insert", "remove", "delete", "edit", "set",
 		"modify", "search", "find", "clear", "mark", "highlight", "unmark", "unhightlight", "complete",
 		"incomplete", "all", "list", "today", "help", "del", "exit", "end", "rm",
-		"show", "display", "ls", "clr", "done", "undone", "settings", "sync", "recover", "rec" };
+		"show", "display", "ls", "clr", "done", "undone", "settings", "sync", "recover", "rec", "import", "export" };
 	
 	/***********************************Start Date and End date key**************************************/
 	static String[] startDateKeys = { "start from", "start at",
@@ -51,6 +57,8 @@ public class Common {
 	static final String MESSAGE_SUCCESSFUL_UNDO = "Undo was successful.";
 	static final String MESSAGE_SUCCESSFUL_HELP = "Help window opened.";
 	static final String MESSAGE_SUCCESSFUL_SETTINGS = "Settings window opened.";
+	static final String MESSAGE_SUCCESSFUL_IMPORT = "%1$s task(s) has/have been imported.";
+	static final String MESSAGE_SUCCESSFUL_EXPORT = "%1$s task(s) has/have been exported to %2$s.";
 	//Failure message
 	static final String MESSAGE_INVALID_START_END_DATES = "There must be both start and end dates for repetitive task.";
 	static final String MESSAGE_INVALID_TIME_REPETITIVE = "The difference is larger than the limit of repetitive period.";
@@ -64,6 +72,8 @@ public class Common {
 	static final String MESSAGE_SYNC_INVALID_USERNAME_PASSWORD = "Synchronization failed: Invalid username and password.";
 	static final String MESSAGE_SYNC_SERVICE_STOPPED = "Synchronization service has stopped working.";
 	static final String MESSAGE_SYNC_FAIL_TO_CREATE_CALENDAR = "Fail to create a calendar.";
+	static final String MESSAGE_NO_TRANSFER_FILE = "Please indicate a .csv or .ics file.";
+	static final String MESSAGE_RESTORED_FILES = "%1$s was/were damaged, so recent changes may be lost.";
 	static final String NO_EDITING_INFO = "No infos for editing";
 	static final String INVALID_INDEX = "Invalid index";
 	static final String INVALID_RANGE_END_SMALLER = "Invalid range as end point is smaller than start point";
@@ -94,11 +104,14 @@ public class Common {
 	static final String MESSAGE_HELP_TIP = "Tip for HELP command";
 	static final String MESSAGE_SETTINGS_TIP = "Tip for SETTINGS command";
 	static final String MESSAGE_EXIT_TIP = "Tip for EXIT command";
+	static final String MESSAGE_IMPORT_TIP = "Tip for IMPORT command";
+	static final String MESSAGE_EXPORT_TIP = "Tip for EXPORT command";
 	static final String MESSAGE_REQUEST_COMMAND = "Please enter a command or type help to view commands.";	
 	// Restriction message from executing specific commands during process of synchronization
 	static final String MESSAGE_UNDO_RESTRICTION = "Cannot undo during process of synchronization";
 	static final String MESSAGE_REDO_RESTRICTION = "Cannot redo during process of synchronization";
 	static final String MESSAGE_EXIT_RESTRICTION = "Cannot exit during process of synchronization";
+	static final String MESSAGE_IMPORT_RESTRICTION = "Cannot import during process of synchronization";
 	// Display message in system tray
 	static final String POPUP_MESSAGE_START_DATE = "Task \"%1$s\" will begin after the next %2$s minutes";
 	static final String POPUP_MESSAGE_END_DATE = "Task \"%1$s\" will end after the next %2$s minutes";
@@ -152,6 +165,8 @@ public class Common {
 	static final int INDEX_INDEX_INFO = 6;
 	
 	static final int MINUTE_IN_MILLIS = 60000;
+	// Default minimum time between two writes of the task file
+	static final int STORE_INTERVAL_IN_MILLIS = 1000;
 	
 	/***********************************theme mode ************************************************/
 	static final String DAY_MODE = "Day mode";
@@ -167,15 +182,189 @@ public class Common {
 	}
 	
 	public static void updateIndexInList(ObservableList<Task> list) {
-		boolean hasLastOverdue = false;
+		Task lastOverdue = getLastOverdueTask(list);
 		for (int i = list.size() - 1; i >= 0; i--) {
 			list.get(i).setIndexInList(i);
-			list.get(i).setIsLastOverdue(false);
-			if (!hasLastOverdue && list.get(i).isOverdueTask()) {
-				list.get(i).setIsLastOverdue(true);
-				hasLastOverdue = true;
+			if (list.get(i) != lastOverdue && list.get(i).isLastOverdueTask()) {
+				list.get(i).setIsLastOverdue(false);
 			}
 		}
+		if (lastOverdue != null && !lastOverdue.isLastOverdueTask()) {
+			lastOverdue.setIsLastOverdue(true);
+		}
+	}
+	
+	/**
+	 * Move the overdue line of a sorted list as the time passes. The boundary of the overdue
+	 * tasks is found by binary search, and as tasks only become overdue over time, the task
+	 * holding the line before is searched for backwards from there, over the tasks which 
+	 * became overdue since the last update.
+	 */
+	public static void updateLastOverdueTask(List<Task> list) {
+		Task lastOverdue = getLastOverdueTask(list);
+		if (lastOverdue == null) {
+			return;
+		}
+		for (int i = getIndexInList(list, lastOverdue); i >= 0; i--) {
+			if (list.get(i).isLastOverdueTask()) {
+				if (list.get(i) != lastOverdue) {
+					list.get(i).setIsLastOverdue(false);
+					lastOverdue.setIsLastOverdue(true);
+				}
+				return;
+			}
+		}
+		lastOverdue.setIsLastOverdue(true);
+	}
+	
+	/**
+	 * Insert a task into a sorted list at the position found by binary search, after the
+	 * tasks equal to it as a full sort would. Only the indexes of the tasks shifted by the
+	 * insertion are updated.
+	 */
+	public static void insertTask(ObservableList<Task> list, Task task) {
+		Task lastOverdue = getLastOverdueTask(list);
+		int index = findInsertionIndex(list, task);
+		list.add(index, task);
+		updateIndexInList(list, index, list.size());
+		updateLastOverdueTask(list, lastOverdue, Arrays.asList(task));
+	}
+	
+	/**
+	 * Remove the task at the given index from a sorted list, updating only the indexes of
+	 * the tasks after it
+	 */
+	public static Task removeTask(ObservableList<Task> list, int index) {
+		Task lastOverdue = getLastOverdueTask(list);
+		Task removedTask = list.remove(index);
+		updateIndexInList(list, index, list.size());
+		updateLastOverdueTask(list, lastOverdue, Arrays.asList(removedTask));
+		return removedTask;
+	}
+	
+	/**
+	 * Move a task of a sorted list whose dates or work info were changed to its new position.
+	 * Only the indexes of the tasks between its old and new positions are updated.
+	 */
+	public static void repositionTask(ObservableList<Task> list, Task task) {
+		int oldIndex = getIndexInList(list, task);
+		if (oldIndex < 0) {
+			return;
+		}
+		list.remove(oldIndex);
+		Task lastOverdue = getLastOverdueTask(list);
+		int newIndex = findInsertionIndex(list, task);
+		list.add(newIndex, task);
+		updateIndexInList(list, Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex) + 1);
+		updateLastOverdueTask(list, lastOverdue, Arrays.asList(task));
+	}
+	
+	/**
+	 * Insert several tasks into a sorted list by merging them with it, so that the list 
+	 * changes once however many tasks are inserted
+	 */
+	public static void insertTasks(ObservableList<Task> list, Collection<Task> tasks) {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		Task lastOverdue = getLastOverdueTask(list);
+		List<Task> newTasks = new ArrayList<Task>(tasks);
+		Collections.sort(newTasks);
+		List<Task> mergedTasks = new ArrayList<Task>(list.size() + newTasks.size());
+		int listIndex = 0;
+		for (Task newTask : newTasks) {
+			while (listIndex < list.size() && list.get(listIndex).compareTo(newTask) <= 0) {
+				mergedTasks.add(list.get(listIndex++));
+			}
+			mergedTasks.add(newTask);
+		}
+		mergedTasks.addAll(list.subList(listIndex, list.size()));
+		int firstChangedIndex = findInsertionIndex(list, newTasks.get(0));
+		list.setAll(mergedTasks);
+		updateIndexInList(list, firstChangedIndex, list.size());
+		updateLastOverdueTask(list, lastOverdue, newTasks);
+	}
+	
+	/**
+	 * Remove several tasks from a sorted list with one change of the list
+	 */
+	public static void removeTasks(ObservableList<Task> list, Collection<Task> tasks) {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		Task lastOverdue = getLastOverdueTask(list);
+		Set<Task> removedTasks = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+		removedTasks.addAll(tasks);
+		int firstChangedIndex = list.size();
+		for (Task removedTask : removedTasks) {
+			firstChangedIndex = Math.min(firstChangedIndex, getIndexInList(list, removedTask));
+		}
+		list.removeAll(removedTasks);
+		updateIndexInList(list, Math.max(firstChangedIndex, 0), list.size());
+		updateLastOverdueTask(list, lastOverdue, removedTasks);
+	}
+	
+	// Index of the first task which comes after the given task in a sorted list
+	private static int findInsertionIndex(List<Task> list, Task task) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (list.get(middle).compareTo(task) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	private static int getIndexInList(List<Task> list, Task task) {
+		int index = task.getIndexInList();
+		if (index >= 0 && index < list.size() && list.get(index) == task) {
+			return index;
+		}
+		return list.indexOf(task);
+	}
+	
+	private static void updateIndexInList(List<Task> list, int fromIndex, int toIndex) {
+		for (int i = fromIndex; i < toIndex; i++) {
+			list.get(i).setIndexInList(i);
+		}
+	}
+	
+	/**
+	 * GET the last overdue task of a sorted list. As the list is ordered by end date with
+	 * the tasks without end date at the end, the overdue tasks are at its beginning.
+	 */
+	private static Task getLastOverdueTask(List<Task> list) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (list.get(middle).isOverdueTask()) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low == 0 ? null : list.get(low - 1);
+	}
+	
+	// Move the overdue line from the tasks which may have held it to the current last overdue task
+	private static void updateLastOverdueTask(List<Task> list, Task oldLastOverdue, Collection<Task> changedTasks) {
+		Task lastOverdue = getLastOverdueTask(list);
+		if (oldLastOverdue != null && oldLastOverdue != lastOverdue && oldLastOverdue.isLastOverdueTask()) {
+			oldLastOverdue.setIsLastOverdue(false);
+		}
+		for (Task changedTask : changedTasks) {
+			if (changedTask != lastOverdue && changedTask.isLastOverdueTask()) {
+				changedTask.setIsLastOverdue(false);
+			}
+		}
+		if (lastOverdue != null && !lastOverdue.isLastOverdueTask()) {
+			lastOverdue.setIsLastOverdue(true);
+		}
 	}
 	
 	/**
@@ -1,9 +1,13 @@
 import java.awt.TrayIcon.MessageType;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +41,8 @@ public class Control extends Application {
 	
 	// Indicator whether application is under real time search or not
 	private static boolean isRealTimeSearch = false;
+	// The latest real time search, whose results the next one may narrow down
+	private SearchCommand lastRealTimeSearch;
 	// Model in the application, containing info of tasks and settings
 	private Model model = new Model();
 	// History keep track of previous commands
@@ -44,8 +50,12 @@ public class Control extends Application {
 	// View in the application, providing the GUI
 	private View view;
 	// Storages
-	private Storage taskFile;
+	private TaskStorage taskFile;
 	private Storage settingStore;
+	// Writer of task changes in the background
+	private StorageWriter taskWriter;
+	// Watcher of task changes made by another instance
+	private StorageWatcher taskWatcher;
 	// Sync thread of Control class
 	public static SyncCommand syncThread;
 	private Synchronization sync = new Synchronization(model, commandHistory);
@@ -67,7 +77,9 @@ public class Control extends Application {
 	public void start(final Stage primaryStage) {
 		loadData();
 		loadGUI(primaryStage);
+		showRestoredFiles();
 		loadTimer();
+		loadWatcher();
 	}
 	
 	//@author A0105667B
@@ -76,8 +88,9 @@ public class Control extends Application {
 	 */
 	void loadData() {
 		try {
-			loadTask();
+			// the archive age and store interval in settings apply to the tasks loaded
 			loadSettings();
+			loadTask();
 			CustomDate.setDisplayRemaining(model.doDisplayRemaining());
 		} catch (IOException e) {
 			logger.log(Level.INFO,"Cannot read the given file");
@@ -103,11 +116,31 @@ public class Control extends Application {
 		}
 	}
 	
+	/**
+	 * Watch the task files for changes made by another instance or a script. The changes
+	 * are merged on the JavaFX thread, which executes the commands, and the local changes
+	 * deferred meanwhile are written after them.
+	 */
+	private void loadWatcher() {
+		taskWatcher = new StorageWatcher(taskFile, taskWriter, new Executor() {
+			@Override
+			public void execute(Runnable merge) {
+				Platform.runLater(merge);
+			}
+		});
+		try {
+			taskWatcher.start();
+		} catch (IOException io) {
+			logger.log(Level.WARNING, "Cannot watch the task files for changes");
+		}
+	}
+	
 	/**
 	 * Load the task data
 	 */
 	private void loadTask() throws IOException {
-		taskFile = new TaskStorage(Common.task_fileName, model);
+		taskFile = new DatabaseStorage(Common.task_fileName, model);
+		taskWriter = new StorageWriter(taskFile, model.getStoreInterval());
 		taskFile.loadFromFile();
 	}
 	
@@ -129,12 +162,13 @@ public class Control extends Application {
 	
 	
 	/**
-	 * Update the lines separating overdue tasks and ongoing tasks in all lists
+	 * Update the lines separating overdue tasks and ongoing tasks in all loaded lists.
+	 * A list loaded later is updated when its tab is shown.
 	 */
 	private void updateLastOverdueTasks() {
 		updateOverdueLine(model.getPendingList());
-		updateOverdueLine(model.getCompleteList());
-		updateOverdueLine(model.getTrashList());
+		updateOverdueLine(model.getList(Common.COMPLETE_TAB));
+		updateOverdueLine(model.getList(Common.TRASH_TAB));
 	}
 	
 	/**
@@ -374,6 +408,12 @@ public class Control extends Application {
 				case EXIT:
 					view.setFeedback(Common.MESSAGE_EXIT_TIP);
 					break;
+				case IMPORT:
+					view.setFeedback(Common.MESSAGE_IMPORT_TIP);
+					break;
+				case EXPORT:
+					view.setFeedback(Common.MESSAGE_EXPORT_TIP);
+					break;
 				case INVALID:
 					view.setFeedback(command);
 					break;
@@ -604,6 +644,23 @@ public class Control extends Application {
 		}
 		view.emptyFeedback(0);
 		view.setFeedbackStyle(0, feedback, view.getDefaultColor());
+		showRestoredFiles();
+	}
+	
+	//@author A0105667B
+	/**
+	 * Tell the user about the task files found damaged, which were read from their previous version
+	 */
+	private void showRestoredFiles() {
+		List<String> fileNames = taskFile.takeRestoredFileNames();
+		if (fileNames.isEmpty()) {
+			return;
+		}
+		StringBuilder names = new StringBuilder(fileNames.get(0));
+		for (int i = 1; i < fileNames.size(); i++) {
+			names.append(", ").append(fileNames.get(i));
+		}
+		view.setFeedbackStyle(0, String.format(Common.MESSAGE_RESTORED_FILES, names), view.getDefaultColor());
 	}
 	
 	//@author A0105523U
@@ -627,6 +684,10 @@ public class Control extends Application {
 			int tabIndex = getTabIndex();
 			assert tabIndex >= 0 && tabIndex <= 2;
 			String[] parsedUserCommand = Parser.parseCommand(userCommand, commandType, model, tabIndex);
+			if (commandType != Common.COMMAND_TYPES.SEARCH) {
+				// the results of the latest search may be changed by other commands
+				lastRealTimeSearch = null;
+			}
 			return executeCommandCorrespondingType(parsedUserCommand, commandType);
 		} catch (Exception e) {
 			return e.getMessage(); // the corresponding error message
@@ -697,6 +758,10 @@ public class Control extends Application {
 			return executeSyncCommand();
 		case EXIT:
 			return executeExitCommand();
+		case IMPORT:
+			return executeImportCommand(parsedUserCommand);
+		case EXPORT:
+			return executeExportCommand(parsedUserCommand);
 		case INVALID:
 			return Common.MESSAGE_INVALID_COMMAND_TYPE;
 		default:
@@ -734,7 +799,7 @@ public class Control extends Application {
 		
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_ADD)) {
 			commandHistory.updateCommand((TwoWayCommand) addCommand);
-			storeTask();
+			storeTask((TwoWayCommand) addCommand);
 			if(view != null) {
 				view.setTab(Common.PENDING_TAB);
 				executeShowCommand();
@@ -745,10 +810,11 @@ public class Control extends Application {
 	
 	//@author A0105667B
 	/*
-	 * Store task info into storage file
+	 * Store the tasks changed by a command into storage file. The changes are
+	 * written in the background, so the command does not wait for the disk.
 	 */
-	private void storeTask() throws IOException {
-		taskFile.storeToFile();
+	private void storeTask(TwoWayCommand command) throws IOException {
+		taskWriter.markDirty(command.getChangedTasks());
 	}
 	
 	/**
@@ -763,7 +829,7 @@ public class Control extends Application {
 		
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_EDIT)) {
 			commandHistory.updateCommand((TwoWayCommand) editCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) editCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -783,7 +849,7 @@ public class Control extends Application {
 		
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_REMOVE)) {
 			commandHistory.updateCommand((TwoWayCommand) removeCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) removeCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -806,7 +872,7 @@ public class Control extends Application {
 			}
 			TwoWayCommand undoCommand = commandHistory.getPrevCommandForUndo();
 			String feedback = undoCommand.undo();
-			storeTask();
+			storeTask(undoCommand);
 			return feedback;
 		} 
 		return Common.MESSAGE_INVALID_UNDO;
@@ -829,7 +895,7 @@ public class Control extends Application {
 			}
 			TwoWayCommand redoCommand = commandHistory.getPrevCommandForRedo();
 			redoCommand.redo();
-			storeTask();
+			storeTask(redoCommand);
 			return Common.MESSAGE_SUCCESSFUL_REDO;
 		} 
 		return Common.MESSAGE_INVALID_REDO;
@@ -841,8 +907,9 @@ public class Control extends Application {
 	 */
 	private String executeSearchCommand(String[] parsedUserCommand,
 			boolean isRealTimeSearch) {
-		Command searchCommand = new SearchCommand(parsedUserCommand, model, view,
-				isRealTimeSearch);
+		SearchCommand searchCommand = new SearchCommand(parsedUserCommand, model, view,
+				isRealTimeSearch, lastRealTimeSearch);
+		lastRealTimeSearch = isRealTimeSearch ? searchCommand : null;
 		return searchCommand.execute();
 	}
 	
@@ -866,7 +933,7 @@ public class Control extends Application {
 		
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_CLEAR_ALL)) {
 			commandHistory.updateCommand((TwoWayCommand) clearCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) clearCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -887,7 +954,7 @@ public class Control extends Application {
 
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_COMPLETE)) {
 			commandHistory.updateCommand((TwoWayCommand) completeCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) completeCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -908,7 +975,7 @@ public class Control extends Application {
 
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_INCOMPLETE)) {
 			commandHistory.updateCommand((TwoWayCommand) incompleteCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) incompleteCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -929,7 +996,7 @@ public class Control extends Application {
 		
 		if(feedback.equals(Common.MESSAGE_SUCCESSFUL_RECOVER)){
 			commandHistory.updateCommand((TwoWayCommand)recoverCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) recoverCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -951,7 +1018,7 @@ public class Control extends Application {
 
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_MARK)) {
 			commandHistory.updateCommand((TwoWayCommand) markCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) markCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -972,7 +1039,7 @@ public class Control extends Application {
 
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_UNMARK)) {
 			commandHistory.updateCommand((TwoWayCommand) unmarkCommand, isAfterSearch);
-			storeTask();
+			storeTask((TwoWayCommand) unmarkCommand);
 			if(view != null) {
 				executeShowCommand();
 			}
@@ -1002,6 +1069,7 @@ public class Control extends Application {
 		
 		if (feedback.equals(Common.MESSAGE_SUCCESSFUL_SETTINGS)) {
 			settingStore.updateToFile();
+			taskWriter.setInterval(model.getStoreInterval());
 			updateGUI(previousTheme);
 			initializeAutoSync();
 			updateTimeFormat();
@@ -1085,6 +1153,47 @@ public class Control extends Application {
 		return Common.MESSAGE_REQUEST_COMMAND;
 	}
 	
+	//@author A0105667B
+	/**
+	 * IMPORT command execution. The imported tasks are journaled like the changes of a command
+	 * and cannot be undone.
+	 */
+	private String executeImportCommand(String[] parsedUserCommand) throws IOException {
+		if (isUnderSyncingProcess()) {
+			return Common.MESSAGE_IMPORT_RESTRICTION;
+		}
+		List<Task> importedTasks = taskFile.importTasks(getTransferFile(parsedUserCommand));
+		taskWriter.markDirty(importedTasks);
+		if (view != null) {
+			executeShowCommand();
+		}
+		return String.format(Common.MESSAGE_SUCCESSFUL_IMPORT, importedTasks.size());
+	}
+	
+	/**
+	 * EXPORT command execution
+	 */
+	private String executeExportCommand(String[] parsedUserCommand) throws IOException {
+		File exportFile = getTransferFile(parsedUserCommand);
+		int numTasks = taskFile.exportTasks(exportFile);
+		return String.format(Common.MESSAGE_SUCCESSFUL_EXPORT, numTasks, exportFile.getName());
+	}
+	
+	/**
+	 * @return the file named in the command, relative to the folder of iDo files if not absolute
+	 */
+	private File getTransferFile(String[] parsedUserCommand) {
+		String fileName = parsedUserCommand[0];
+		if (fileName.isEmpty()) {
+			throw new IllegalArgumentException(Common.MESSAGE_NO_TRANSFER_FILE);
+		}
+		File transferFile = new File(fileName);
+		if (!transferFile.isAbsolute()) {
+			transferFile = new File(taskFile.getFolder(), fileName);
+		}
+		return transferFile;
+	}
+	
 	//@author A0098077N
 	private void clearCommandLine() {
 		view.getCommandLine().setText("");
@@ -1101,6 +1210,16 @@ public class Control extends Application {
 			return Common.MESSAGE_EXIT_RESTRICTION;
 		}
 		
+		if (taskWatcher != null) {
+			taskWatcher.stop();
+		}
+		try {
+			// the last changes are not written over the changes of another instance not merged yet
+			taskFile.mergeExternalChanges(taskFile.readExternalChanges());
+			taskWriter.flush();
+		} catch (IOException io) {
+			logger.log(Level.WARNING, "Cannot store the tasks before exit");
+		}
 		return exitCommand.execute();
 	}
 	
@@ -1170,14 +1289,20 @@ public class Control extends Application {
 		initializeAutoSync();
 	}
 	
-	// Setup the update timer for task every 1 minute
+	// Setup the update timer for task every 1 minute. The tasks are updated on the JavaFX thread,
+	// which executes the commands changing model and storage as well
 	private void initializeUpdateTimer() {
 		Timer updateTimer = new Timer();
 		updateTimer.schedule(new TimerTask() {
 			@Override
 			public void run() {
-				updateAllTasks();
-				checkDisplayMessages();
+				Platform.runLater(new Runnable() {
+					@Override
+					public void run() {
+						updateAllTasks();
+						checkDisplayMessages();
+					}
+				});
 			}
 		}, 0, Common.MINUTE_IN_MILLIS);
 	}
@@ -1233,12 +1358,21 @@ public class Control extends Application {
 				MessageType.INFO);
 	}
 	
-	// Update the time of all tasks currently in the application
+	// Update the time of all tasks currently in the application, without loading the lists not loaded yet.
+	// The repetitive tasks moved to their next occurrence are stored with the changes of commands.
 	private void updateAllTasks() {
 		CustomDate.updateCurrentDate();
-		updateList(model.getPendingList());
-		updateList(model.getCompleteList());
-		updateList(model.getTrashList());
+		List<Task> movedTasks = new ArrayList<Task>();
+		movedTasks.addAll(updateList(model.getPendingList()));
+		movedTasks.addAll(updateList(model.getList(Common.COMPLETE_TAB)));
+		movedTasks.addAll(updateList(model.getList(Common.TRASH_TAB)));
+		if (!movedTasks.isEmpty()) {
+			try {
+				taskWriter.markDirty(movedTasks);
+			} catch (IOException io) {
+				logger.log(Level.WARNING, "Cannot store the updated repetitive tasks: " + io.getMessage());
+			}
+		}
 	}
 	
 	/**
@@ -1248,15 +1382,27 @@ public class Control extends Application {
 	 * 
 	 * @param list
 	 *            the given list
+	 * @return the repetitive tasks whose dates were updated
 	 */
-	private static void updateList(ObservableList<Task> list) {
+	private static List<Task> updateList(ObservableList<Task> list) {
+		List<Task> movedTasks = new ArrayList<Task>();
 		for (int i = 0; i < list.size(); i++) {
 			list.get(i).updateDateString();
 			if (list.get(i).isRecurringTask()) {
+				long endTime = list.get(i).getEndDate().getTimeInMillis();
 				list.get(i).updateDateForRepetitiveTask();
+				if (list.get(i).getEndDate().getTimeInMillis() != endTime) {
+					movedTasks.add(list.get(i));
+				}
 			}
 		}
-		Common.sortList(list);
+		// Only the repetitive tasks moved to their next occurrence change their positions
+		if (!movedTasks.isEmpty()) {
+			Common.removeTasks(list, movedTasks);
+			Common.insertTasks(list, movedTasks);
+		}
+		Common.updateLastOverdueTask(list);
+		return movedTasks;
 	}
 	
 	/**
@@ -1266,15 +1412,7 @@ public class Control extends Application {
 	 *            the given list
 	 */
 	private static void updateOverdueLine(ObservableList<Task> list) {
-		boolean hasLastOverdueTask = false;
-		for (int i = list.size() - 1; i >= 0; i--) {
-			list.get(i).setIsLastOverdue(false);
-			boolean isLastOverdue = !hasLastOverdueTask && list.get(i).isOverdueTask();
-			if (isLastOverdue) {
-				list.get(i).setIsLastOverdue(true);
-				hasLastOverdueTask = true;
-			}
-		}
+		Common.updateLastOverdueTask(list);
 	}
 	
 	//@author A0105667B
@@ -1282,7 +1420,11 @@ public class Control extends Application {
 		return model;
 	}
 	
-	public Storage getTaskFile() {
+	public StorageWriter getTaskWriter() {
+		return taskWriter;
+	}
+	
+	public TaskStorage getTaskFile() {
 		return taskFile;
 	}
 	
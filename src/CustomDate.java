@@ -291,15 +291,51 @@ public class CustomDate {
 		if (storedDate == null)
 			return "-";
 		
-		int date = storedDate.sourceDate.get(Calendar.DATE);
-		int month = storedDate.sourceDate.get(Calendar.MONTH);
-		int year = storedDate.sourceDate.get(Calendar.YEAR);
-		int hour = storedDate.sourceDate.get(Calendar.HOUR_OF_DAY);
-		int minute = storedDate.sourceDate.get(Calendar.MINUTE);
+		return convertString(storedDate.sourceDate);
+	}
+	
+	//@author A0105667B
+	/**
+	 * This function is used to convert the date held by a calendar to the same
+	 * string as convertString(CustomDate), so that a date kept as milliseconds is
+	 * converted without creating a CustomDate for it
+	 * 
+	 * @param calendar
+	 *            the calendar set to the date
+	 * @return the string of the date
+	 */
+	public static String convertString(Calendar calendar) {
+		int date = calendar.get(Calendar.DATE);
+		int month = calendar.get(Calendar.MONTH);
+		int year = calendar.get(Calendar.YEAR);
+		int hour = calendar.get(Calendar.HOUR_OF_DAY);
+		int minute = calendar.get(Calendar.MINUTE);
 		
 		return date + "/" + (month + 1) + "/" + year + " " + hour + ":" + minute;
 	}
 
+	/**
+	 * This function is used to pack the calendar fields compared by compare() into one
+	 * long, so that two keys are in the same order as their dates. A missing date
+	 * comes after all others.
+	 * 
+	 * @param date
+	 *            the date, or null
+	 * @return the sort key of the date
+	 */
+	public static long getSortKey(CustomDate date) {
+		if (date == null) {
+			return Long.MAX_VALUE;
+		}
+		long key = date.getYear();
+		key = key * 12 + date.getMonth();
+		key = key * 32 + date.getDate();
+		key = key * 24 + date.getHour();
+		key = key * 60 + date.getMinute();
+		return key * 60 + date.getSecond();
+	}
+	
+	//@author A0098077N
 	/**
 	 * This function is used to compare 2 CustomDate objects
 	 * 
@@ -0,0 +1,273 @@
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//@author A0105667B
+/**
+ *
+ * This class stores the task lists as TaskStorage does, but keeps the archived tasks in an
+ * embedded H2 database file instead of the compressed archive file. The archived tasks are
+ * in one table with indexes on their end date, tag and status, so that a search only reads
+ * the archived tasks which can match its end date and tag, and nothing of the archive is read
+ * when the tasks are loaded. An archive file written before is moved into the database when
+ * the tasks are loaded. The database is opened for each read or write and closed afterwards,
+ * so that another instance can open it in between.
+ *
+ */
+class DatabaseStorage extends TaskStorage {
+	private static final String DATABASE_URL = "jdbc:h2:";
+	// H2 adds its own extension to the name
+	private static final String DATABASE_SUFFIX = ".archive";
+	private static final String TASK_TABLE = "ARCHIVED_TASKS";
+	private static final String[] CREATE_STATEMENTS = {
+		"CREATE TABLE IF NOT EXISTS " + TASK_TABLE + " (ARCHIVE_ORDER BIGINT AUTO_INCREMENT, "
+				+ "TASK_KEY INT PRIMARY KEY, TASK_TYPE VARCHAR NOT NULL, INDEX_ID VARCHAR, "
+				+ "WORK_INFO VARCHAR, START_DATE BIGINT, END_DATE BIGINT, TAG VARCHAR, TAG_KEY VARCHAR, "
+				+ "REPETITION VARCHAR, IS_IMPORTANT BOOLEAN, MODIFIED_DATE BIGINT, "
+				+ "CURRENT_OCCURRENCE INT, NUM_OCCURRENCES INT, STATUS VARCHAR)",
+		"CREATE INDEX IF NOT EXISTS IDX_END_DATE ON " + TASK_TABLE + " (TASK_TYPE, END_DATE)",
+		"CREATE INDEX IF NOT EXISTS IDX_TAG ON " + TASK_TABLE + " (TASK_TYPE, TAG_KEY)",
+		"CREATE INDEX IF NOT EXISTS IDX_STATUS ON " + TASK_TABLE + " (TASK_TYPE, STATUS)" };
+	// A task archived again keeps the place it was archived first, as in the archive file
+	private static final String MERGE_TASK = "MERGE INTO " + TASK_TABLE + " (TASK_KEY, TASK_TYPE, "
+			+ "INDEX_ID, WORK_INFO, START_DATE, END_DATE, TAG, TAG_KEY, REPETITION, IS_IMPORTANT, "
+			+ "MODIFIED_DATE, CURRENT_OCCURRENCE, NUM_OCCURRENCES, STATUS) KEY (TASK_KEY) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String SELECT_TASKS = "SELECT INDEX_ID, WORK_INFO, START_DATE, END_DATE, TAG, "
+			+ "REPETITION, IS_IMPORTANT, MODIFIED_DATE, CURRENT_OCCURRENCE, NUM_OCCURRENCES, STATUS FROM "
+			+ TASK_TABLE + " WHERE TASK_TYPE = ?";
+	private static final String WITH_TAG = " AND TAG_KEY LIKE ? ESCAPE '\\'";
+	private static final String ENDED_BY = " AND END_DATE <= ?";
+	private static final String IN_ARCHIVE_ORDER = " ORDER BY ARCHIVE_ORDER";
+	private static final String LIKE_ESCAPE = "\\";
+
+	private static Logger log = Logger.getLogger("DatabaseStorage");
+
+	private String databaseUrl;
+	// Indicator whether the table and its indexes were created since this storage was created
+	private boolean hasTable = false;
+
+	public DatabaseStorage(String fileName, Model model) {
+		super(fileName, model);
+		databaseUrl = DATABASE_URL + new File(xmlFile.getPath() + DATABASE_SUFFIX).getAbsolutePath();
+	}
+
+	@Override
+	/**
+	 * Move the tasks of an archive file written before into the database, then load the task
+	 * lists, their old tasks being archived into the database
+	 */
+	public synchronized void loadFromFile() throws IOException {
+		moveArchiveFile();
+		super.loadFromFile();
+	}
+
+	@Override
+	protected void archiveTasks(String taskType, List<Integer> taskKeys, List<String[]> taskFields)
+			throws IOException {
+		insertTasks(taskType, taskKeys, convertToColumns(taskFields, 0));
+	}
+
+	@Override
+	/**
+	 * Read all the archived tasks of a list. They are kept in columns, a task being only created
+	 * when its row is read.
+	 * @return the archived tasks in the order they were archived
+	 */
+	public List<Task> loadArchivedTasks(int tabIndex) throws IOException {
+		return loadArchivedTasks(tabIndex, null, null);
+	}
+
+	@Override
+	/**
+	 * Read the archived tasks of a list ending on the day of the given date or before, looked up
+	 * by the index on the end date, and whose tag contains the given one. A searched tag starting
+	 * with '#' as the tags do is looked up by the index on the tag, as the beginning of the tags.
+	 * @return the archived tasks in the order they were archived
+	 */
+	public List<Task> loadArchivedTasks(int tabIndex, String tag, CustomDate endDate) throws IOException {
+		StringBuilder query = new StringBuilder(SELECT_TASKS);
+		if (tag != null) {
+			query.append(WITH_TAG);
+		}
+		if (endDate != null) {
+			query.append(ENDED_BY);
+		}
+		query.append(IN_ARCHIVE_ORDER);
+		Connection connection = openDatabase();
+		try {
+			PreparedStatement statement = connection.prepareStatement(query.toString());
+			int parameter = 1;
+			statement.setString(parameter++, TASK_TYPES[tabIndex]);
+			if (tag != null) {
+				statement.setString(parameter++, getTagPattern(tag));
+			}
+			if (endDate != null) {
+				statement.setLong(parameter++, getEndOfDay(endDate));
+			}
+			TaskColumns archivedTasks = readTasks(statement.executeQuery());
+			return Collections.unmodifiableList(archivedTasks);
+		} catch (SQLException sqle) {
+			throw new IOException("Cannot read the archived tasks: " + sqle.getMessage(), sqle);
+		} finally {
+			closeDatabase(connection);
+		}
+	}
+
+	/*************************************** database access ***************************************/
+
+	private Connection openDatabase() throws IOException {
+		try {
+			Connection connection = DriverManager.getConnection(databaseUrl);
+			if (!hasTable) {
+				Statement statement = connection.createStatement();
+				for (String createStatement : CREATE_STATEMENTS) {
+					statement.execute(createStatement);
+				}
+				statement.close();
+				hasTable = true;
+			}
+			return connection;
+		} catch (SQLException sqle) {
+			throw new IOException("Cannot open the archive database: " + sqle.getMessage(), sqle);
+		}
+	}
+
+	private void closeDatabase(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException sqle) {
+			log.log(Level.WARNING, "Cannot close the archive database: " + sqle.getMessage());
+		}
+	}
+
+	/**
+	 * Insert the tasks of a list in one transaction, so that a batch is archived as a whole
+	 */
+	private void insertTasks(String taskType, List<Integer> taskKeys, TaskColumns tasks) throws IOException {
+		Connection connection = openDatabase();
+		try {
+			connection.setAutoCommit(false);
+			PreparedStatement statement = connection.prepareStatement(MERGE_TASK);
+			for (int i = 0; i < tasks.size(); i++) {
+				statement.setInt(1, taskKeys.get(i));
+				statement.setString(2, taskType);
+				statement.setString(3, tasks.getIndexId(i));
+				statement.setString(4, tasks.getWorkInfo(i));
+				setDate(statement, 5, tasks.getStartDate(i));
+				setDate(statement, 6, tasks.getEndDate(i));
+				statement.setString(7, tasks.getTag(i).getTag());
+				statement.setString(8, tasks.getTag(i).getTag().toLowerCase());
+				statement.setString(9, tasks.getTag(i).getRepetition());
+				statement.setBoolean(10, tasks.isImportant(i));
+				setDate(statement, 11, tasks.getModifiedDate(i));
+				statement.setInt(12, tasks.getCurrentOccurrence(i));
+				statement.setInt(13, tasks.getNumOccurrences(i));
+				statement.setString(14, recordStatus(tasks.getStatus(i)));
+				statement.addBatch();
+			}
+			statement.executeBatch();
+			connection.commit();
+		} catch (SQLException sqle) {
+			throw new IOException("Cannot archive the tasks: " + sqle.getMessage(), sqle);
+		} finally {
+			closeDatabase(connection);
+		}
+	}
+
+	/**
+	 * Fill the columns straight from the rows, with no task being created for them. The archived
+	 * tasks are not in any list, so their index in list is invalid.
+	 */
+	private static TaskColumns readTasks(ResultSet rows) throws SQLException {
+		TaskColumns tasks = new TaskColumns();
+		while (rows.next()) {
+			tasks.addRow(rows.getString(1), rows.getString(2), getDate(rows, 3), getDate(rows, 4),
+					Tag.valueOf(rows.getString(5), rows.getString(6)), rows.getBoolean(7),
+					TwoWayCommand.INVALID, getDate(rows, 8), rows.getInt(9), rows.getInt(10),
+					parseStatus(rows.getString(11), Task.Status.NEWLY_ADDED));
+		}
+		rows.close();
+		tasks.trimToSize();
+		return tasks;
+	}
+
+	// A missing date is NULL in the database, so that it is outside any range of dates
+	private static void setDate(PreparedStatement statement, int parameter, long millis) throws SQLException {
+		if (millis == TaskColumns.NO_DATE) {
+			statement.setNull(parameter, Types.BIGINT);
+		} else {
+			statement.setLong(parameter, millis);
+		}
+	}
+
+	private static long getDate(ResultSet rows, int column) throws SQLException {
+		long millis = rows.getLong(column);
+		return rows.wasNull() ? TaskColumns.NO_DATE : millis;
+	}
+
+	/**
+	 * @return the pattern matching the tags containing the given one, ignoring case
+	 */
+	private static String getTagPattern(String tag) {
+		String escapedTag = tag.toLowerCase().replace(LIKE_ESCAPE, LIKE_ESCAPE + LIKE_ESCAPE)
+				.replace("%", LIKE_ESCAPE + "%").replace("_", LIKE_ESCAPE + "_");
+		if (tag.startsWith(Common.HASH_TAG)) {
+			return escapedTag + "%";
+		}
+		return "%" + escapedTag + "%";
+	}
+
+	// The last millisecond of the day of the date, a task ending that day or before being searched
+	private static long getEndOfDay(CustomDate date) {
+		Calendar calendar = new GregorianCalendar();
+		calendar.setTimeInMillis(date.getTimeInMillis());
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.DATE, 1);
+		return calendar.getTimeInMillis() - 1;
+	}
+
+	/**
+	 * Insert the tasks of the archive file into the database and remove the file. The file is
+	 * only removed once every task in it is in the database.
+	 */
+	private void moveArchiveFile() throws IOException {
+		TaskArchive archive = getArchive();
+		if (!archive.getFile().exists()) {
+			return;
+		}
+		int numTasks = 0;
+		for (String taskType : TASK_TYPES) {
+			List<String[]> records = archive.read(taskType);
+			if (records.isEmpty()) {
+				continue;
+			}
+			List<Integer> taskKeys = new ArrayList<Integer>();
+			for (String[] record : records) {
+				taskKeys.add(Integer.parseInt(record[TaskArchive.INDEX_KEY]));
+			}
+			insertTasks(taskType, taskKeys, convertToColumns(records, TaskArchive.INDEX_FIRST_FIELD));
+			numTasks += records.size();
+		}
+		if (!archive.getFile().delete()) {
+			log.log(Level.WARNING, "Cannot remove " + archive.getFile().getName() + " after moving it.");
+		}
+		log.log(Level.INFO, "Moved " + numTasks + " archived tasks to the database.");
+	}
+}
@@ -1,53 +1,77 @@
+import java.security.GeneralSecurityException;
+
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
 
 //@A0105667B
+/**
+ * Each thread using an Encryptor keeps its own initialised ciphers, as a Cipher
+ * cannot be shared between threads and looking up the provider in Cipher.getInstance()
+ * costs far more than encrypting a password. The key is built once.
+ */
 public class Encryptor {
-	
+
 	//Key generator source
 	private static final String KEYGENSOURCE = "HignDlPs";
+	private static final String ENCODING = "UTF8";
 	//The algorithm for the encryption, eg: DES/ECB/PKCS5Padding
     private String algo;
-	
+    private SecretKeySpec key;
+    // Ciphers of the current thread, initialised with the key
+    private ThreadLocal<Cipher> encryptCiphers = new ThreadLocal<Cipher>();
+    private ThreadLocal<Cipher> decryptCiphers = new ThreadLocal<Cipher>();
+
     public Encryptor(String algo) {
-        this.algo = algo; 
+        this.algo = algo;
+        byte k[] = KEYGENSOURCE.getBytes();
+        key = new SecretKeySpec(k, algo.split("/")[0]);
     }
-    
+
     /**
      * encrypt a information string
      * @param str  a string to be encrypted
      * @return a encrypted string
      * @throws Exception
      */
-	@SuppressWarnings("restriction")
 	public String encrypt(String str) throws Exception {
-        Cipher ecipher =  Cipher.getInstance(algo);  
-        byte k[] = KEYGENSOURCE .getBytes();   
-        SecretKeySpec key = new SecretKeySpec(k,algo.split("/")[0]);  
-        ecipher.init(Cipher.ENCRYPT_MODE, key);  
 		// Encode the string into bytes using utf-8
-		byte[] utf8 = str.getBytes("UTF8");
-		byte[] enc = ecipher.doFinal(utf8);
+		byte[] utf8 = str.getBytes(ENCODING);
+		byte[] enc = doFinal(encryptCiphers, Cipher.ENCRYPT_MODE, utf8);
 		// Encode bytes to base64 to get a string
-		return new sun.misc.BASE64Encoder().encode(enc);
+		return DatatypeConverter.printBase64Binary(enc);
 	}
-	
+
 	/**
 	 * decrypt a encrypted string
 	 * @param str   encrypted string
 	 * @return  a decrupted string
 	 * @throws Exception
 	 */
-	@SuppressWarnings("restriction")
 	public String decrypt(String encryptedStr) throws Exception{
-		// Decode base64 to get bytes
-		byte[] dec = new sun.misc.BASE64Decoder().decodeBuffer(encryptedStr);
-		Cipher dcipher =  Cipher.getInstance(algo);
-         byte k[] = KEYGENSOURCE .getBytes();   
-         SecretKeySpec key = new SecretKeySpec(k,algo.split("/")[0]);  
-		dcipher.init(Cipher.DECRYPT_MODE, key);  
-		byte[] utf8 = dcipher.doFinal(dec);
+		// Decode base64 to get bytes, the line breaks of older files being ignored
+		byte[] dec = DatatypeConverter.parseBase64Binary(encryptedStr.replaceAll("\\s", ""));
+		byte[] utf8 = doFinal(decryptCiphers, Cipher.DECRYPT_MODE, dec);
 		// Decode using utf-8
-		return new String(utf8, "UTF8");
+		return new String(utf8, ENCODING);
+	}
+
+	/**
+	 * Run the cipher of the current thread over the data. A cipher is back to its initialised
+	 * state after doFinal(), unless doFinal() failed, in which case it is dropped.
+	 */
+	private byte[] doFinal(ThreadLocal<Cipher> ciphers, int mode, byte[] data) throws GeneralSecurityException {
+		Cipher cipher = ciphers.get();
+		if (cipher == null) {
+			cipher = Cipher.getInstance(algo);
+			cipher.init(mode, key);
+			ciphers.set(cipher);
+		}
+		try {
+			return cipher.doFinal(data);
+		} catch (GeneralSecurityException gse) {
+			ciphers.remove();
+			throw gse;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,7 +1,20 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
 /**
@@ -12,6 +25,9 @@ import javafx.collections.ObservableList;
  */
 public class Model {
 	private static final String MESSAGE_OUT_OF_BOUNDS_INDEX = "Out of bounds index";
+	// Number of days after which the unmodified complete and trashed tasks are archived, 0 as
+	// archiving is off until it is turned on in settings
+	private static final int DEFAULT_ARCHIVE_AGE = 0;
 	// Logger
 	private static Logger logger = Logger.getLogger("Model");
 	
@@ -39,6 +55,28 @@ public class Model {
 	 * List of IDs from tasks which were removed during synchronization
 	 */
 	private ObservableList<String> removedIdDuringSync;
+	
+	/*
+	 * Indicators whether the lists in corresponding tabs were changed since they were last stored
+	 */
+	private boolean[] isListDirty;
+	
+	/*
+	 * Indicators whether the lists in corresponding tabs were read from file, and the storage
+	 * from which the other lists are read on their first access and the archived tasks on demand
+	 */
+	private boolean[] isListLoaded;
+	private Storage listStorage;
+	
+	/*
+	 * Positions of the tasks in the lists of corresponding tabs by task and by index ID
+	 */
+	private TaskIndex[] listIndexes;
+	
+	/*
+	 * Tasks of the lists of corresponding tabs by the words of their work info and tag
+	 */
+	private WordIndex[] wordIndexes;
 
 	//@author A0105523U
 	/*
@@ -52,10 +90,17 @@ public class Model {
 		searchComplete = FXCollections.observableArrayList();
 		searchTrash = FXCollections.observableArrayList();
 		removedIdDuringSync = FXCollections.observableArrayList();
+		isListDirty = new boolean[TRASH_TAB + 1];
+		isListLoaded = new boolean[] { true, true, true };
+		listIndexes = new TaskIndex[] { new TaskIndex(pending), new TaskIndex(complete), new TaskIndex(trash) };
+		wordIndexes = new WordIndex[] { new WordIndex(pending, listIndexes[PENDING_TAB]),
+				new WordIndex(complete, listIndexes[COMPLETE_TAB]), new WordIndex(trash, listIndexes[TRASH_TAB]) };
 		displayRemaining = true;
 		themeMode = Common.DAY_MODE;
 		colourScheme = Common.DAY_MODE;
 		syncPeriod = 1;
+		archiveAge = DEFAULT_ARCHIVE_AGE;
+		storeInterval = Common.STORE_INTERVAL_IN_MILLIS;
 	}
 	
 	/**************************************** TASK Section **********************************/
@@ -104,6 +149,20 @@ public class Model {
 		return trash;
 	}
 
+	/**
+	 * GET the list of a tab. A list which has not been loaded yet by loadList() is empty, 
+	 * or only holds the tasks added to it since, and is filled in place once it is loaded.
+	 */
+	public ObservableList<Task> getList(int tabIndex) {
+		if (tabIndex == PENDING_TAB) {
+			return pending;
+		} else if (tabIndex == COMPLETE_TAB) {
+			return complete;
+		} else {
+			return trash;
+		}
+	}
+
 	public ObservableList<Task> getSearchPendingList() {
 		return searchPending;
 	}
@@ -157,31 +216,141 @@ public class Model {
 	//@author A0100927M
 	/********************************** GET the index from given task ******************************/
 	public int getIndexFromPending(Task task) {
-		return pending.indexOf(task);
+		return listIndexes[PENDING_TAB].indexOf(task);
 	}
 
 	public int getIndexFromComplete(Task task) {
-		return complete.indexOf(task);
+		return listIndexes[COMPLETE_TAB].indexOf(task);
 	}
 
 	public int getIndexFromTrash(Task task) {
-		return trash.indexOf(task);
+		return listIndexes[TRASH_TAB].indexOf(task);
+	}
+	
+	//@author A0105667B
+	public int getIndexFromTab(Task task, int tabIndex) {
+		return listIndexes[tabIndex].indexOf(task);
+	}
+	
+	//@author A0105667B
+	/****************************** GET the index from given index ID ******************************/
+	public int getIndexFromPendingById(String indexId) {
+		return listIndexes[PENDING_TAB].indexOfId(indexId);
+	}
+	
+	/**
+	 * GET the number of changes to the list of a tab and to the work info and tags of its tasks so far,
+	 * telling a search whether its results are up to date
+	 */
+	public int getListChanges(int tabIndex) {
+		return wordIndexes[tabIndex].getChanges();
+	}
+	
+	/************************** GET the tasks by the words of their work info ***********************/
+	/**
+	 * GET the tasks of the list of a tab in which each word of the given work info is part of a word
+	 * of the work info or tag, in their order in the list. The tasks whose work info or tag contains
+	 * the given work info are among them. Null is returned when the work info has no word to look up.
+	 */
+	public List<Task> getTasksWithWords(String workInfo, int tabIndex) {
+		return wordIndexes[tabIndex].getTasksWithWords(workInfo);
 	}
 	
+	//@author A0100927M
+	
 	
 	/****************************** ADD a task to the list *******************************/
 	public void addTaskToPending(Task newPendingTask) {
 		pending.add(newPendingTask);
+		markListDirty(PENDING_TAB);
 	}
 
 	public void addTaskToComplete(Task newCompleteTask) {
 		complete.add(newCompleteTask);
+		markListDirty(COMPLETE_TAB);
 	}
 
 	public void addTaskToTrash(Task newTrashTask) {
 		trash.add(newTrashTask);
+		markListDirty(TRASH_TAB);
 	}
-
+	
+	//@author A0105667B
+	/**
+	 * INSERT a task into the sorted list of a tab at its position, without sorting the list again
+	 */
+	public void insertTask(Task newTask, int tabIndex) {
+		Common.insertTask(getList(tabIndex), newTask);
+		markListDirty(tabIndex);
+	}
+	
+	/******************** CHANGE several tasks at once *******************************/
+	/*
+	 * Each of these changes a list once whatever the number of tasks, so that the table 
+	 * showing it is laid out once, and keeps the list sorted without sorting it again.
+	 */
+	
+	/**
+	 * INSERT several tasks into the sorted list of a tab
+	 */
+	public void insertTasks(List<Task> newTasks, int tabIndex) {
+		Common.insertTasks(getList(tabIndex), newTasks);
+		markListDirty(tabIndex);
+	}
+	
+	/**
+	 * REMOVE several tasks of a tab as removeTask() does for each of them: the tasks of
+	 * pending and complete tabs are moved to trash, those of trash tab are dropped
+	 */
+	public void removeTasks(List<Task> tasks, int tabIndex) {
+		if (tabIndex == PENDING_TAB) {
+			addRemovedIdsDuringSync(tasks);
+		}
+		Common.removeTasks(getList(tabIndex), tasks);
+		markListDirty(tabIndex);
+		if (tabIndex != TRASH_TAB) {
+			insertTasks(tasks, TRASH_TAB);
+		}
+	}
+	
+	/**
+	 * COMPLETE several tasks of pending tab as completeTaskFromPending() does for each of them
+	 */
+	public void completeTasksFromPending(List<Task> tasks) {
+		addRemovedIdsDuringSync(tasks);
+		moveTasks(tasks, PENDING_TAB, COMPLETE_TAB);
+	}
+	
+	/**
+	 * MOVE several tasks from the list of a tab to the list of another one
+	 */
+	public void moveTasks(List<Task> tasks, int fromTabIndex, int toTabIndex) {
+		Common.removeTasks(getList(fromTabIndex), tasks);
+		markListDirty(fromTabIndex);
+		insertTasks(tasks, toTabIndex);
+	}
+	
+	/**
+	 * SET the tasks of a tab, replacing all those in its list
+	 */
+	public void setTasks(List<Task> tasks, int tabIndex) {
+		List<Task> sortedTasks = new ArrayList<Task>(tasks);
+		Collections.sort(sortedTasks);
+		getList(tabIndex).setAll(sortedTasks);
+		Common.updateIndexInList(getList(tabIndex));
+		markListDirty(tabIndex);
+	}
+	
+	private void addRemovedIdsDuringSync(List<Task> tasks) {
+		List<String> removedIds = new ArrayList<String>();
+		for (Task t : tasks) {
+			if (t.getStatus() != Task.Status.ADDED_WHEN_SYNC) {
+				removedIds.add(t.getIndexId());
+			}
+		}
+		removedIdDuringSync.addAll(removedIds);
+	}
+	
 	/******************** REMOVE a task with indicated index *******************************/
 	public void removeTask(int index, int tabIndex) {
 		if (tabIndex == PENDING_TAB) {
@@ -196,10 +365,11 @@ public class Model {
 	private void removeTaskFromPending(int index) {
 		try {
 			Task t = pending.remove(index);
+			markListDirty(PENDING_TAB);
 			if (t.getStatus() != Task.Status.ADDED_WHEN_SYNC) {
 				removedIdDuringSync.add(t.getIndexId());
 			}
-			trash.add(t);
+			addTaskToTrash(t);
 		} catch (IndexOutOfBoundsException e) {
 			logger.log(Level.WARNING, MESSAGE_OUT_OF_BOUNDS_INDEX);
 		}
@@ -208,7 +378,8 @@ public class Model {
 	private void removeTaskFromComplete(int index) {
 		try {
 			Task t = complete.remove(index);
-			trash.add(t);
+			markListDirty(COMPLETE_TAB);
+			addTaskToTrash(t);
 		} catch (IndexOutOfBoundsException e) {
 			logger.log(Level.WARNING, MESSAGE_OUT_OF_BOUNDS_INDEX);
 		}
@@ -217,6 +388,7 @@ public class Model {
 	private void removeTaskFromTrash(int index) {
 		try {
 			trash.remove(index);
+			markListDirty(TRASH_TAB);
 		} catch (IndexOutOfBoundsException e) {
 			logger.log(Level.WARNING, MESSAGE_OUT_OF_BOUNDS_INDEX);
 		}
@@ -225,7 +397,8 @@ public class Model {
 	/***************************** REMOVE a task with indicated index permanently, not moving to trash *******************/
 	public void removeTaskFromPendingNoTrash(int index) {
 		try {
-			pending.remove(index);
+			Common.removeTask(pending, index);
+			markListDirty(PENDING_TAB);
 		} catch (IndexOutOfBoundsException e) {
 			logger.log(Level.WARNING, MESSAGE_OUT_OF_BOUNDS_INDEX);
 		}
@@ -233,7 +406,8 @@ public class Model {
 
 	public void removeTaskFromCompleteNoTrash(int index) {
 		try {
-			complete.remove(index);
+			Common.removeTask(complete, index);
+			markListDirty(COMPLETE_TAB);
 		} catch (IndexOutOfBoundsException e) {
 			logger.log(Level.WARNING, MESSAGE_OUT_OF_BOUNDS_INDEX);
 		}
@@ -243,6 +417,7 @@ public class Model {
 	public void completeTaskFromPending(int index) {
 		try {
 			Task t = pending.remove(index);
+			markListDirty(PENDING_TAB);
 			if (t.getStatus() != Task.Status.ADDED_WHEN_SYNC) {
 				removedIdDuringSync.add(t.getIndexId());
 			}
@@ -252,6 +427,85 @@ public class Model {
 		}
 	}
 	
+	//@author A0105667B
+	/************************** DIRTY flags of the lists for storing *******************************/
+	public void markListDirty(int tabIndex) {
+		isListDirty[tabIndex] = true;
+	}
+	
+	public boolean isListDirty(int tabIndex) {
+		return isListDirty[tabIndex];
+	}
+	
+	public void clearListDirty(int tabIndex) {
+		isListDirty[tabIndex] = false;
+	}
+	
+	/************************** LOAD the lists when they are needed *******************************/
+	/**
+	 * Leave the list of a tab empty until loadList() is called for it, then read it from the given storage
+	 */
+	public void deferListLoading(int tabIndex, Storage listStorage) {
+		isListLoaded[tabIndex] = false;
+		this.listStorage = listStorage;
+	}
+	
+	public boolean isListLoaded(int tabIndex) {
+		return isListLoaded[tabIndex];
+	}
+	
+	/**
+	 * Read the list of a tab from file if it has not been loaded yet. A list which cannot be read 
+	 * is left unloaded, so that it is tried again and not written over by its partial content.
+	 * @return whether the list is loaded
+	 */
+	public boolean loadList(int tabIndex) {
+		if (isListLoaded[tabIndex]) {
+			return true;
+		}
+		try {
+			listStorage.loadListFromFile(tabIndex);
+			isListLoaded[tabIndex] = true;
+		} catch (IOException io) {
+			logger.log(Level.WARNING, "Cannot load the tasks of tab " + tabIndex + ": " + io.getMessage());
+		}
+		return isListLoaded[tabIndex];
+	}
+	
+	/************************** GET the archived tasks on demand *******************************/
+	/**
+	 * Set the storage from which the lists not loaded yet and the archived tasks are read
+	 */
+	public void setListStorage(Storage listStorage) {
+		this.listStorage = listStorage;
+	}
+	
+	/**
+	 * GET the tasks which were moved from the list of a tab to the archive. They are read 
+	 * from file again only after the archive grew and are not part of any list. Each task is created when it is
+	 * read from the returned list.
+	 */
+	public List<Task> getArchivedTasks(int tabIndex) {
+		return getArchivedTasks(tabIndex, null, null);
+	}
+	
+	/**
+	 * GET the archived tasks of the list of a tab which may have the given tag and end on the day of 
+	 * the given date or before, null meaning any. The storage may return more tasks than those.
+	 */
+	public List<Task> getArchivedTasks(int tabIndex, String tag, CustomDate endDate) {
+		if (listStorage == null) {
+			return new ArrayList<Task>();
+		}
+		try {
+			return listStorage.loadArchivedTasks(tabIndex, tag, endDate);
+		} catch (IOException io) {
+			logger.log(Level.WARNING, "Cannot read the archived tasks of tab " + tabIndex + ": " + io.getMessage());
+			return new ArrayList<Task>();
+		}
+	}
+	
+	//@author A0100927M
 	/************************************** SET a specific searchList *********************************/
 	public void setSearchPendingList(ObservableList<Task> searchList) {
 		searchPending = searchList;
@@ -281,6 +535,14 @@ public class Model {
 	private boolean isAutoSync;
 	// Period of syncing if enabling auto sync
 	private int syncPeriod;
+	// Indicator whether to store the tasks in a binary snapshot instead of XML
+	private boolean isBinaryStorage;
+	// Indicator whether to compress the XML files of the tasks
+	private boolean isCompressedStorage;
+	// Number of days a complete or trashed task is kept in its list after its last change, 0 to keep it forever
+	private int archiveAge;
+	// Minimum time in milliseconds between two writes of the task files
+	private int storeInterval;
 	
 	/*********************************** GET functions ****************************************/
 	public boolean doDisplayRemaining(){
@@ -315,6 +577,22 @@ public class Model {
 		return syncPeriod;
 	}
 	
+	public boolean hasBinaryStorage() {
+		return isBinaryStorage;
+	}
+	
+	public boolean hasCompressedStorage() {
+		return isCompressedStorage;
+	}
+	
+	public int getArchiveAge() {
+		return archiveAge;
+	}
+	
+	public int getStoreInterval() {
+		return storeInterval;
+	}
+	
 	/***************************************** SET functions ********************************************/
 	public void setThemeMode(String themeMode){
 		this.themeMode = themeMode;
@@ -343,4 +621,493 @@ public class Model {
 	public void setSyncPeriod(int syncPeriod){
 		this.syncPeriod = syncPeriod;
 	}
-}
\ No newline at end of file
+	
+	public void setBinaryStorage(boolean isBinaryStorage) {
+		this.isBinaryStorage = isBinaryStorage;
+	}
+	
+	public void setCompressedStorage(boolean isCompressedStorage) {
+		this.isCompressedStorage = isCompressedStorage;
+	}
+	
+	public void setArchiveAge(int archiveAge) {
+		this.archiveAge = archiveAge;
+	}
+	
+	public void setStoreInterval(int storeInterval) {
+		this.storeInterval = storeInterval;
+	}
+}
+//@author A0105667B
+/**
+ * 
+ * This class finds the tasks of a list by task and by index ID without scanning the list. 
+ * The position of each task is the index in list it keeps, which the sorted list operations 
+ * of Common update as they change the list. A kept position which no longer points back to 
+ * its task is renumbered when it is looked up, from the first position the list changed at 
+ * since the last renumbering. Each task of the list tells this index when its index ID, work 
+ * info or tag changes, and the other indexes of the list are told in turn.
+ *
+ */
+class TaskIndex implements ListChangeListener<Task>, TaskListener {
+	private List<Task> list;
+	// Number of times each task is in the list
+	private Map<Task, Integer> occurrences = new IdentityHashMap<Task, Integer>();
+	// Tasks with each index ID, an index ID of a single task keeping no set of its own
+	private Map<String, Set<Task>> idTasks = new HashMap<String, Set<Task>>();
+	// The positions kept by the tasks before this one are up to date
+	private int firstUnnumbered = 0;
+	private List<TaskListener> listeners = new ArrayList<TaskListener>();
+	
+	public TaskIndex(ObservableList<Task> list) {
+		this.list = list;
+		for (Task task : list) {
+			addTask(task);
+		}
+		list.addListener(this);
+	}
+	
+	/**
+	 * Tell the given listener about the changes of the tasks in the list
+	 */
+	public void addListener(TaskListener listener) {
+		listeners.add(listener);
+	}
+	
+	// The removed tasks are forgotten after the added ones are counted, so that the tasks which 
+	// are only moved, such as by setAll, stay indexed
+	@Override
+	public void onChanged(Change<? extends Task> change) {
+		List<Task> removedTasks = new ArrayList<Task>();
+		while (change.next()) {
+			if (change.wasPermutated() || change.wasAdded() || change.wasRemoved()) {
+				firstUnnumbered = Math.min(firstUnnumbered, change.getFrom());
+			}
+			removedTasks.addAll(change.getRemoved());
+			for (Task task : change.getAddedSubList()) {
+				addTask(task);
+			}
+		}
+		for (Task task : removedTasks) {
+			removeTask(task);
+		}
+	}
+	
+	@Override
+	public void indexIdChanged(Task task, String previousIndexId) {
+		if (occurrences.containsKey(task)) {
+			removeIdTask(previousIndexId, task);
+			addIdTask(task.getIndexId(), task);
+		}
+		for (TaskListener listener : listeners) {
+			listener.indexIdChanged(task, previousIndexId);
+		}
+	}
+	
+	@Override
+	public void wordsChanged(Task task) {
+		for (TaskListener listener : listeners) {
+			listener.wordsChanged(task);
+		}
+	}
+	
+	/**
+	 * GET the position of the task in the list, or -1 if it is not in the list
+	 */
+	public int indexOf(Task task) {
+		if (!occurrences.containsKey(task)) {
+			return -1;
+		}
+		if (!isAtKeptPosition(task)) {
+			renumber(firstUnnumbered);
+			if (!isAtKeptPosition(task)) {
+				// the position was set outside the list operations
+				renumber(0);
+			}
+		}
+		return task.getIndexInList();
+	}
+	
+	/**
+	 * GET the position of the first task with the given index ID, or -1 if there is none
+	 */
+	public int indexOfId(String indexId) {
+		Set<Task> tasks = idTasks.get(indexId);
+		if (tasks == null) {
+			return -1;
+		}
+		int firstPosition = -1;
+		for (Task task : tasks) {
+			int position = indexOf(task);
+			if (firstPosition < 0 || (position >= 0 && position < firstPosition)) {
+				firstPosition = position;
+			}
+		}
+		return firstPosition;
+	}
+	
+	private boolean isAtKeptPosition(Task task) {
+		int position = task.getIndexInList();
+		return position >= 0 && position < list.size() && list.get(position) == task;
+	}
+	
+	private void renumber(int fromIndex) {
+		for (int i = fromIndex; i < list.size(); i++) {
+			list.get(i).setIndexInList(i);
+		}
+		firstUnnumbered = list.size();
+	}
+	
+	/*************************************** update the index **************************************/
+	
+	private void addTask(Task task) {
+		Integer count = occurrences.get(task);
+		if (count != null) {
+			occurrences.put(task, count + 1);
+			return;
+		}
+		occurrences.put(task, 1);
+		addIdTask(task.getIndexId(), task);
+		task.setListener(this);
+	}
+	
+	// A task in the list more than once is forgotten with its last occurrence
+	private void removeTask(Task task) {
+		Integer count = occurrences.get(task);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			occurrences.put(task, count - 1);
+			return;
+		}
+		occurrences.remove(task);
+		removeIdTask(task.getIndexId(), task);
+		// a task moved to another list may have been added to it first
+		if (task.getListener() == this) {
+			task.setListener(null);
+		}
+	}
+	
+	private void addIdTask(String indexId, Task task) {
+		Set<Task> tasks = idTasks.get(indexId);
+		if (tasks == null) {
+			idTasks.put(indexId, Collections.singleton(task));
+			return;
+		}
+		if (tasks.size() == 1) {
+			Set<Task> sharedTasks = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+			sharedTasks.addAll(tasks);
+			idTasks.put(indexId, sharedTasks);
+			tasks = sharedTasks;
+		}
+		tasks.add(task);
+	}
+	
+	private void removeIdTask(String indexId, Task task) {
+		Set<Task> tasks = idTasks.get(indexId);
+		if (tasks == null) {
+			return;
+		}
+		if (tasks.size() == 1) {
+			if (tasks.iterator().next() == task) {
+				idTasks.remove(indexId);
+			}
+			return;
+		}
+		tasks.remove(task);
+		if (tasks.size() == 1) {
+			idTasks.put(indexId, Collections.singleton(tasks.iterator().next()));
+		}
+	}
+}
+
+/**
+ * 
+ * The tasks of a list by the words of their work info and tag, the text being split into words at 
+ * every character which is neither a letter nor a digit. The index is updated from the changes of 
+ * the list and told by the task index of the list when the work info or tag of a task changes, so a 
+ * lookup never goes through the list. The distinct words are in turn kept by each of their parts of up to 
+ * GRAM_LENGTH characters, so that the words containing a searched part are found without checking 
+ * every word.
+ *
+ */
+class WordIndex implements ListChangeListener<Task>, TaskListener {
+	// Matched tasks above this fraction of the list are put in order without sorting
+	private static final int LIST_ORDER_RATIO = 16;
+	// Length of the longest parts of words by which the words are kept
+	private static final int GRAM_LENGTH = 3;
+	
+	private List<Task> list;
+	private TaskIndex taskIndex;
+	// Indexed words of each task, the tasks with each word and the words with each part of a word
+	private Map<Task, IndexedWords> indexedTasks = new IdentityHashMap<Task, IndexedWords>();
+	private Map<String, Set<Task>> wordTasks = new HashMap<String, Set<Task>>();
+	private Map<String, Set<String>> gramWords = new HashMap<String, Set<String>>();
+	// Number of changes to the list and to the words of its tasks
+	private int changes = 0;
+	
+	public WordIndex(ObservableList<Task> list, TaskIndex taskIndex) {
+		this.list = list;
+		this.taskIndex = taskIndex;
+		for (Task task : list) {
+			addTask(task);
+		}
+		list.addListener(this);
+		taskIndex.addListener(this);
+	}
+	
+	// The removed tasks are forgotten after the added ones are counted, so that the words of the 
+	// tasks which are only moved, such as by setAll, are not split again
+	@Override
+	public void onChanged(Change<? extends Task> change) {
+		changes++;
+		List<Task> removedTasks = new ArrayList<Task>();
+		while (change.next()) {
+			removedTasks.addAll(change.getRemoved());
+			for (Task task : change.getAddedSubList()) {
+				addTask(task);
+			}
+		}
+		for (Task task : removedTasks) {
+			removeTask(task);
+		}
+	}
+	
+	@Override
+	public void indexIdChanged(Task task, String previousIndexId) {
+	}
+	
+	@Override
+	public void wordsChanged(Task task) {
+		changes++;
+		IndexedWords indexedWords = indexedTasks.get(task);
+		if (indexedWords != null) {
+			removeWords(task, indexedWords.words);
+			indexedWords.words = getWords(task);
+			addWords(task, indexedWords.words);
+		}
+	}
+	
+	public int getChanges() {
+		return changes;
+	}
+	
+	/**
+	 * GET the tasks in which each word of the work info is part of a word, in their order in the
+	 * list, or null if the work info has no word
+	 */
+	public List<Task> getTasksWithWords(String workInfo) {
+		List<String> searchedWords = split(workInfo.toLowerCase());
+		if (searchedWords.isEmpty()) {
+			return null;
+		}
+		// the longest word is looked up, as it is part of the fewest words, and the tasks are then 
+		// checked for the other words
+		String longestWord = Collections.max(searchedWords, new Comparator<String>() {
+			@Override
+			public int compare(String word1, String word2) {
+				return Integer.compare(word1.length(), word2.length());
+			}
+		});
+		searchedWords.remove(longestWord);
+		Set<Task> matchedTasks = getTasksWithPartOfWord(longestWord);
+		Iterator<Task> iterator = matchedTasks.iterator();
+		while (iterator.hasNext()) {
+			if (!indexedTasks.get(iterator.next()).hasPartOfWords(searchedWords)) {
+				iterator.remove();
+			}
+		}
+		return getInListOrder(matchedTasks);
+	}
+	
+	// Many tasks are put in order by going through the list, a few by sorting them on their positions
+	private List<Task> getInListOrder(Set<Task> tasks) {
+		List<Task> result = new ArrayList<Task>(tasks.size());
+		if (tasks.size() > list.size() / LIST_ORDER_RATIO) {
+			for (Task task : list) {
+				if (tasks.contains(task)) {
+					result.add(task);
+				}
+			}
+			return result;
+		}
+		result.addAll(tasks);
+		Collections.sort(result, new Comparator<Task>() {
+			@Override
+			public int compare(Task task1, Task task2) {
+				return Integer.compare(taskIndex.indexOf(task1), taskIndex.indexOf(task2));
+			}
+		});
+		return result;
+	}
+	
+	private Set<Task> getTasksWithPartOfWord(String searchedWord) {
+		Set<Task> tasks = newTaskSet();
+		for (String word : getWordsWithPart(searchedWord)) {
+			tasks.addAll(wordTasks.get(word));
+		}
+		return tasks;
+	}
+	
+	/**
+	 * GET the indexed words containing the given part. A short part is kept with its words, 
+	 * while for a longer one the words of its least common gram are checked for the whole part.
+	 */
+	private Collection<String> getWordsWithPart(String part) {
+		if (part.length() <= GRAM_LENGTH) {
+			Set<String> words = gramWords.get(part);
+			return words == null ? Collections.<String>emptySet() : words;
+		}
+		Set<String> fewestWords = null;
+		for (int i = 0; i + GRAM_LENGTH <= part.length(); i++) {
+			Set<String> words = gramWords.get(part.substring(i, i + GRAM_LENGTH));
+			if (words == null) {
+				return Collections.<String>emptySet();
+			}
+			if (fewestWords == null || words.size() < fewestWords.size()) {
+				fewestWords = words;
+			}
+		}
+		List<String> result = new ArrayList<String>();
+		for (String word : fewestWords) {
+			if (word.contains(part)) {
+				result.add(word);
+			}
+		}
+		return result;
+	}
+	
+	/*************************************** update the index **************************************/
+	
+	// A task in the list more than once is indexed once and removed with its last occurrence
+	private void addTask(Task task) {
+		IndexedWords indexedWords = indexedTasks.get(task);
+		if (indexedWords != null) {
+			indexedWords.occurrences++;
+			return;
+		}
+		indexedWords = new IndexedWords(getWords(task));
+		indexedTasks.put(task, indexedWords);
+		addWords(task, indexedWords.words);
+	}
+	
+	private void removeTask(Task task) {
+		IndexedWords indexedWords = indexedTasks.get(task);
+		if (indexedWords == null || --indexedWords.occurrences > 0) {
+			return;
+		}
+		indexedTasks.remove(task);
+		removeWords(task, indexedWords.words);
+	}
+	
+	private static Set<String> getWords(Task task) {
+		Set<String> words = new HashSet<String>(split(task.getWorkInfo().toLowerCase()));
+		words.addAll(split(task.getTag().getTag().toLowerCase()));
+		return words;
+	}
+	
+	private void addWords(Task task, Set<String> words) {
+		for (String word : words) {
+			Set<Task> tasks = wordTasks.get(word);
+			if (tasks == null) {
+				tasks = newTaskSet();
+				wordTasks.put(word, tasks);
+				addGrams(word);
+			}
+			tasks.add(task);
+		}
+	}
+	
+	private void removeWords(Task task, Set<String> words) {
+		for (String word : words) {
+			Set<Task> tasks = wordTasks.get(word);
+			tasks.remove(task);
+			if (tasks.isEmpty()) {
+				wordTasks.remove(word);
+				removeGrams(word);
+			}
+		}
+	}
+	
+	private void addGrams(String word) {
+		for (String gram : getGrams(word)) {
+			Set<String> words = gramWords.get(gram);
+			if (words == null) {
+				words = new HashSet<String>();
+				gramWords.put(gram, words);
+			}
+			words.add(word);
+		}
+	}
+	
+	private void removeGrams(String word) {
+		for (String gram : getGrams(word)) {
+			Set<String> words = gramWords.get(gram);
+			words.remove(word);
+			if (words.isEmpty()) {
+				gramWords.remove(gram);
+			}
+		}
+	}
+	
+	// The distinct parts of a word which are up to GRAM_LENGTH characters long
+	private static Set<String> getGrams(String word) {
+		Set<String> grams = new HashSet<String>();
+		for (int start = 0; start < word.length(); start++) {
+			for (int end = start + 1; end <= Math.min(word.length(), start + GRAM_LENGTH); end++) {
+				grams.add(word.substring(start, end));
+			}
+		}
+		return grams;
+	}
+	
+	private static Set<Task> newTaskSet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+	}
+	
+	/**
+	 * Split a text into its words, the characters which are neither letters nor digits separating them
+	 */
+	static List<String> split(String text) {
+		List<String> words = new ArrayList<String>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean isWordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (isWordCharacter && start < 0) {
+				start = i;
+			} else if (!isWordCharacter && start >= 0) {
+				words.add(text.substring(start, i));
+				start = -1;
+			}
+		}
+		return words;
+	}
+	
+	private static class IndexedWords {
+		private Set<String> words;
+		// Number of times the task is in the list
+		private int occurrences = 1;
+		
+		IndexedWords(Set<String> words) {
+			this.words = words;
+		}
+		
+		// Check that each searched word is part of one of the indexed words
+		boolean hasPartOfWords(List<String> searchedWords) {
+			for (String searchedWord : searchedWords) {
+				boolean hasPartOfWord = false;
+				for (String word : words) {
+					if (word.contains(searchedWord)) {
+						hasPartOfWord = true;
+						break;
+					}
+				}
+				if (!hasPartOfWord) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -97,6 +97,10 @@ public class Parser {
 			return Common.COMMAND_TYPES.HELP;
 		} else if (isSyncCommand(commandTypeString)) {
 			return Common.COMMAND_TYPES.SYNC;
+		} else if (isImportCommand(commandTypeString)) {
+			return Common.COMMAND_TYPES.IMPORT;
+		} else if (isExportCommand(commandTypeString)) {
+			return Common.COMMAND_TYPES.EXPORT;
 		} else if (isExitCommand(commandTypeString)) {
 			return Common.COMMAND_TYPES.EXIT;
 		} else {
@@ -135,6 +139,9 @@ public class Parser {
 			return parseEditCommand(content);
 		} else if (isIndexCommandType(commandType)) {
 			return parseIndexCommand(content, tabIndex, model);
+		} else if (isFileCommandType(commandType)) {
+			// the file name is kept as typed, spaces included
+			return new String[] { Common.removeFirstWord(userCommand) };
 		} else {
 			return null;
 		}
@@ -145,6 +152,12 @@ public class Parser {
 		return commandType == Common.COMMAND_TYPES.EDIT;
 	}
 	
+	// Check if the command type takes a file name
+	private static boolean isFileCommandType(Common.COMMAND_TYPES commandType) {
+		return commandType == Common.COMMAND_TYPES.IMPORT
+				|| commandType == Common.COMMAND_TYPES.EXPORT;
+	}
+	
 	// Check if the command type is SEARCH type
 	private static boolean isSearchCommandType(Common.COMMAND_TYPES commandType) {
 		return commandType == Common.COMMAND_TYPES.SEARCH;
@@ -703,6 +716,8 @@ public class Parser {
 			int beginIndex = commandTypeStr.length();
 			if (isIndexCommandType(commandType)) {
 				infoList.add(new InfoWithIndex(command.substring(beginIndex), beginIndex, Common.INDEX_INDEX_INFO));
+			} else if (isFileCommandType(commandType)) {
+				infoList.add(new InfoWithIndex(command.substring(beginIndex), beginIndex, Common.INDEX_WORK_INFO));
 			} else if(commandType == Common.COMMAND_TYPES.INVALID){
 				infoList.add(new InfoWithIndex(command.substring(beginIndex), beginIndex, Common.INDEX_REDUNDANT_INFO));
 			} else {
@@ -1285,6 +1300,14 @@ public class Parser {
 		return commandTypeString.equalsIgnoreCase("sync");
 	}
 
+	private static boolean isImportCommand(String commandTypeString) {
+		return commandTypeString.equalsIgnoreCase("import");
+	}
+
+	private static boolean isExportCommand(String commandTypeString) {
+		return commandTypeString.equalsIgnoreCase("export");
+	}
+
 	private static boolean isExitCommand(String commandTypeString) {
 		return commandTypeString.equalsIgnoreCase("exit") || commandTypeString.equalsIgnoreCase("end");
 	}
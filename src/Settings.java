@@ -59,6 +59,7 @@ public class Settings {
 	private RadioButton exact;
 	private ComboBox<String> colourSchemes;
 	private TextField syncPeriodTextfield;
+	private TextField archiveAgeTextfield;
 	private ImageView bgImage;
 	private Text invalidUsername;
 	private Text invalidPassword;
@@ -156,6 +157,7 @@ public class Settings {
 		setupColourScheme();
 		setupSyncMode();
 		setupSyncPeriod();
+		setupArchiveAge();
 	}
 	
 	// set up the scene for Settings stage
@@ -283,6 +285,7 @@ public class Settings {
 			manualSync.setSelected(true);
 		}
 		syncPeriodTextfield.setText(String.valueOf(model.getSyncPeriod()));
+		archiveAgeTextfield.setText(String.valueOf(model.getArchiveAge()));
 	}
 	
 	//@author A0100927M
@@ -464,6 +467,48 @@ public class Settings {
 		hb.getChildren().addAll(syncPeriodTextfield, minutes);
 		grid.add(hb, 1, 8);
 	}
+	
+	//@author A0105667B
+	// set up the field of the number of days after which complete and trashed tasks are archived
+	private void setupArchiveAge(){
+		Label archiveAge = new Label("Archive after: ");
+		grid.add(archiveAge, 0, 9);
+		archiveAgeTextfield = new TextField();
+		archiveAgeTextfield.setId("input");
+		archiveAgeTextfield.textProperty().addListener(new ChangeListener<String>() {
+		    @Override
+		    public void changed(ObservableValue<? extends String> observable,
+		            String oldValue, String newValue) {
+		        try {
+		            // force numeric value by resetting to old value if exception is thrown
+		            Integer.parseInt(newValue);
+		            // force correct length by resetting to old value if longer than maxLength
+		            if(newValue.length() > 4 || Integer.parseInt(newValue) < 0)
+		                archiveAgeTextfield.setText(oldValue);
+		        } catch (Exception e) {
+		        	if(!newValue.equals(""))
+		            archiveAgeTextfield.setText(oldValue);
+		        }
+		    }
+		});
+		
+		archiveAgeTextfield.focusedProperty().addListener(new ChangeListener<Boolean>() {
+			public void changed(ObservableValue<? extends Boolean> ov, Boolean oldVal, Boolean newVal){
+				if(newVal == false){
+					if(archiveAgeTextfield.getText().equals(""))
+							archiveAgeTextfield.setText("0");
+				}
+			}
+		});
+		archiveAgeTextfield.setMaxWidth(50);
+		archiveAgeTextfield.setText(String.valueOf(model.getArchiveAge()));
+		Label days = new Label("day(s), 0 for never");
+		HBox hb = new HBox();
+		hb.setAlignment(Pos.CENTER_LEFT);
+		hb.setSpacing(10);
+		hb.getChildren().addAll(archiveAgeTextfield, days);
+		grid.add(hb, 1, 9);
+	}
 
 	//@author A0100927M
 	/************************** sets up background image Settings ****************************/
@@ -534,6 +579,9 @@ public class Settings {
 		}
 		
 		model.setSyncPeriod(Integer.parseInt(syncPeriodTextfield.getText()));
+		if (!archiveAgeTextfield.getText().equals("")) {
+			model.setArchiveAge(Integer.parseInt(archiveAgeTextfield.getText()));
+		}
 		successfulChange = STORE_SUCCESSFUL;
 		
 		return successfulChange;
@@ -1,5 +1,5 @@
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.FileWriter;
 import java.lang.String;
 import java.io.File;
 import java.util.logging.Level;
@@ -16,6 +16,8 @@ import org.jdom2.output.XMLOutputter;
 public class SettingsStorage extends Storage {
 
 	private static String encryptAlgo = "DES/ECB/PKCS5Padding";
+	// Shared by every store and load, so that the ciphers are only initialised once per thread
+	private static Encryptor encryptor = new Encryptor(encryptAlgo);
 	private static final String ENCRYPTION_FAIL = "fail to encrypt password";
 	
 	private static final String ROOT = "root";
@@ -27,9 +29,17 @@ public class SettingsStorage extends Storage {
 	private static final String COLOR_SCHEME="colourScheme";
 	private static final String AUTO_SYNC = "autoSync";
 	private static final String SYNC_PERIOD = "syncPeriod";
+	private static final String BINARY_STORAGE = "binaryStorage";
+	private static final String COMPRESSED_STORAGE = "compressedStorage";
+	private static final String ARCHIVE_AGE = "archiveAge";
+	private static final String STORE_INTERVAL = "storeInterval";
 	
 	private static Logger log = Logger.getLogger("SettingStorage");
 	private String dir;
+	// Settings as last read or written, the elements of which are updated in place
+	private Document storedDoc;
+	// Plain text of the password encrypted in the stored document
+	private String storedPassword;
 	public SettingsStorage(String fileName, Model model) {
 		createDir();
 		dir = findUserDocDir() + FOLDERNAME + "/" + fileName;
@@ -52,15 +62,25 @@ public class SettingsStorage extends Storage {
 		Document doc = new Document(root);
 		Element account = new Element(ACCOUNT);
 		doc.getRootElement().getChildren().add(account);
-		String encryptedPassword = encryptPassword(model.getPassword());
+		String encryptedPassword = getEncryptedPassword();
 		account = recordSettings(account, encryptedPassword);
 		//Output to XML file
-		XMLOutputter xmlOutput = new XMLOutputter();
-		xmlOutput.setFormat(Format.getPrettyFormat());
-		xmlOutput.output(doc, new FileWriter(dir));
+		writeToFile(doc);
+		storedDoc = doc;
+		storedPassword = encryptedPassword == null ? null : model.getPassword();
 		log.log(Level.INFO, "Setting saved");
 	}
 	
+	/**
+	 * @return the encrypted password of model, taken from the stored document if the password is unchanged
+	 */
+	private String getEncryptedPassword() {
+		if (storedDoc != null && model.getPassword() != null && model.getPassword().equals(storedPassword)) {
+			return storedDoc.getRootElement().getChild(ACCOUNT).getChildText(PASSWORD);
+		}
+		return encryptPassword(model.getPassword());
+	}
+	
 	private Element recordSettings(Element account, String encryptedPassword) {
 		account.addContent(new Element(USERNAME).setText(model.getUsername()));
 		account.addContent(new Element(PASSWORD).setText(encryptedPassword));
@@ -69,6 +89,10 @@ public class SettingsStorage extends Storage {
 		account.addContent(new Element(COLOR_SCHEME).setText(model.getColourScheme()));
 		account.addContent(new Element(AUTO_SYNC).setText(model.hasAutoSync() == true? Common.TRUE : Common.FALSE));
 		account.addContent(new Element(SYNC_PERIOD).setText(String.valueOf(model.getSyncPeriod())));
+		account.addContent(new Element(BINARY_STORAGE).setText(model.hasBinaryStorage() == true? Common.TRUE : Common.FALSE));
+		account.addContent(new Element(COMPRESSED_STORAGE).setText(model.hasCompressedStorage() == true? Common.TRUE : Common.FALSE));
+		account.addContent(new Element(ARCHIVE_AGE).setText(String.valueOf(model.getArchiveAge())));
+		account.addContent(new Element(STORE_INTERVAL).setText(String.valueOf(model.getStoreInterval())));
 		return account;
 	}
 	
@@ -77,49 +101,113 @@ public class SettingsStorage extends Storage {
 	
 	@Override
 	/**
-	 * Update account information to XML file of setting storage after settings changed
+	 * Update account information to XML file of setting storage after settings changed. 
+	 * Only the settings which differ from the stored ones are changed, the password is only 
+	 * encrypted again when it changed, and nothing is written if no setting changed.
 	 */
 	public void updateToFile() throws IOException{
 		 
 		  try {	 
-			 //initialize the XML file builder
-			SAXBuilder builder = new SAXBuilder();
-			File xmlFile = new File(dir);
-			Document doc = (Document) builder.build(xmlFile);
-			Element rootNode = doc.getRootElement();
+			if (storedDoc == null) {
+				storedDoc = readFromFile();
+				storedPassword = decryptPassword(storedDoc.getRootElement().getChild(ACCOUNT).getChildText(PASSWORD));
+			}
+			Element rootNode = storedDoc.getRootElement();
 			Element account = rootNode.getChild(ACCOUNT);
-			account = updateInfo(account);
+			if (!updateInfo(account)) {
+				log.log(Level.INFO, "Settings unchanged.");
+				return;
+			}
 			//Output to XML file
-			XMLOutputter xmlOutput = new XMLOutputter();
-			xmlOutput.setFormat(Format.getPrettyFormat());
-			xmlOutput.output(doc, new FileWriter(dir));
+			writeToFile(storedDoc);
 			log.log(Level.INFO, "File updated!");
 		  } catch (JDOMException e) {
 			log.log(Level.WARNING, e.getMessage());
+		  } catch (IOException io) {
+			// the stored document no longer matches the file
+			storedDoc = null;
+			throw io;
 		  }
 	}
 	
 	
-	private Element updateInfo(Element account) {
+	/**
+	 * Replace the XML file of setting storage atomically, keeping its previous version
+	 */
+	private void writeToFile(Document doc) throws IOException {
+		XMLOutputter xmlOutput = new XMLOutputter();
+		xmlOutput.setFormat(Format.getPrettyFormat());
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		xmlOutput.output(doc, data);
+		AtomicFile.write(new File(dir), data.toByteArray());
+	}
+	
+	/**
+	 * Read the XML file of setting storage, or its previous version if the file cannot be parsed
+	 */
+	private Document readFromFile() throws IOException, JDOMException {
+		SAXBuilder builder = new SAXBuilder();
+		try {
+			return (Document) builder.build(xmlFile);
+		} catch (JDOMException jdomex) {
+			File previousFile = AtomicFile.getPreviousFile(xmlFile);
+			if (!previousFile.exists()) {
+				throw jdomex;
+			}
+			log.log(Level.WARNING, "Settings cannot be read, the previous version is used: " + jdomex.getMessage());
+			return (Document) builder.build(previousFile);
+		}
+	}
+	
+	/**
+	 * Set the elements of the settings changed in model
+	 * @return whether any setting changed
+	 */
+	private boolean updateInfo(Element account) {
+		boolean isChanged = false;
 		if (model.getUsername() != null) {
-			account.getChild(USERNAME).setText(model.getUsername());				
+			isChanged |= updateField(account, USERNAME, model.getUsername());
 		}
-		String encryptedPassword = encryptPassword(model.getPassword());
-		if (model.getPassword() != null) {
-			account.getChild(PASSWORD).setText(encryptedPassword);			
+		if (model.getPassword() != null && !model.getPassword().equals(storedPassword)) {
+			String encryptedPassword = encryptPassword(model.getPassword());
+			if (encryptedPassword != null) {
+				isChanged |= updateField(account, PASSWORD, encryptedPassword);
+				storedPassword = model.getPassword();
+			}
 		}
-		account.getChild(DISPLAY_REMAINING).setText(model.getDisplayRemaining() == true? Common.TRUE : Common.FALSE);
+		isChanged |= updateField(account, DISPLAY_REMAINING, model.getDisplayRemaining() == true? Common.TRUE : Common.FALSE);
 		if (model.getThemeMode()!=null) {
-			account.getChild(THEMEMODE).setText(model.getThemeMode());	
+			isChanged |= updateField(account, THEMEMODE, model.getThemeMode());
 		}
 		if (model.getColourScheme() != null) {
-			account.getChild(COLOR_SCHEME).setText(model.getColourScheme());
+			isChanged |= updateField(account, COLOR_SCHEME, model.getColourScheme());
 		} else {
-			account.getChild(COLOR_SCHEME).setText("Default day mode");
+			isChanged |= updateField(account, COLOR_SCHEME, "Default day mode");
 		}
-		account.getChild(AUTO_SYNC).setText(model.hasAutoSync() == true? Common.TRUE : Common.FALSE);
-		account.getChild(SYNC_PERIOD).setText(String.valueOf(model.getSyncPeriod()));
-		return account;
+		isChanged |= updateField(account, AUTO_SYNC, model.hasAutoSync() == true? Common.TRUE : Common.FALSE);
+		isChanged |= updateField(account, SYNC_PERIOD, String.valueOf(model.getSyncPeriod()));
+		isChanged |= updateField(account, BINARY_STORAGE, model.hasBinaryStorage() == true? Common.TRUE : Common.FALSE);
+		isChanged |= updateField(account, COMPRESSED_STORAGE, model.hasCompressedStorage() == true? Common.TRUE : Common.FALSE);
+		isChanged |= updateField(account, ARCHIVE_AGE, String.valueOf(model.getArchiveAge()));
+		isChanged |= updateField(account, STORE_INTERVAL, String.valueOf(model.getStoreInterval()));
+		return isChanged;
+	}
+	
+	/**
+	 * Set the text of a setting element, which settings files written before the setting 
+	 * existed do not have
+	 * @return whether the text changed
+	 */
+	private boolean updateField(Element account, String fieldName, String text) {
+		Element field = account.getChild(fieldName);
+		if (field == null) {
+			field = new Element(fieldName);
+			account.addContent(field);
+		} else if (text.equals(field.getText())) {
+			return false;
+		}
+		field.setText(text);
+		return true;
 	}
 	
 	
@@ -131,9 +219,8 @@ public class SettingsStorage extends Storage {
 	 */
 	public void loadFromFile() throws IOException {
 		 
-		SAXBuilder builder = new SAXBuilder();
 		  try {
-				Document doc = (Document) builder.build(xmlFile);
+				Document doc = readFromFile();
 				//Retrieve the elements from XML file
 				Element rootNode = doc.getRootElement();
 				Element account = rootNode.getChild(ACCOUNT);
@@ -144,7 +231,13 @@ public class SettingsStorage extends Storage {
 				Element colourScheme = account.getChild(COLOR_SCHEME);
 				Element autoSync = account.getChild(AUTO_SYNC);
 				Element syncPeriod = account.getChild(SYNC_PERIOD);
+				Element binaryStorage = account.getChild(BINARY_STORAGE);
+				Element compressedStorage = account.getChild(COMPRESSED_STORAGE);
+				Element archiveAge = account.getChild(ARCHIVE_AGE);
+				Element storeInterval = account.getChild(STORE_INTERVAL);
 				String decryptedPassword= decryptPassword(password.getText());
+				storedDoc = doc;
+				storedPassword = decryptedPassword;
 				//copy the info of elements to the model
 				if (username.getText() != null) {
 					model.setUsername(username.getText());
@@ -166,7 +259,19 @@ public class SettingsStorage extends Storage {
 				}
 				if (syncPeriod.getText() != null) {
 					model.setSyncPeriod(Integer.valueOf(syncPeriod.getText()));
-				}			
+				}
+				if (binaryStorage != null) {
+					model.setBinaryStorage(binaryStorage.getText().equals(Common.TRUE) ? true : false);
+				}
+				if (compressedStorage != null) {
+					model.setCompressedStorage(compressedStorage.getText().equals(Common.TRUE) ? true : false);
+				}
+				if (archiveAge != null) {
+					model.setArchiveAge(Integer.valueOf(archiveAge.getText()));
+				}
+				if (storeInterval != null) {
+					model.setStoreInterval(Integer.valueOf(storeInterval.getText()));
+				}
 		  } catch (JDOMException jdomex) {
 			  log.log(Level.WARNING, jdomex.getMessage());
 		  }
@@ -208,12 +313,12 @@ public class SettingsStorage extends Storage {
 	}
 	
 	public String encryptString(String plainText) throws Exception {
-		return new Encryptor(encryptAlgo).encrypt(plainText);
+		return encryptor.encrypt(plainText);
 
 	}
 
 	public String decryptString(String cipherString) throws Exception {
-		return new Encryptor(encryptAlgo).decrypt(cipherString);
+		return encryptor.decrypt(cipherString);
 	}
 	
 	
@@ -1,5 +1,7 @@
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 //@author A0105667B
 
@@ -25,6 +27,36 @@ public abstract class Storage {
 		
 	};
 	
+	public void storeChangesToFile(List<Task> changedTasks) throws IOException {
+		storeToFile();
+	};
+	
+	public void prepareChanges(List<Task> changedTasks) throws IOException {
+		
+	};
+	
+	public boolean writePreparedChanges() throws IOException {
+		storeToFile();
+		return true;
+	};
+	
+	public void loadListFromFile(int tabIndex) throws IOException {
+		
+	};
+	
+	public List<Task> loadArchivedTasks(int tabIndex) throws IOException {
+		return new ArrayList<Task>();
+	};
+	
+	/**
+	 * Read the archived tasks of a list which may have the given tag and end on the day of the given 
+	 * date or before, null meaning any. Unless a storage can look the tasks up by these, all the 
+	 * archived tasks of the list are read, the caller checking them in any case.
+	 */
+	public List<Task> loadArchivedTasks(int tabIndex, String tag, CustomDate endDate) throws IOException {
+		return loadArchivedTasks(tabIndex);
+	};
+	
 	
 	/*********************create files or check file existence*****************************/
 	
@@ -47,7 +79,7 @@ public abstract class Storage {
 	 * find user's Documents directory
 	 * @return user Documents dir
 	 */
-	protected String findUserDocDir() {
+	protected static String findUserDocDir() {
 		return System.getProperty("user.home") + "/Documents/";
 	}
 
@@ -0,0 +1,277 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+//@author A0105667B
+/**
+ *
+ * This class measures how the storages scale with the number of tasks. For each
+ * number of tasks given as argument, a synthetic model is generated and stored by
+ * the XML, the compressed XML and the binary task storage, then the settings are
+ * stored once. Each
+ * measurement is repeated after some warm-up rounds and reports the median time of
+ * storeToFile() and loadFromFile(), the bytes written and the bytes allocated by the
+ * measuring thread. The complete and trash lists are loaded as well, so the load
+ * time covers every task even when their loading is deferred. Finally, the cost of
+ * one encryption and decryption of the password is reported, with the ciphers kept
+ * by a shared Encryptor and with a new Encryptor for each call.
+ *
+ * Run it with the same classpath as the application, for example:
+ *     java StorageBenchmark 1000 10000 100000 1000000
+ * The files are written to the iDo folder under names starting with "benchmark"
+ * and are deleted afterwards.
+ *
+ */
+public class StorageBenchmark {
+	private static final int[] DEFAULT_NUM_TASKS = { 1000, 10000, 100000 };
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+	private static final String FILE_PREFIX = "benchmark";
+	private static final String RESULT_FORMAT = "%-10s %9d tasks  store %9.1f ms  load %9.1f ms  written %11d bytes  allocated %9.1f MB/op  %8.1f MB/s%n";
+	private static final String ENCRYPTOR_FORMAT = "%-10s %-12s  encrypt and decrypt %9.2f us/call%n";
+	private static final String ENCRYPT_ALGO = "DES/ECB/PKCS5Padding";
+	private static final int ENCRYPTOR_CALLS = 20000;
+	// Seed of the task generator, so that every run stores the same tasks
+	private static final long SEED = 42;
+
+	private static final String[] WORK_INFOS = { "meeting with", "submit report for", "call",
+		"revise notes of", "buy groceries at", "prepare slides on", "review code of" };
+	private static final String[] SUBJECTS = { "project team", "CS2103", "mum", "the supervisor",
+		"NTUC", "week 10 lecture", "iDo storage" };
+	private static final String[] TAGS = { "-", "#work", "#school", "#family", "#errands" };
+	private static final String[] REPETITIONS = { "daily", "weekly", "monthly", "every 2 days", "every 3 weeks" };
+
+	private static com.sun.management.ThreadMXBean allocationBean;
+
+	public static void main(String[] args) throws IOException {
+		int[] numTasks = DEFAULT_NUM_TASKS;
+		if (args.length > 0) {
+			numTasks = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				numTasks[i] = Integer.parseInt(args[i]);
+			}
+		}
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		}
+		try {
+			for (int i = 0; i < numTasks.length; i++) {
+				Model model = generateModel(numTasks[i]);
+				benchmarkTaskStorage("xml", model, numTasks[i], false, false);
+				benchmarkTaskStorage("gzip xml", model, numTasks[i], false, true);
+				benchmarkTaskStorage("binary", model, numTasks[i], true, false);
+			}
+			benchmarkSettingsStorage(new Model());
+			benchmarkEncryptor();
+		} finally {
+			deleteBenchmarkFiles();
+		}
+	}
+
+	/************************************ synthetic tasks ***************************************/
+
+	/**
+	 * Generate a model with the given number of tasks: most of them pending, the others complete
+	 * or trashed. The tasks are a mix of floating, timed, recurring and important tasks.
+	 */
+	static Model generateModel(int numTasks) {
+		Random random = new Random(SEED);
+		Model model = new Model();
+		model.setArchiveAge(0);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < numTasks; i++) {
+			Task task = generateTask(random, now);
+			int list = random.nextInt(10);
+			if (list < 6) {
+				model.addTaskToPending(task);
+			} else if (list < 9) {
+				model.addTaskToComplete(task);
+			} else {
+				model.addTaskToTrash(task);
+			}
+		}
+		Common.sortList(model.getPendingList());
+		Common.sortList(model.getCompleteList());
+		Common.sortList(model.getTrashList());
+		return model;
+	}
+
+	private static Task generateTask(Random random, long now) {
+		Task task = new Task();
+		task.setWorkInfo(WORK_INFOS[random.nextInt(WORK_INFOS.length)] + " "
+				+ SUBJECTS[random.nextInt(SUBJECTS.length)]);
+		String repetition = Common.NULL;
+		int kind = random.nextInt(4);
+		if (kind > 0) {
+			// timed and recurring tasks are spread over two months around now
+			CustomDate startDate = new CustomDate();
+			startDate.setTimeInMillis(now + (random.nextInt(60) - 30) * CustomDate.DAY_IN_MILLIS);
+			CustomDate endDate = new CustomDate();
+			endDate.setTimeInMillis(startDate.getTimeInMillis() + (1 + random.nextInt(4)) * CustomDate.DAY_IN_MILLIS / 24);
+			task.setStartDate(startDate);
+			task.setEndDate(endDate);
+		}
+		if (kind == 3) {
+			repetition = REPETITIONS[random.nextInt(REPETITIONS.length)];
+			task.setNumOccurrences(random.nextInt(10));
+		}
+		task.setTag(Tag.valueOf(TAGS[random.nextInt(TAGS.length)], repetition));
+		task.setIsImportant(random.nextInt(5) == 0);
+		return task;
+	}
+
+	/************************************ measurements ***************************************/
+
+	private static void benchmarkTaskStorage(String format, Model model, int numTasks, boolean isBinary,
+			boolean isCompressed) throws IOException {
+		String fileName = FILE_PREFIX + "_" + format.replace(' ', '_') + "_" + numTasks + ".xml";
+		model.setBinaryStorage(isBinary);
+		model.setCompressedStorage(isCompressed);
+		TaskStorage storage = new TaskStorage(fileName, model);
+		long[] storeTimes = new long[MEASURED_ROUNDS];
+		long[] loadTimes = new long[MEASURED_ROUNDS];
+		long allocatedBytes = 0;
+		for (int round = -WARMUP_ROUNDS; round < MEASURED_ROUNDS; round++) {
+			long startAllocation = getAllocatedBytes();
+			long startTime = System.nanoTime();
+			storage.storeToFile();
+			long storeTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			Model loadedModel = new Model();
+			loadedModel.setArchiveAge(0);
+			new TaskStorage(fileName, loadedModel).loadFromFile();
+			loadedModel.loadList(Common.COMPLETE_TAB);
+			loadedModel.loadList(Common.TRASH_TAB);
+			long loadTime = System.nanoTime() - startTime;
+			if (round >= 0) {
+				storeTimes[round] = storeTime;
+				loadTimes[round] = loadTime;
+				allocatedBytes += getAllocatedBytes() - startAllocation;
+			}
+		}
+		printResult(format, numTasks, storeTimes, loadTimes, getWrittenBytes(fileName), allocatedBytes);
+	}
+
+	/**
+	 * The settings do not depend on the tasks, so they are measured once
+	 */
+	private static void benchmarkSettingsStorage(Model model) throws IOException {
+		String fileName = FILE_PREFIX + "_settings.xml";
+		model.setUsername("benchmark");
+		model.setPassword("benchmark");
+		SettingsStorage storage = new SettingsStorage(fileName, model);
+		long[] storeTimes = new long[MEASURED_ROUNDS];
+		long[] loadTimes = new long[MEASURED_ROUNDS];
+		long allocatedBytes = 0;
+		for (int round = -WARMUP_ROUNDS; round < MEASURED_ROUNDS; round++) {
+			long startAllocation = getAllocatedBytes();
+			long startTime = System.nanoTime();
+			storage.storeToFile();
+			long storeTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			new SettingsStorage(fileName, new Model()).loadFromFile();
+			long loadTime = System.nanoTime() - startTime;
+			if (round >= 0) {
+				storeTimes[round] = storeTime;
+				loadTimes[round] = loadTime;
+				allocatedBytes += getAllocatedBytes() - startAllocation;
+			}
+		}
+		printResult("settings", 0, storeTimes, loadTimes, getWrittenBytes(fileName), allocatedBytes);
+	}
+
+	/**
+	 * Measure the cost of one call, as paid by every store and load of the settings
+	 */
+	private static void benchmarkEncryptor() throws IOException {
+		try {
+			Encryptor sharedEncryptor = new Encryptor(ENCRYPT_ALGO);
+			for (boolean isShared : new boolean[] { true, false }) {
+				long time = 0;
+				for (int round = -WARMUP_ROUNDS; round < MEASURED_ROUNDS; round++) {
+					long startTime = System.nanoTime();
+					for (int i = 0; i < ENCRYPTOR_CALLS; i++) {
+						Encryptor encryptor = isShared ? sharedEncryptor : new Encryptor(ENCRYPT_ALGO);
+						encryptor.decrypt(encryptor.encrypt("benchmark" + i));
+					}
+					if (round >= 0) {
+						time += System.nanoTime() - startTime;
+					}
+				}
+				System.out.printf(ENCRYPTOR_FORMAT, "encryptor", isShared ? "shared" : "new per call",
+						time / 1e3 / MEASURED_ROUNDS / ENCRYPTOR_CALLS);
+			}
+		} catch (Exception e) {
+			throw new IOException("Cannot benchmark the encryptor: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * @return the bytes allocated by the current thread so far, 0 if the JVM cannot tell
+	 */
+	private static long getAllocatedBytes() {
+		if (allocationBean == null || !allocationBean.isThreadAllocatedMemorySupported()) {
+			return 0;
+		}
+		return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return the size of the files last written for the given storage file, without the previous versions
+	 */
+	private static long getWrittenBytes(String fileName) {
+		String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+		long writtenBytes = 0;
+		for (File file : getBenchmarkFiles()) {
+			if (file.getName().startsWith(baseName) && !file.getName().endsWith(".prev")) {
+				writtenBytes += file.length();
+			}
+		}
+		return writtenBytes;
+	}
+
+	private static void printResult(String storage, int numTasks, long[] storeTimes, long[] loadTimes,
+			long writtenBytes, long allocatedBytes) {
+		double totalSeconds = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			totalSeconds += (storeTimes[i] + loadTimes[i]) / 1e9;
+		}
+		double allocatedMB = allocatedBytes / (1024.0 * 1024.0);
+		System.out.printf(RESULT_FORMAT, storage, numTasks, median(storeTimes) / 1e6, median(loadTimes) / 1e6,
+				writtenBytes, allocatedMB / MEASURED_ROUNDS, totalSeconds == 0 ? 0 : allocatedMB / totalSeconds);
+	}
+
+	private static long median(long[] times) {
+		long[] sortedTimes = Arrays.copyOf(times, times.length);
+		Arrays.sort(sortedTimes);
+		return sortedTimes[sortedTimes.length / 2];
+	}
+
+	/************************************ benchmark files ***************************************/
+
+	private static File[] getBenchmarkFiles() {
+		File folder = new File(Storage.findUserDocDir() + Storage.FOLDERNAME);
+		File[] files = folder.listFiles();
+		if (files == null) {
+			return new File[0];
+		}
+		int numFiles = 0;
+		for (File file : files) {
+			if (file.getName().startsWith(FILE_PREFIX)) {
+				files[numFiles++] = file;
+			}
+		}
+		return Arrays.copyOf(files, numFiles);
+	}
+
+	private static void deleteBenchmarkFiles() {
+		for (File file : getBenchmarkFiles()) {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//@author A0105667B
+/**
+ *
+ * This class watches the folder of a storage for files changed by another instance
+ * of the application or by a script. The events of a burst of writes are gathered
+ * for a short delay, then the storage is asked whether any of its files differs from
+ * the state it last read or wrote itself. If so, the changes are read in the watching
+ * thread and merged into model through the given executor, which runs the merge on
+ * the thread executing commands. The local changes whose write was deferred until
+ * the merge are then scheduled to be written.
+ *
+ */
+public class StorageWatcher {
+	private static Logger log = Logger.getLogger("StorageWatcher");
+	// Time to wait for the other events of the same write before checking the files
+	private static final long SETTLE_DELAY_IN_MILLIS = 200;
+
+	private TaskStorage storage;
+	private StorageWriter writer;
+	private Executor mergeExecutor;
+	private WatchService watchService;
+	private Thread watchThread;
+
+	public StorageWatcher(TaskStorage storage, StorageWriter writer, Executor mergeExecutor) {
+		this.storage = storage;
+		this.writer = writer;
+		this.mergeExecutor = mergeExecutor;
+	}
+
+	/**
+	 * Start watching the folder of the storage in a background thread
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+		Path folder = storage.getFolder().toPath();
+		folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		watchThread = new Thread("StorageWatcher") {
+			@Override
+			public void run() {
+				watch();
+			}
+		};
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	public void stop() {
+		try {
+			if (watchService != null) {
+				watchService.close();
+			}
+		} catch (IOException io) {
+			log.log(Level.WARNING, "Cannot stop watching the files: " + io.getMessage());
+		}
+	}
+
+	/********************************** watch the files ************************************/
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				boolean hasStorageEvent = hasStorageEvent(key);
+				key.reset();
+				if (hasStorageEvent) {
+					Thread.sleep(SETTLE_DELAY_IN_MILLIS);
+					discardPendingEvents();
+					checkStorage();
+				}
+			}
+		} catch (InterruptedException ie) {
+			log.log(Level.INFO, "Stopped watching the files.");
+		} catch (ClosedWatchServiceException cwse) {
+			log.log(Level.INFO, "Stopped watching the files.");
+		}
+	}
+
+	private boolean hasStorageEvent(WatchKey key) {
+		boolean hasStorageEvent = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.context() instanceof Path) {
+				String fileName = ((Path) event.context()).getFileName().toString();
+				hasStorageEvent = hasStorageEvent || storage.isStorageFile(fileName);
+			}
+		}
+		return hasStorageEvent;
+	}
+
+	private void discardPendingEvents() {
+		WatchKey key;
+		while ((key = watchService.poll()) != null) {
+			key.pollEvents();
+			key.reset();
+		}
+	}
+
+	private void checkStorage() {
+		final ExternalChanges changes;
+		try {
+			changes = storage.readExternalChanges();
+		} catch (IOException io) {
+			log.log(Level.WARNING, "Cannot read the changed files: " + io.getMessage());
+			return;
+		}
+		if (changes == null) {
+			return;
+		}
+		mergeExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					storage.mergeExternalChanges(changes);
+					writer.scheduleWrite();
+				} catch (IOException io) {
+					log.log(Level.WARNING, "Cannot merge the changed files: " + io.getMessage());
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//@author A0105667B
+/**
+ *
+ * This class writes the changes of a storage in the background. Commands only
+ * prepare their changes in memory through markDirty(); the changes gathered
+ * within one interval are then written to disk together by a timer thread.
+ * Pending changes are written by flush(), which is called before exiting and
+ * by a shutdown hook for the other ways the application is closed. A write
+ * deferred by the storage until the changes of another writer are merged is
+ * scheduled again through scheduleWrite() after the merge.
+ *
+ */
+public class StorageWriter {
+	private static Logger log = Logger.getLogger("StorageWriter");
+
+	private Storage storage;
+	private Timer writeTimer;
+	// Minimum time between the starts of two writes
+	private long interval;
+	// Indicator whether a write has been scheduled and not yet started
+	private boolean isScheduled = false;
+	private long lastWriteTime = 0;
+	// Latency of the writes to disk in milliseconds
+	private long lastWriteLatency = 0;
+	private long totalWriteLatency = 0;
+	private int numWrites = 0;
+
+	public StorageWriter(Storage storage, long interval) {
+		this.storage = storage;
+		this.interval = interval;
+		writeTimer = new Timer("StorageWriter", true);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					flush();
+				} catch (IOException io) {
+					log.log(Level.WARNING, "Cannot write the pending changes: " + io.getMessage());
+				}
+			}
+		});
+	}
+
+	public synchronized void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Prepare the changes of the given tasks and schedule them to be written
+	 * @param changedTasks    tasks modified by a command, null if unknown
+	 * @throws IOException
+	 */
+	public void markDirty(List<Task> changedTasks) throws IOException {
+		storage.prepareChanges(changedTasks);
+		scheduleWrite();
+	}
+
+	/**
+	 * Write all pending changes immediately in the calling thread
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		write();
+	}
+
+	public void stop() {
+		writeTimer.cancel();
+	}
+
+	/********************************** background writes ************************************/
+
+	/**
+	 * Schedule the changes already prepared to be written, within the interval of the last write
+	 */
+	public synchronized void scheduleWrite() {
+		if (isScheduled) {
+			return;
+		}
+		isScheduled = true;
+		long delay = Math.max(0, lastWriteTime + interval - System.currentTimeMillis());
+		writeTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				writeInBackground();
+			}
+		}, delay);
+	}
+
+	private void writeInBackground() {
+		synchronized (this) {
+			isScheduled = false;
+			lastWriteTime = System.currentTimeMillis();
+		}
+		try {
+			write();
+		} catch (IOException io) {
+			log.log(Level.WARNING, "Cannot write the pending changes: " + io.getMessage());
+		}
+	}
+
+	private void write() throws IOException {
+		long startTime = System.nanoTime();
+		if (storage.writePreparedChanges()) {
+			recordLatency((System.nanoTime() - startTime) / 1000000);
+		}
+	}
+
+	/********************************** write latency ************************************/
+
+	private synchronized void recordLatency(long latency) {
+		lastWriteLatency = latency;
+		totalWriteLatency += latency;
+		numWrites++;
+		log.log(Level.FINE, "Changes written in " + latency + " ms.");
+	}
+
+	public synchronized long getLastWriteLatency() {
+		return lastWriteLatency;
+	}
+
+	public synchronized long getAverageWriteLatency() {
+		return numWrites == 0 ? 0 : totalWriteLatency / numWrites;
+	}
+
+	public synchronized int getNumWrites() {
+		return numWrites;
+	}
+}
@@ -3,7 +3,11 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -270,9 +274,10 @@ public class Synchronization  {
 			throws ServiceException, IOException {
 		List<CalendarEventEntry> toBeUpdatedOnGCal = new ArrayList<CalendarEventEntry>();
 		List<Task> pendingList = model.getPendingList();
+		Map<String, Integer> entryPositions = getGCalEntriesPositions(entries);
 		for (int i = 0; i < pendingList.size(); i++) {
 			if (pendingList.get(i).getStatus() == Task.Status.UNCHANGED) {
-				checkEntriesForUpdate(service, entries, feedURL,
+				checkEntriesForUpdate(service, entries, entryPositions, feedURL,
 						toBeUpdatedOnGCal, pendingList, i);
 			}
 		}
@@ -289,6 +294,8 @@ public class Synchronization  {
 	 *            the currently connected service
 	 * @param entries
 	 *            list of event entries on Google Calendar
+	 * @param entryPositions
+	 *            the positions of the entries by their IDs
 	 * @param feedURL
 	 *            the URL of the calendar
 	 * @param toBeUpdatedOnGCal
@@ -299,23 +306,22 @@ public class Synchronization  {
 	 *            the index of the task
 	 */
 	private void checkEntriesForUpdate(CalendarService service,
-			List<CalendarEventEntry> entries, URL feedURL,
+			List<CalendarEventEntry> entries, Map<String, Integer> entryPositions, URL feedURL,
 			List<CalendarEventEntry> toBeUpdatedOnGCal, List<Task> pendingList,
 			int i) throws IOException, ServiceException {
-		for (int j = 0; j < entries.size(); j++) {
-			boolean isSameId = pendingList.get(i).getIndexId().equals(entries.get(j).getId());
-			if (isSameId) {
-				DateTime updated = entries.get(j).getUpdated();
-				updated.setTzShift(8 * 60);
-				boolean hasLatestModificationFromiDo = CustomDate.compare(pendingList.get(i)
-						.getLatestModifiedDate(), new CustomDate(
-						updated)) > 0;
-				if (hasLatestModificationFromiDo) {
-					updateModifiedEventOnGCal(service, entries,feedURL, toBeUpdatedOnGCal, pendingList, i, j);
-				} else {
-					updateModifiedTaskOniDo(entries, pendingList, i, j);
-				}
-				break;
+		Integer j = entryPositions.get(pendingList.get(i).getIndexId());
+		// an entry replaced on Google Calendar earlier in the sync no longer has this ID
+		boolean isSameId = j != null && pendingList.get(i).getIndexId().equals(entries.get(j).getId());
+		if (isSameId) {
+			DateTime updated = entries.get(j).getUpdated();
+			updated.setTzShift(8 * 60);
+			boolean hasLatestModificationFromiDo = CustomDate.compare(pendingList.get(i)
+					.getLatestModifiedDate(), new CustomDate(
+					updated)) > 0;
+			if (hasLatestModificationFromiDo) {
+				updateModifiedEventOnGCal(service, entries,feedURL, toBeUpdatedOnGCal, pendingList, i, j);
+			} else {
+				updateModifiedTaskOniDo(entries, pendingList, i, j);
 			}
 		}
 	}
@@ -629,8 +635,9 @@ public class Synchronization  {
 		List<CalendarEventEntry> tobeDelete = new ArrayList<CalendarEventEntry>();
 		ObservableList<Task> completedTasks = model.getCompleteList();
 		ObservableList<Task> deletedTasks = model.getTrashList();
-		deleteTasksInOtherTabsOnGCal(entries, tobeDelete, completedTasks);
-		deleteTasksInOtherTabsOnGCal(entries, tobeDelete, deletedTasks);
+		Map<String, Integer> entryPositions = getGCalEntriesPositions(entries);
+		deleteTasksInOtherTabsOnGCal(entries, entryPositions, tobeDelete, completedTasks);
+		deleteTasksInOtherTabsOnGCal(entries, entryPositions, tobeDelete, deletedTasks);
 		deleteEvents(service, tobeDelete, feedUrl);
 		
 	}
@@ -641,22 +648,21 @@ public class Synchronization  {
 	 * 
 	 * @param entries
 	 *            the list of tasks in iDo
+	 * @param entryPositions
+	 *            the positions of the entries by their IDs
 	 * @param tobeDelete
 	 *            the list of event entries to be deleted on Google Calendar
 	 * @param movedTasks
 	 *            the list of tasks in complete tab or trash tab
 	 */
 	private void deleteTasksInOtherTabsOnGCal(List<CalendarEventEntry> entries,
-			List<CalendarEventEntry> tobeDelete,
+			Map<String, Integer> entryPositions, List<CalendarEventEntry> tobeDelete,
 			ObservableList<Task> movedTasks) {
 		for (int i = 0; i < movedTasks.size(); i++) {
 			if (movedTasks.get(i).getStatus() == Task.Status.DELETED) {
-				for (int j = 0; j < entries.size(); j++) {
-					if (movedTasks.get(i).getIndexId()
-							.equals(entries.get(j).getId())) {
-						tobeDelete.add(entries.get(j));
-						break;
-					}
+				Integer j = entryPositions.get(movedTasks.get(i).getIndexId());
+				if (j != null) {
+					tobeDelete.add(entries.get(j));
 				}
 				movedTasks.get(i).setStatus(Task.Status.UNCHANGED);
 			}
@@ -675,7 +681,7 @@ public class Synchronization  {
 	private void deleteTasksLocally(List<CalendarEventEntry> entries,
 			Model model) {
 		List<Task> pendingList = model.getPendingList();
-		ArrayList<String> entryIds = getGCalEntriesIdList(entries);
+		Set<String> entryIds = getGCalEntriesPositions(entries).keySet();
 		for (int i = 0; i < pendingList.size(); i++) {
 			if (!entryIds.contains(pendingList.get(i).getIndexId()) && pendingList.get(i).getStatus() != Task.Status.ADDED_WHEN_SYNC) {
 				Task t = pendingList.remove(i);
@@ -687,18 +693,19 @@ public class Synchronization  {
 	}
 	
 	/**
-	 * This function is used to get the list of entries IDs from iDo
+	 * This function is used to get the position of the first entry with each ID
+	 * on Google Calendar
 	 * 
 	 * @param entries
 	 *            the list of entries on Google Calendar
-	 * @return the list of IDs
+	 * @return the positions of the entries by their IDs
 	 */
-	private ArrayList<String> getGCalEntriesIdList(List<CalendarEventEntry> entries) {
-		ArrayList<String> entryIds = new ArrayList<String>();
-		for (int i = 0; i < entries.size(); i++) {
-			entryIds.add(entries.get(i).getId());
+	private Map<String, Integer> getGCalEntriesPositions(List<CalendarEventEntry> entries) {
+		Map<String, Integer> entryPositions = new HashMap<String, Integer>(entries.size() * 2);
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			entryPositions.put(entries.get(i).getId(), i);
 		}
-		return entryIds;
+		return entryPositions;
 	}
 	
 	/**
@@ -712,16 +719,20 @@ public class Synchronization  {
 	 */
 	private void addEventsLocally(List<CalendarEventEntry> entries, Model model) {
 		List<Task> pendingList = model.getPendingList();
-		ArrayList<String> taskIds = getLocalEntriesIdList(pendingList);
-		taskIds.addAll(model.getRemovedIdDuringSync());
+		Set<String> removedIds = new HashSet<String>(model.getRemovedIdDuringSync());
 		
+		// find all new entries before adding any, as adding a task drops the index of the list
+		List<Integer> newEntries = new ArrayList<Integer>();
 		for (int i = 0; i < entries.size(); i++) {
-			CalendarEventEntry e = entries.get(i);
-			boolean isNewEntry = !taskIds.contains(e.getId());
+			String id = entries.get(i).getId();
+			boolean isNewEntry = model.getIndexFromPendingById(id) < 0 && !removedIds.contains(id);
 			if (isNewEntry) {
-				processAddingNewTask(entries, pendingList, i, e);
+				newEntries.add(i);
 			}
 		}
+		for (int i : newEntries) {
+			processAddingNewTask(entries, pendingList, i, entries.get(i));
+		}
 	}
 	
 	/**
@@ -779,7 +790,7 @@ public class Synchronization  {
 		CustomDate endDate = new CustomDate(end);
 		newTask.setStartDate(startDate);
 		newTask.setEndDate(endDate);
-		newTask.setTag(new Tag(newTask.getTag().getTag(), "null"));
+		newTask.setTag(Tag.valueOf(newTask.getTag().getTag(), "null"));
 	}
 	
 	/**
@@ -804,7 +815,7 @@ public class Synchronization  {
 
 		String freq = getFrequency(recurData);
 		freq = checkInterval(recurData, freq);
-		newTask.setTag(new Tag(newTask.getTag().getTag(), freq.toLowerCase()));
+		newTask.setTag(Tag.valueOf(newTask.getTag().getTag(), freq.toLowerCase()));
 
 		checkOccurrencesForTimedRecurringTask(newTask, recurData, freq);
 	}
@@ -822,7 +833,7 @@ public class Synchronization  {
 	 */
 	private void checkOccurrencesForTimedRecurringTask(Task newTask,
 			String recurData, String freq) {
-		newTask.setTag(new Tag(newTask.getTag().getTag(), freq.toLowerCase()));
+		newTask.setTag(Tag.valueOf(newTask.getTag().getTag(), freq.toLowerCase()));
 		if (recurData.contains("COUNT=")) {
 			int startIndex = recurData.indexOf("COUNT=") + 6;
 			int endIndex = recurData.indexOf(";", startIndex);
@@ -891,7 +902,7 @@ public class Synchronization  {
 			String recurData) {
 		String freq = getFrequency(recurData);
 		freq = checkInterval(recurData, freq);
-		task.setTag(new Tag(task.getTag().getTag(), freq.toLowerCase()));
+		task.setTag(Tag.valueOf(task.getTag().getTag(), freq.toLowerCase()));
 		checkOccurrencesForAllDayRecurringTask(task, recurData, freq);
 	}
 	
@@ -928,7 +939,7 @@ public class Synchronization  {
 	private void setFloatingTask(Task task) {
 		task.setStartDate(null);
 		task.setEndDate(null);
-		task.setTag(new Tag(task.getTag().getTag(), "null"));
+		task.setTag(Tag.valueOf(task.getTag().getTag(), "null"));
 	}
 	
 	/**
@@ -1014,21 +1025,6 @@ public class Synchronization  {
 	}
 
 	
-	/**
-	 * Get all entries ID of events in the local application iDo
-	 * 
-	 * @param pendingList
-	 *            the list to tasks to retrieve IDs
-	 * @return the list of entries IDs
-	 */
-	private ArrayList<String> getLocalEntriesIdList(List<Task> pendingList) {
-		ArrayList<String> taskIds = new ArrayList<String>();
-		for (int i = 0; i < pendingList.size(); i++) {
-			taskIds.add(pendingList.get(i).getIndexId());
-		}
-		return taskIds;
-	}
-	
 	/**
 	 * Retrieve all event entries from calendar "iDo" on Google Calendar
 	 *
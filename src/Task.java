@@ -3,6 +3,9 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 
 /**
  * 
@@ -27,31 +30,52 @@ public class Task implements Comparable<Task> {
 		UNCHANGED, NEWLY_ADDED, DELETED, ADDED_WHEN_SYNC, DELETED_WHEN_SYNC
 	}
 
+	/*
+	 * Each property below is only created when a table binds to it, most tasks never being 
+	 * displayed. Until then its value is kept in the plain field next to it.
+	 */
+	
 	// Property indicating the status of the row, whether it is the last overdue task in list or important task
 	private ObjectProperty<RowStatus> rowStatus;
+	private RowStatus rowStatusValue;
 	
 	// Properties of the start date and its string
 	private ObjectProperty<CustomDate> startDate;
+	private CustomDate startDateValue;
 	private StringProperty startDateString;
+	private String startDateStringValue;
 	
 	// Properties of the end date and its string
 	private ObjectProperty<CustomDate> endDate;
+	private CustomDate endDateValue;
 	private StringProperty endDateString;
+	private String endDateStringValue;
+	
+	// Keys for sorting, updated with the dates and the work info
+	private long startDateKey;
+	private long endDateKey;
+	private String workInfoKey;
 	
 	// Property of the work info
 	private StringProperty workInfo;
+	private String workInfoValue;
 	
 	// Property of the tag containing category and repetitive tag
 	private ObjectProperty<Tag> tag;
+	private Tag tagValue;
 	
 	// Property of number of occurrences and its current occurrence of the task
 	private int num_occurrences;
 	private int current_occurrence;
 	private StringProperty occurrenceString;
+	private String occurrenceStringValue;
 	
 	// Index ID of this task in Google Calendar
 	private String indexId;
 	
+	// Index of the list holding this task, told when it changes, null until it is in an indexed list
+	private TaskListener listener;
+	
 	// Index in the list containing the task
 	private int indexInList;
 	
@@ -61,10 +85,12 @@ public class Task implements Comparable<Task> {
 	// The latest date when the task was modified
 	private CustomDate latestModifiedDate;
 	
+	// Indicator whether the stored information of the task can no longer be changed, as for an archived task
+	private boolean isReadOnly = false;
+	
 	//@author A0098077N
 	// Default constructor
 	public Task() {
-		checkProperty();
 		defaultInitialization();
 	}
 	
@@ -78,7 +104,7 @@ public class Task implements Comparable<Task> {
 		setEndDate(null);
 		setEndDateString(EMPTY);
 		setWorkInfo("");
-		setTag(new Tag(EMPTY, "null"));
+		setTag(Tag.valueOf(EMPTY, "null"));
 		indexId = "";
 		indexInList = 0;
 		if(Control.syncThread!=null && Control.syncThread.isRunning()){
@@ -90,45 +116,36 @@ public class Task implements Comparable<Task> {
 		initOccurrence(1);
 	}
 
-	/**
-	 * This function is used to check whether any property has not been
-	 * initialized. If there are, it will initialize these properties.
-	 */
-	private void checkProperty() {
-		rowStatusProperty();
-		workInfoProperty();
-		tagProperty();
-		startDateProperty();
-		startDateStringProperty();
-		endDateStringProperty();
-		endDateProperty();
-		occurrenceProperty();
-	}
-
 	/**
 	 * This function is the implemented method for interface Comparable. It is
 	 * used to compare this task with another task. The order of comparison is
-	 * first end date, start date and work info respectively.
+	 * first end date, start date and work info respectively, through the keys
+	 * kept by their setters.
 	 */
 	public int compareTo(Task other) {
-		int compareEndDates = CustomDate.compare(getEndDate(),
-				other.getEndDate());
-		int compareStartDates = CustomDate.compare(getStartDate(),
-				other.getStartDate());
-
-		boolean equalEndDate = (compareEndDates == 0);
-		boolean equalStartAndEndDate = (compareEndDates == 0)
-				&& (compareStartDates == 0);
-
-		if (equalStartAndEndDate) {
-			return getWorkInfo().compareToIgnoreCase(other.getWorkInfo());
-		} else if (equalEndDate) {
-			return compareStartDates;
+		if (endDateKey != other.endDateKey) {
+			return endDateKey < other.endDateKey ? -1 : 1;
+		} else if (startDateKey != other.startDateKey) {
+			return startDateKey < other.startDateKey ? -1 : 1;
 		} else {
-			return compareEndDates;
+			return workInfoKey.compareTo(other.workInfoKey);
 		}
 	}
+	
+	//@author A0105667B
+	/**
+	 * Fold the case of each character the way compareToIgnoreCase() does, so that
+	 * comparing the folded strings gives the same order without folding them again
+	 */
+	private static String foldCase(String str) {
+		char[] chars = str.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
 
+	//@author A0098077N
 	/**
 	 * Update the string representing the date for display
 	 */
@@ -199,7 +216,7 @@ public class Task implements Comparable<Task> {
 	 * @return true if this is indeed a recurring task, vice versa
 	 */
 	public boolean isRecurringTask() {
-		return !tag.get().getRepetition().equals(Common.NULL);
+		return !getTag().getRepetition().equals(Common.NULL);
 	}
 	
 	/**
@@ -219,9 +236,9 @@ public class Task implements Comparable<Task> {
 	 */
 	private void updateOccurrenceString() {
 		if (num_occurrences <= 1){
-			occurrenceString.set("");
+			setOccurrenceString("");
 		}else{
-			occurrenceString.set(current_occurrence + "/" + num_occurrences);
+			setOccurrenceString(current_occurrence + "/" + num_occurrences);
 		}
 	}
 	
@@ -229,67 +246,75 @@ public class Task implements Comparable<Task> {
 	/************************ GET Property Functions **********************************/
 	public ObjectProperty<RowStatus> rowStatusProperty() {
 		if (rowStatus == null) {
-			rowStatus = new SimpleObjectProperty<RowStatus>(this, ROWSTATUS_PROPERTY_ID);
+			rowStatus = new SimpleObjectProperty<RowStatus>(this, ROWSTATUS_PROPERTY_ID, rowStatusValue);
+			rowStatusValue = null;
 		}
 		return rowStatus;
 	}
 
 	public StringProperty workInfoProperty() {
 		if (workInfo == null) {
-			workInfo = new SimpleStringProperty(this, WORKINFO_PROPERTY_ID);
+			workInfo = new SimpleStringProperty(this, WORKINFO_PROPERTY_ID, workInfoValue);
+			workInfoValue = null;
 		}
 		return workInfo;
 	}
 
 	public ObjectProperty<Tag> tagProperty() {
 		if (tag == null) {
-			tag = new SimpleObjectProperty<Tag>(this, TAG_PROPERTY_ID);
+			tag = new SimpleObjectProperty<Tag>(this, TAG_PROPERTY_ID, tagValue);
+			tagValue = null;
 		}
 		return tag;
 	}
 
 	public ObjectProperty<CustomDate> startDateProperty() {
 		if (startDate == null) {
-			startDate = new SimpleObjectProperty<CustomDate>(this, STARTDATE_PROPERTY_ID);
+			startDate = new SimpleObjectProperty<CustomDate>(this, STARTDATE_PROPERTY_ID, startDateValue);
+			startDateValue = null;
 		}
 		return startDate;
 	}
 
 	public ObjectProperty<CustomDate> endDateProperty() {
 		if (endDate == null) {
-			endDate = new SimpleObjectProperty<CustomDate>(this, ENDDATE_PROPERTY_ID);
+			endDate = new SimpleObjectProperty<CustomDate>(this, ENDDATE_PROPERTY_ID, endDateValue);
+			endDateValue = null;
 		}
 		return endDate;
 	}
 
 	public StringProperty startDateStringProperty() {
 		if (startDateString == null) {
-			startDateString = new SimpleStringProperty(this, START_STRING_PROPERTY_ID);
+			startDateString = new SimpleStringProperty(this, START_STRING_PROPERTY_ID, startDateStringValue);
+			startDateStringValue = null;
 		}
 		return startDateString;
 	}
 
 	public StringProperty endDateStringProperty() {
 		if (endDateString == null) {
-			endDateString = new SimpleStringProperty(this, END_STRING_PROPERTY_ID);
+			endDateString = new SimpleStringProperty(this, END_STRING_PROPERTY_ID, endDateStringValue);
+			endDateStringValue = null;
 		}
 		return endDateString;
 	}
 
 	public StringProperty occurrenceProperty() {
 		if (occurrenceString == null) {
-			occurrenceString = new SimpleStringProperty(this, OCCURRENCE_PROPERTY_ID);
+			occurrenceString = new SimpleStringProperty(this, OCCURRENCE_PROPERTY_ID, occurrenceStringValue);
+			occurrenceStringValue = null;
 		}
 		return occurrenceString;
 	}
 
 	/********************************* GET Value Functions ***********************************/
 	public boolean isLastOverdueTask() {
-		return rowStatus.get().getIsLastOverdue();
+		return getRowStatus().getIsLastOverdue();
 	}
 
 	public boolean isImportantTask() {
-		return rowStatus.get().getIsImportant();
+		return getRowStatus().getIsImportant();
 	}
 	
 	public boolean isFloatingTask(){
@@ -297,31 +322,31 @@ public class Task implements Comparable<Task> {
 	}
 	
 	public RowStatus getRowStatus(){
-		return rowStatus.get();
+		return rowStatus == null ? rowStatusValue : rowStatus.get();
 	}
 
 	public String getStartDateString() {
-		return startDateString.get();
+		return startDateString == null ? startDateStringValue : startDateString.get();
 	}
 
 	public String getEndDateString() {
-		return endDateString.get();
+		return endDateString == null ? endDateStringValue : endDateString.get();
 	}
 
 	public CustomDate getStartDate() {
-		return startDate.get();
+		return startDate == null ? startDateValue : startDate.get();
 	}
 
 	public CustomDate getEndDate() {
-		return endDate.get();
+		return endDate == null ? endDateValue : endDate.get();
 	}
 
 	public String getWorkInfo() {
-		return workInfo.get();
+		return workInfo == null ? workInfoValue : workInfo.get();
 	}
 
 	public Tag getTag() {
-		return tag.get();
+		return tag == null ? tagValue : tag.get();
 	}
 
 	public String getIndexId() {
@@ -364,23 +389,35 @@ public class Task implements Comparable<Task> {
 	//@author A0098077N
 	/*************************************** SET Value Functions ****************************************/
 	public void setIsLastOverdue(boolean isLastOverdue) {
-		rowStatus.set(new RowStatus(rowStatus.get().getIsImportant(), isLastOverdue));
+		setRowStatus(new RowStatus(getRowStatus().getIsImportant(), isLastOverdue));
 	}
 
 	public void setIsImportant(boolean isImportant) {
-		rowStatus.set(new RowStatus(isImportant, rowStatus.get().getIsLastOverdue()));
+		checkWritable();
+		setRowStatus(new RowStatus(isImportant, getRowStatus().getIsLastOverdue()));
 	}
 	
 	public void setRowStatus(RowStatus rowStatus){
-		this.rowStatus.set(rowStatus);
+		if (this.rowStatus == null) {
+			rowStatusValue = rowStatus;
+		} else {
+			this.rowStatus.set(rowStatus);
+		}
 	}
 
 	public void setStatus(Status status) {
+		checkWritable();
 		this.status = status;
 	}
 
 	public void setStartDate(CustomDate startDate) {
-		this.startDate.set(startDate);
+		checkWritable();
+		if (this.startDate == null) {
+			startDateValue = startDate;
+		} else {
+			this.startDate.set(startDate);
+		}
+		startDateKey = CustomDate.getSortKey(startDate);
 		if (startDate != null) {
 			setStartDateString(startDate.toString(true));
 		} else {
@@ -389,7 +426,13 @@ public class Task implements Comparable<Task> {
 	}
 
 	public void setEndDate(CustomDate endDate) {
-		this.endDate.set(endDate);
+		checkWritable();
+		if (this.endDate == null) {
+			endDateValue = endDate;
+		} else {
+			this.endDate.set(endDate);
+		}
+		endDateKey = CustomDate.getSortKey(endDate);
 		if (endDate != null) {
 			setEndDateString(endDate.toString(false));
 		} else {
@@ -398,55 +441,135 @@ public class Task implements Comparable<Task> {
 	}
 
 	public void setStartDateString(String dateString) {
-		startDateString.set(dateString);
+		if (startDateString == null) {
+			startDateStringValue = dateString;
+		} else {
+			startDateString.set(dateString);
+		}
 	}
 
 	public void setEndDateString(String dateString) {
-		endDateString.set(dateString);
+		if (endDateString == null) {
+			endDateStringValue = dateString;
+		} else {
+			endDateString.set(dateString);
+		}
 	}
 
 	public void setWorkInfo(String workInfo) {
-		this.workInfo.set(workInfo);
+		checkWritable();
+		if (this.workInfo == null) {
+			workInfoValue = workInfo;
+		} else {
+			this.workInfo.set(workInfo);
+		}
+		workInfoKey = foldCase(workInfo);
+		notifyWordsChanged();
 	}
 
 	public void setTag(Tag tag) {
-		this.tag.set(tag);
+		checkWritable();
+		if (this.tag == null) {
+			tagValue = tag;
+		} else {
+			this.tag.set(tag);
+		}
+		notifyWordsChanged();
+	}
+
+	private void setOccurrenceString(String occurrence) {
+		if (occurrenceString == null) {
+			occurrenceStringValue = occurrence;
+		} else {
+			occurrenceString.set(occurrence);
+		}
 	}
 
 	public void setIndexId(String indexId) {
+		checkWritable();
+		String previousIndexId = this.indexId;
 		this.indexId = indexId;
+		if (listener != null) {
+			listener.indexIdChanged(this, previousIndexId);
+		}
 	}
+	
+	//@author A0105667B
+	/**
+	 * Tell the given listener about the changes of this task instead of the previous one, or 
+	 * nobody if it is null. A task is in one indexed list at a time, so it has one listener.
+	 */
+	void setListener(TaskListener listener) {
+		this.listener = listener;
+	}
+	
+	TaskListener getListener() {
+		return listener;
+	}
+	
+	/**
+	 * Keep the stored information of this task from being changed from now on. Only what is 
+	 * shown of it, such as its date strings and the overdue line, can still be updated.
+	 */
+	void setReadOnly() {
+		isReadOnly = true;
+	}
+	
+	public boolean isReadOnly() {
+		return isReadOnly;
+	}
+	
+	private void checkWritable() {
+		if (isReadOnly) {
+			throw new UnsupportedOperationException("The task is read-only");
+		}
+	}
+	
+	private void notifyWordsChanged() {
+		if (listener != null) {
+			listener.wordsChanged(this);
+		}
+	}
+	
+	//@author A0098077N
 
 	public void setIndexInList(int index) {
+		checkWritable();
 		indexInList = index;
 	}
 
 	public void setLatestModifiedDate(CustomDate modifiedDate) {
+		checkWritable();
 		latestModifiedDate = modifiedDate;
 	}
 
 	public void updateLatestModifiedDate() {
+		checkWritable();
 		latestModifiedDate = new CustomDate();
 	}
 	
 	//@author A0105667B
 	public void initOccurrence(int num_occurrences) {
+		checkWritable();
 		this.num_occurrences = num_occurrences;
 		current_occurrence = 1;
 		updateOccurrenceString();
 	}
 	
 	public void setNumOccurrences(int num_occurrences) {
+		checkWritable();
 		this.num_occurrences = num_occurrences;
 		updateOccurrenceString();
 	}
 
 	public void setCurrentOccurrence(int current) {
+		checkWritable();
 		current_occurrence = current;
 		updateOccurrenceString();
 	}
 
 	public void setOccurrence(int occurNum, int curOccur) {
+		checkWritable();
 		num_occurrences = occurNum;
 		current_occurrence = curOccur;
 		updateOccurrenceString();
@@ -485,29 +608,55 @@ public class Task implements Comparable<Task> {
  *
  */
 class Tag {
+	// The tags in use, each shared by all the tasks with the same category and recurring tags
+	// and dropped once no task holds it
+	private static final Interner<Tag> pool = Interners.newWeakInterner();
+	
 	// The default category tag
-	private String tag;
+	private final String tag;
 	// The recurring tag
-	private String repetition;
+	private final String repetition;
 	
 	
 	/*
-	 * Constructor
+	 * Constructor, the tags being created through valueOf()
 	 */
-	public Tag(String tag, String repetition) {
-		setTag(tag);
-		setRepetition(repetition);
+	private Tag(String tag, String repetition) {
+		this.tag = tag;
+		this.repetition = repetition;
 	}
 	
-	/********************************************** SET functions ******************************************/
-	public void setTag(String tag) {
-		this.tag = tag;
+	//@author A0105667B
+	/**
+	 * GET the shared tag with the given category and recurring tags, so that the many
+	 * tasks with the same tags hold one Tag and one copy of each string. A tag cannot
+	 * be changed once created; a task is given another tag instead.
+	 */
+	public static Tag valueOf(String tag, String repetition) {
+		return pool.intern(new Tag(tag, repetition));
 	}
-
-	public void setRepetition(String repetition) {
-		this.repetition = repetition;
+	
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		} else if (!(other instanceof Tag)) {
+			return false;
+		}
+		Tag otherTag = (Tag) other;
+		return equalStrings(tag, otherTag.tag) && equalStrings(repetition, otherTag.repetition);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * (tag == null ? 0 : tag.hashCode()) + (repetition == null ? 0 : repetition.hashCode());
 	}
 	
+	private static boolean equalStrings(String str1, String str2) {
+		return str1 == null ? str2 == null : str1.equals(str2);
+	}
+	
+	//@author A0098077N
 	/************************************************ GET functions ******************************************/
 	public String getTag() {
 		return this.tag;
@@ -544,6 +693,20 @@ class Tag {
 	}
 }
 
+//@author A0105667B
+/**
+ * 
+ * This interface is implemented by the indexes of a list, which are told when a task
+ * of the list changes a field they are kept by
+ *
+ */
+interface TaskListener {
+	void indexIdChanged(Task task, String previousIndexId);
+	
+	// The work info or tag of the task changed
+	void wordsChanged(Task task);
+}
+
 //@author A0098077N
 /**
  * 
@@ -582,4 +745,4 @@ class RowStatus{
 	public boolean getIsLastOverdue(){
 		return this.isLastOverdue;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+//@author A0105667B
+/**
+ *
+ * This class keeps the archive of the complete and trashed tasks which were moved
+ * out of their lists after they had not been modified for a while. The archive is
+ * only appended to: each batch of archived tasks is written as a new GZIP member
+ * at the end of the file, and the whole file is read back as one stream. Each line
+ * is one record holding the journal key, the list and the stored fields of a task,
+ * escaped in the same way as the journal. A task archived twice, because the
+ * lists were not stored after it was archived the first time, is read once.
+ *
+ */
+class TaskArchive {
+	private static final String ARCHIVE_SUFFIX = ".archive";
+	private static final String SEPARATOR = "\t";
+	private static final String ENCODING = "UTF-8";
+
+	// Index of the information in a record
+	static final int INDEX_KEY = 0;
+	static final int INDEX_TASK_TYPE = 1;
+	static final int INDEX_FIRST_FIELD = 2;
+
+	private static Logger log = Logger.getLogger("TaskArchive");
+
+	private File archiveFile;
+
+	public TaskArchive(File xmlFile) {
+		archiveFile = new File(xmlFile.getPath() + ARCHIVE_SUFFIX);
+	}
+
+	File getFile() {
+		return archiveFile;
+	}
+
+	/********************************** write records ************************************/
+
+	/**
+	 * Append the given tasks to the archive as one compressed batch
+	 * @param taskType    "complete" or "trash"
+	 * @param taskKeys    journal keys of the tasks
+	 * @param taskFields    stored fields of the tasks, in the same order
+	 * @throws IOException
+	 */
+	void append(String taskType, List<Integer> taskKeys, List<String[]> taskFields) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+				new GZIPOutputStream(new FileOutputStream(archiveFile, true)), ENCODING));
+		try {
+			for (int i = 0; i < taskKeys.size(); i++) {
+				StringBuilder record = new StringBuilder();
+				record.append(taskKeys.get(i)).append(SEPARATOR).append(taskType);
+				for (String field : taskFields.get(i)) {
+					record.append(SEPARATOR).append(TaskJournal.escape(field));
+				}
+				writer.write(record.toString());
+				writer.newLine();
+			}
+			writer.flush();
+		} finally {
+			writer.close();
+		}
+	}
+
+	/********************************** read records ************************************/
+
+	/**
+	 * Read the archived tasks of a list. A batch cut off by a crash is skipped.
+	 * @param taskType    "complete" or "trash"
+	 * @return the records of the tasks in the order they were archived
+	 * @throws IOException
+	 */
+	List<String[]> read(String taskType) throws IOException {
+		Map<String, String[]> records = new LinkedHashMap<String, String[]>();
+		if (!archiveFile.exists() || archiveFile.length() == 0) {
+			return new ArrayList<String[]>();
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new FileInputStream(archiveFile)), ENCODING));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] record = line.split(SEPARATOR, -1);
+				if (record.length != INDEX_FIRST_FIELD + TaskStorage.NUM_FIELDS) {
+					log.log(Level.WARNING, "Incomplete archive record skipped.");
+					continue;
+				}
+				for (int i = INDEX_TASK_TYPE; i < record.length; i++) {
+					record[i] = TaskJournal.unescape(record[i]);
+				}
+				// the task keeps the place it was archived first
+				records.put(record[INDEX_KEY], record);
+			}
+		} catch (EOFException eof) {
+			log.log(Level.WARNING, "Archive ends in an incomplete batch.");
+		} catch (ZipException zipex) {
+			log.log(Level.WARNING, "Archive ends in an incomplete batch: " + zipex.getMessage());
+		} finally {
+			reader.close();
+		}
+		List<String[]> taskRecords = new ArrayList<String[]>();
+		for (String[] record : records.values()) {
+			if (record[INDEX_TASK_TYPE].equals(taskType)) {
+				taskRecords.add(record);
+			}
+		}
+		return taskRecords;
+	}
+}
@@ -0,0 +1,300 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//@author A0105667B
+/**
+ *
+ * This class keeps a large read-only list of tasks, such as the archived tasks of a
+ * list, in parallel arrays instead of Task objects: the dates as milliseconds, the
+ * status as a byte, the importance as a bit and the tag as the position of the shared
+ * Tag in a table. A Task is only created when a row is read, and it is returned again
+ * for the same row for as long as it is held anywhere, such as in search results, so
+ * the tasks of the rows can be compared by identity. The created tasks are read-only,
+ * as they are not part of the columns and a change to them would be lost: setting
+ * their stored information throws an UnsupportedOperationException. Changing the tasks
+ * the rows were copied from does not change the columns either, so they also serve as
+ * a snapshot of a list to be written later, straight from the columns. The columns are
+ * only kept in memory, so the status of a row is stored as the ordinal of its enum
+ * constant, which is never written to a file.
+ *
+ */
+class TaskColumns extends AbstractList<Task> {
+	private static final int INITIAL_CAPACITY = 16;
+	// Stored instead of the milliseconds of a missing start or end date
+	static final long NO_DATE = Long.MIN_VALUE;
+	// Statuses by their ordinals, valid while the columns are in memory
+	private static final Task.Status[] STATUSES = Task.Status.values();
+
+	private int size = 0;
+	private String[] indexIds;
+	private String[] workInfos;
+	private long[] startDates;
+	private long[] endDates;
+	private long[] modifiedDates;
+	private int[] tagIds;
+	private int[] indexesInList;
+	private int[] currentOccurrences;
+	private int[] numOccurrences;
+	private byte[] statuses;
+	private BitSet importantTasks = new BitSet();
+	// Tags of the tasks, each kept once, and their positions in the table
+	private List<Tag> tags = new ArrayList<Tag>();
+	private Map<Tag, Integer> tagPositions = new HashMap<Tag, Integer>();
+
+	// Tasks created for the rows, held weakly so that the unused ones are collected
+	private Map<Integer, RowReference> materializedTasks = new HashMap<Integer, RowReference>();
+	private ReferenceQueue<Task> collectedTasks = new ReferenceQueue<Task>();
+
+	public TaskColumns() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param capacity    number of rows the columns hold before growing
+	 */
+	public TaskColumns(int capacity) {
+		indexIds = new String[capacity];
+		workInfos = new String[capacity];
+		startDates = new long[capacity];
+		endDates = new long[capacity];
+		modifiedDates = new long[capacity];
+		tagIds = new int[capacity];
+		indexesInList = new int[capacity];
+		currentOccurrences = new int[capacity];
+		numOccurrences = new int[capacity];
+		statuses = new byte[capacity];
+	}
+
+	/*********************************** write rows *************************************/
+
+	/**
+	 * Append a row holding the stored information of the given task
+	 */
+	@Override
+	public boolean add(Task task) {
+		addRow(task.getIndexId(), task.getWorkInfo(), getTimeInMillis(task.getStartDate()),
+				getTimeInMillis(task.getEndDate()), task.getTag(), task.isImportantTask(),
+				task.getIndexInList(), getTimeInMillis(task.getLatestModifiedDate()),
+				task.getCurrentOccurrence(), task.getNumOccurrences(), task.getStatus());
+		return true;
+	}
+
+	/**
+	 * Append a row holding the given information, without any task being created
+	 * @param startDate    milliseconds of the start date, NO_DATE if it has none
+	 * @param endDate    milliseconds of the end date, NO_DATE if it has none
+	 */
+	public void addRow(String indexId, String workInfo, long startDate, long endDate, Tag tag,
+			boolean isImportant, int indexInList, long modifiedDate, int currentOccurrence,
+			int numOccurrence, Task.Status status) {
+		if (status == null) {
+			throw new IllegalArgumentException("Row " + size + " has no status");
+		}
+		ensureCapacity(size + 1);
+		indexIds[size] = indexId;
+		workInfos[size] = workInfo;
+		startDates[size] = startDate;
+		endDates[size] = endDate;
+		modifiedDates[size] = modifiedDate;
+		tagIds[size] = getTagId(tag);
+		indexesInList[size] = indexInList;
+		currentOccurrences[size] = currentOccurrence;
+		numOccurrences[size] = numOccurrence;
+		statuses[size] = (byte) status.ordinal();
+		importantTasks.set(size, isImportant);
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Release the capacity of the arrays which is not used by any row
+	 */
+	public void trimToSize() {
+		if (size < indexIds.length) {
+			resize(size);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > indexIds.length) {
+			resize(Math.max(capacity, Math.max(INITIAL_CAPACITY, indexIds.length * 2)));
+		}
+	}
+
+	private void resize(int capacity) {
+		indexIds = Arrays.copyOf(indexIds, capacity);
+		workInfos = Arrays.copyOf(workInfos, capacity);
+		startDates = Arrays.copyOf(startDates, capacity);
+		endDates = Arrays.copyOf(endDates, capacity);
+		modifiedDates = Arrays.copyOf(modifiedDates, capacity);
+		tagIds = Arrays.copyOf(tagIds, capacity);
+		indexesInList = Arrays.copyOf(indexesInList, capacity);
+		currentOccurrences = Arrays.copyOf(currentOccurrences, capacity);
+		numOccurrences = Arrays.copyOf(numOccurrences, capacity);
+		statuses = Arrays.copyOf(statuses, capacity);
+	}
+
+	private int getTagId(Tag tag) {
+		Integer position = tagPositions.get(tag);
+		if (position == null) {
+			position = tags.size();
+			tags.add(tag);
+			tagPositions.put(tag, position);
+		}
+		return position;
+	}
+
+	private static long getTimeInMillis(CustomDate date) {
+		return date == null ? NO_DATE : date.getTimeInMillis();
+	}
+
+	/*********************************** read rows *************************************/
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the read-only task of a row, creating it unless the one created before is still held
+	 */
+	@Override
+	public Task get(int index) {
+		checkRow(index);
+		removeCollectedTasks();
+		RowReference reference = materializedTasks.get(index);
+		Task task = reference == null ? null : reference.get();
+		if (task == null) {
+			task = materialize(index);
+			materializedTasks.put(index, new RowReference(task, index, collectedTasks));
+		}
+		return task;
+	}
+	
+	/************************* read the information of rows without a task **************************/
+	
+	public String getIndexId(int index) {
+		checkRow(index);
+		return indexIds[index];
+	}
+	
+	public String getWorkInfo(int index) {
+		checkRow(index);
+		return workInfos[index];
+	}
+	
+	/**
+	 * @return the milliseconds of the start date, NO_DATE if it has none
+	 */
+	public long getStartDate(int index) {
+		checkRow(index);
+		return startDates[index];
+	}
+	
+	/**
+	 * @return the milliseconds of the end date, NO_DATE if it has none
+	 */
+	public long getEndDate(int index) {
+		checkRow(index);
+		return endDates[index];
+	}
+	
+	public Tag getTag(int index) {
+		checkRow(index);
+		return tags.get(tagIds[index]);
+	}
+	
+	public boolean isImportant(int index) {
+		checkRow(index);
+		return importantTasks.get(index);
+	}
+	
+	public int getIndexInList(int index) {
+		checkRow(index);
+		return indexesInList[index];
+	}
+	
+	public long getModifiedDate(int index) {
+		checkRow(index);
+		return modifiedDates[index];
+	}
+	
+	public int getCurrentOccurrence(int index) {
+		checkRow(index);
+		return currentOccurrences[index];
+	}
+	
+	public int getNumOccurrences(int index) {
+		checkRow(index);
+		return numOccurrences[index];
+	}
+	
+	public Task.Status getStatus(int index) {
+		checkRow(index);
+		return STATUSES[statuses[index]];
+	}
+	
+	private void checkRow(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Row " + index + " of " + size);
+		}
+	}
+	
+	// Forget the rows whose tasks were collected
+	private void removeCollectedTasks() {
+		Reference<? extends Task> reference;
+		while ((reference = collectedTasks.poll()) != null) {
+			int row = ((RowReference) reference).row;
+			if (materializedTasks.get(row) == reference) {
+				materializedTasks.remove(row);
+			}
+		}
+	}
+
+	private Task materialize(int index) {
+		Task task = new Task();
+		task.setIndexId(indexIds[index]);
+		task.setWorkInfo(workInfos[index]);
+		task.setStartDate(getDate(startDates[index]));
+		task.setEndDate(getDate(endDates[index]));
+		task.setTag(tags.get(tagIds[index]));
+		task.setIsImportant(importantTasks.get(index));
+		task.setIndexInList(indexesInList[index]);
+		task.setLatestModifiedDate(getDate(modifiedDates[index]));
+		task.setOccurrence(numOccurrences[index], currentOccurrences[index]);
+		task.setStatus(STATUSES[statuses[index]]);
+		task.setReadOnly();
+		return task;
+	}
+
+	private static CustomDate getDate(long millis) {
+		if (millis == NO_DATE) {
+			return null;
+		}
+		CustomDate date = new CustomDate();
+		date.setTimeInMillis(millis);
+		return date;
+	}
+	
+	/**
+	 * 
+	 * The task created for a row, knowing its row once it is collected
+	 *
+	 */
+	private static class RowReference extends WeakReference<Task> {
+		private final int row;
+		
+		public RowReference(Task task, int row, ReferenceQueue<Task> queue) {
+			super(task, queue);
+			this.row = row;
+		}
+	}
+}
@@ -0,0 +1,650 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//@author A0105667B
+/**
+ *
+ * This class converts tasks to and from the files of other applications one task
+ * at a time, so that a file of any size is read and written as a stream. The format
+ * is chosen by the extension of the file: comma-separated values (.csv) or
+ * iCalendar (.ics). The tasks are built directly from the fields of a record
+ * without going through Parser.
+ *
+ */
+abstract class TaskFormat {
+	static final String CSV_EXTENSION = ".csv";
+	static final String ICS_EXTENSION = ".ics";
+	static final String MESSAGE_EMPTY_WORK_INFO = "Task without description";
+	static final String MESSAGE_INVALID_DATE = "Invalid date: ";
+	static final String MESSAGE_INVALID_LIST = "Invalid list: ";
+
+	// Type of the list the task last read belongs to
+	protected String taskType;
+
+	/**
+	 * @return the format of the given file, null if its extension is not supported
+	 */
+	static TaskFormat getFormat(File file) {
+		String fileName = file.getName().toLowerCase(Locale.ENGLISH);
+		if (fileName.endsWith(CSV_EXTENSION)) {
+			return new CsvTaskFormat();
+		} else if (fileName.endsWith(ICS_EXTENSION)) {
+			return new IcsTaskFormat();
+		} else {
+			return null;
+		}
+	}
+
+	abstract void writeHeader(Writer writer) throws IOException;
+
+	/**
+	 * Write one task to the file
+	 * @param taskType    "pending", "complete" or "trash"
+	 */
+	abstract void writeTask(Writer writer, Task task, String taskType) throws IOException;
+
+	abstract void writeFooter(Writer writer) throws IOException;
+
+	/**
+	 * Read the next task of the file. Its list is given by getTaskType() afterwards.
+	 * @return the task, null at the end of the file
+	 * @throws IllegalArgumentException if the record cannot be converted to a task
+	 */
+	abstract Task readTask(BufferedReader reader) throws IOException;
+
+	String getTaskType() {
+		return taskType;
+	}
+
+	/**
+	 * Build a task from the fields read. The repetition is dropped when the task does not
+	 * have both dates, as ADD command would not accept it. The dates of a repetitive task
+	 * are kept as read and moved to the next occurrence by the periodic update of Control.
+	 * @param tag    category tag, empty if none
+	 * @param repetition    repetition in the stored form, Common.NULL if none
+	 */
+	protected Task createTask(String workInfo, CustomDate startDate, CustomDate endDate, String tag,
+			String repetition, boolean isImportant, int numOccurrences) {
+		if (workInfo.trim().isEmpty()) {
+			throw new IllegalArgumentException(MESSAGE_EMPTY_WORK_INFO);
+		}
+		if (startDate != null && endDate != null && startDate.getTimeInMillis() > endDate.getTimeInMillis()) {
+			throw new IllegalArgumentException(Common.MESSAGE_INVALID_DATE_RANGE);
+		}
+		boolean isRepetitive = !repetition.equals(Common.NULL) && startDate != null && endDate != null;
+		Task task = new Task();
+		task.setWorkInfo(workInfo.trim());
+		task.setStartDate(startDate);
+		task.setEndDate(endDate);
+		task.setTag(Tag.valueOf(tag.isEmpty() ? Common.HYPHEN : tag, isRepetitive ? repetition : Common.NULL));
+		task.setIsImportant(isImportant);
+		if (isRepetitive) {
+			task.setNumOccurrences(numOccurrences);
+		}
+		return task;
+	}
+
+	protected static CustomDate createDate(long timeInMillis) {
+		CustomDate date = new CustomDate();
+		date.setTimeInMillis(timeInMillis);
+		return date;
+	}
+
+	protected static boolean isTaskType(String taskType) {
+		for (String storedType : TaskStorage.TASK_TYPES) {
+			if (storedType.equals(taskType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
+
+/**
+ *
+ * Comma-separated values with one header line naming the columns, quoted as in
+ * RFC 4180. The columns may come in any order and only "workInfo" is required, so
+ * that files exported from a spreadsheet can be imported after renaming the columns.
+ *
+ */
+class CsvTaskFormat extends TaskFormat {
+	private static final String LIST = "list";
+	private static final String WORK_INFO = "workInfo";
+	private static final String START_DATE = "startDate";
+	private static final String END_DATE = "endDate";
+	private static final String TAG = "tag";
+	private static final String REPETITION = "repetition";
+	private static final String IS_IMPORTANT = "isImportant";
+	private static final String NUM_OCCURRENCES = "numOccurrences";
+	private static final String[] COLUMNS = { LIST, WORK_INFO, START_DATE, END_DATE, TAG, REPETITION,
+		IS_IMPORTANT, NUM_OCCURRENCES };
+	private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm";
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+	private static final String LINE_SEPARATOR = "\r\n";
+
+	private SimpleDateFormat dateFormat;
+	// Position of each of COLUMNS in the records of the file read, -1 if absent
+	private int[] columnPositions;
+
+	CsvTaskFormat() {
+		dateFormat = new SimpleDateFormat(DATE_FORMAT);
+		dateFormat.setLenient(false);
+	}
+
+	/********************************** write tasks ************************************/
+
+	@Override
+	void writeHeader(Writer writer) throws IOException {
+		writeRecord(writer, COLUMNS);
+	}
+
+	@Override
+	void writeTask(Writer writer, Task task, String taskType) throws IOException {
+		String[] record = { taskType, task.getWorkInfo(), formatDate(task.getStartDate()),
+				formatDate(task.getEndDate()), formatTag(task.getTag().getTag()),
+				formatRepetition(task.getTag().getRepetition()),
+				task.isImportantTask() ? Common.TRUE : Common.FALSE,
+				String.valueOf(task.getNumOccurrences()) };
+		writeRecord(writer, record);
+	}
+
+	@Override
+	void writeFooter(Writer writer) throws IOException {
+	}
+
+	private void writeRecord(Writer writer, String[] record) throws IOException {
+		for (int i = 0; i < record.length; i++) {
+			if (i > 0) {
+				writer.write(SEPARATOR);
+			}
+			writer.write(quote(record[i]));
+		}
+		writer.write(LINE_SEPARATOR);
+	}
+
+	private String quote(String field) {
+		if (field.indexOf(SEPARATOR) < 0 && field.indexOf(QUOTE) < 0 && field.indexOf('\n') < 0
+				&& field.indexOf('\r') < 0) {
+			return field;
+		}
+		return QUOTE + field.replace("\"", "\"\"") + QUOTE;
+	}
+
+	private String formatDate(CustomDate date) {
+		return date == null ? "" : dateFormat.format(new Date(date.getTimeInMillis()));
+	}
+
+	private String formatTag(String tag) {
+		return tag.equals(Common.HYPHEN) ? "" : tag;
+	}
+
+	private String formatRepetition(String repetition) {
+		return repetition.equals(Common.NULL) ? "" : repetition;
+	}
+
+	/********************************** read tasks ************************************/
+
+	@Override
+	Task readTask(BufferedReader reader) throws IOException {
+		if (columnPositions == null) {
+			List<String> header = readRecord(reader);
+			if (header == null) {
+				return null;
+			}
+			columnPositions = new int[COLUMNS.length];
+			for (int i = 0; i < COLUMNS.length; i++) {
+				columnPositions[i] = indexOfColumn(header, COLUMNS[i]);
+			}
+		}
+		List<String> record;
+		do {
+			record = readRecord(reader);
+			if (record == null) {
+				return null;
+			}
+		} while (record.size() == 1 && record.get(0).trim().isEmpty());
+
+		String list = getColumn(record, LIST);
+		taskType = list.isEmpty() ? TaskStorage.PENDING : list.toLowerCase(Locale.ENGLISH);
+		if (!isTaskType(taskType)) {
+			throw new IllegalArgumentException(MESSAGE_INVALID_LIST + list);
+		}
+		String repetition = getColumn(record, REPETITION);
+		String numOccurrences = getColumn(record, NUM_OCCURRENCES);
+		return createTask(getColumn(record, WORK_INFO), parseDate(getColumn(record, START_DATE)),
+				parseDate(getColumn(record, END_DATE)), getColumn(record, TAG),
+				repetition.isEmpty() ? Common.NULL : repetition.replaceAll("\\s+", "").toLowerCase(Locale.ENGLISH),
+				isTrue(getColumn(record, IS_IMPORTANT)),
+				numOccurrences.isEmpty() ? 0 : Integer.parseInt(numOccurrences));
+	}
+
+	private int indexOfColumn(List<String> header, String column) {
+		for (int i = 0; i < header.size(); i++) {
+			if (header.get(i).trim().equalsIgnoreCase(column)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private String getColumn(List<String> record, String column) {
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (COLUMNS[i].equals(column)) {
+				int position = columnPositions[i];
+				return position < 0 || position >= record.size() ? "" : record.get(position).trim();
+			}
+		}
+		return "";
+	}
+
+	private CustomDate parseDate(String dateString) {
+		if (dateString.isEmpty() || dateString.equals(Common.HYPHEN)) {
+			return null;
+		}
+		try {
+			return createDate(dateFormat.parse(dateString).getTime());
+		} catch (ParseException pe) {
+			throw new IllegalArgumentException(MESSAGE_INVALID_DATE + dateString);
+		}
+	}
+
+	private boolean isTrue(String value) {
+		return value.equalsIgnoreCase(Common.TRUE) || value.equalsIgnoreCase("yes") || value.equals("1");
+	}
+
+	/**
+	 * Read one record, which spans several lines when a quoted field contains line breaks
+	 * @return the fields of the record, null at the end of the file
+	 */
+	private List<String> readRecord(BufferedReader reader) throws IOException {
+		String line = reader.readLine();
+		if (line == null) {
+			return null;
+		}
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean isQuoted = false;
+		int i = 0;
+		while (true) {
+			if (i == line.length()) {
+				if (!isQuoted) {
+					break;
+				}
+				line = reader.readLine();
+				if (line == null) {
+					break;
+				}
+				field.append('\n');
+				i = 0;
+				continue;
+			}
+			char c = line.charAt(i++);
+			if (isQuoted) {
+				if (c != QUOTE) {
+					field.append(c);
+				} else if (i < line.length() && line.charAt(i) == QUOTE) {
+					field.append(QUOTE);
+					i++;
+				} else {
+					isQuoted = false;
+				}
+			} else if (c == QUOTE) {
+				isQuoted = true;
+			} else if (c == SEPARATOR) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
+
+/**
+ *
+ * iCalendar file in which every task is a VTODO: the end date is its due date, the
+ * pending, complete and trashed tasks have the statuses NEEDS-ACTION, COMPLETED and
+ * CANCELLED, and important tasks have the highest priority. VEVENTs are imported as
+ * tasks as well. Dates are written in local time without time zone.
+ *
+ */
+class IcsTaskFormat extends TaskFormat {
+	private static final String DATE_TIME_FORMAT = "yyyyMMdd'T'HHmmss";
+	private static final String DATE_FORMAT = "yyyyMMdd";
+	private static final String UTC_SUFFIX = "Z";
+	private static final String LINE_SEPARATOR = "\r\n";
+	// Maximum length of a line before it is folded
+	private static final int MAX_LINE_LENGTH = 75;
+	private static final long MINUTE_IN_MILLIS = 60 * 1000;
+	private static final String BEGIN = "BEGIN";
+	private static final String END = "END";
+	private static final String VTODO = "VTODO";
+	private static final String VEVENT = "VEVENT";
+	private static final String UID = "UID";
+	private static final String DTSTAMP = "DTSTAMP";
+	private static final String SUMMARY = "SUMMARY";
+	private static final String DTSTART = "DTSTART";
+	private static final String DTEND = "DTEND";
+	private static final String DUE = "DUE";
+	private static final String CATEGORIES = "CATEGORIES";
+	private static final String PRIORITY = "PRIORITY";
+	private static final String RRULE = "RRULE";
+	private static final String STATUS = "STATUS";
+	private static final String VALUE_DATE = "VALUE=DATE";
+	private static final String HIGHEST_PRIORITY = "1";
+	private static final String NEEDS_ACTION = "NEEDS-ACTION";
+	private static final String COMPLETED = "COMPLETED";
+	private static final String CANCELLED = "CANCELLED";
+	private static final String[] FREQUENCIES = { "DAILY", "WEEKLY", "MONTHLY", "YEARLY" };
+	private static final String[] REPETITIONS = { "daily", "weekly", "monthly", "yearly" };
+	private static final String[] REPETITION_UNITS = { "day", "week", "month", "year" };
+	private static final Pattern INTERVAL_PATTERN = Pattern.compile("every(\\d+)(day|week|month|year)s?");
+
+	private SimpleDateFormat dateTimeFormat;
+	private SimpleDateFormat dateFormat;
+	private SimpleDateFormat utcFormat;
+	private String stamp;
+	private int numWritten = 0;
+	// Line read ahead to find out whether the next line continues it
+	private String nextLine;
+
+	IcsTaskFormat() {
+		dateTimeFormat = new SimpleDateFormat(DATE_TIME_FORMAT);
+		dateFormat = new SimpleDateFormat(DATE_FORMAT);
+		utcFormat = new SimpleDateFormat(DATE_TIME_FORMAT);
+		utcFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		stamp = utcFormat.format(new Date()) + UTC_SUFFIX;
+	}
+
+	/********************************** write tasks ************************************/
+
+	@Override
+	void writeHeader(Writer writer) throws IOException {
+		writeLine(writer, BEGIN + ":VCALENDAR");
+		writeLine(writer, "VERSION:2.0");
+		writeLine(writer, "PRODID:-//iDo//iDo//EN");
+	}
+
+	@Override
+	void writeTask(Writer writer, Task task, String taskType) throws IOException {
+		writeLine(writer, BEGIN + ":" + VTODO);
+		String uid = task.getIndexId().isEmpty() ? stamp + "-" + numWritten : task.getIndexId();
+		writeLine(writer, UID + ":" + escape(uid) + "@iDo");
+		writeLine(writer, DTSTAMP + ":" + stamp);
+		writeLine(writer, SUMMARY + ":" + escape(task.getWorkInfo()));
+		if (task.getStartDate() != null) {
+			writeLine(writer, DTSTART + ":" + formatDate(task.getStartDate()));
+		}
+		if (task.getEndDate() != null) {
+			writeLine(writer, DUE + ":" + formatDate(task.getEndDate()));
+		}
+		String tag = task.getTag().getTag();
+		if (!tag.equals(Common.HYPHEN)) {
+			writeLine(writer, CATEGORIES + ":" + escape(tag.replaceFirst("^" + Common.HASH_TAG, "")));
+		}
+		if (task.isImportantTask()) {
+			writeLine(writer, PRIORITY + ":" + HIGHEST_PRIORITY);
+		}
+		String rule = formatRule(task.getTag().getRepetition(), task.getNumOccurrences());
+		if (rule != null) {
+			writeLine(writer, RRULE + ":" + rule);
+		}
+		writeLine(writer, STATUS + ":" + formatStatus(taskType));
+		writeLine(writer, END + ":" + VTODO);
+		numWritten++;
+	}
+
+	@Override
+	void writeFooter(Writer writer) throws IOException {
+		writeLine(writer, END + ":VCALENDAR");
+	}
+
+	/**
+	 * Write a content line, folded so that no line is longer than MAX_LINE_LENGTH
+	 */
+	private void writeLine(Writer writer, String line) throws IOException {
+		int start = 0;
+		while (line.length() - start > MAX_LINE_LENGTH) {
+			int end = start + MAX_LINE_LENGTH - (start == 0 ? 0 : 1);
+			if (Character.isHighSurrogate(line.charAt(end - 1))) {
+				end--;
+			}
+			writer.write(line, start, end - start);
+			writer.write(LINE_SEPARATOR + " ");
+			start = end;
+		}
+		writer.write(line, start, line.length() - start);
+		writer.write(LINE_SEPARATOR);
+	}
+
+	private String formatDate(CustomDate date) {
+		return dateTimeFormat.format(new Date(date.getTimeInMillis()));
+	}
+
+	private String formatStatus(String taskType) {
+		if (taskType.equals(TaskStorage.COMPLETE)) {
+			return COMPLETED;
+		} else if (taskType.equals(TaskStorage.TRASH)) {
+			return CANCELLED;
+		} else {
+			return NEEDS_ACTION;
+		}
+	}
+
+	/**
+	 * @return the recurrence rule of a repetition such as "weekly" or "every2days", null if none
+	 */
+	private String formatRule(String repetition, int numOccurrences) {
+		repetition = repetition.replaceAll("\\s+", "");
+		String rule = null;
+		for (int i = 0; i < REPETITIONS.length; i++) {
+			if (repetition.equals(REPETITIONS[i])) {
+				rule = "FREQ=" + FREQUENCIES[i];
+			}
+		}
+		Matcher matcher = INTERVAL_PATTERN.matcher(repetition);
+		if (matcher.matches()) {
+			for (int i = 0; i < REPETITION_UNITS.length; i++) {
+				if (matcher.group(2).equals(REPETITION_UNITS[i])) {
+					rule = "FREQ=" + FREQUENCIES[i] + ";INTERVAL=" + matcher.group(1);
+				}
+			}
+		}
+		if (rule != null && numOccurrences > 0) {
+			rule = rule + ";COUNT=" + numOccurrences;
+		}
+		return rule;
+	}
+
+	private String escape(String text) {
+		return text.replace("\\", "\\\\").replace(";", "\\;").replace(",", "\\,").replace("\n", "\\n");
+	}
+
+	/********************************** read tasks ************************************/
+
+	@Override
+	Task readTask(BufferedReader reader) throws IOException {
+		String component = null;
+		String line;
+		while ((line = readUnfoldedLine(reader)) != null) {
+			if (line.equalsIgnoreCase(BEGIN + ":" + VTODO) || line.equalsIgnoreCase(BEGIN + ":" + VEVENT)) {
+				component = line.substring(BEGIN.length() + 1).toUpperCase(Locale.ENGLISH);
+				break;
+			}
+		}
+		if (component == null) {
+			return null;
+		}
+
+		String workInfo = "";
+		CustomDate startDate = null;
+		CustomDate endDate = null;
+		String tag = "";
+		String rule = null;
+		boolean isImportant = false;
+		taskType = TaskStorage.PENDING;
+		// depth of the components nested in the task, such as alarms, whose properties are ignored
+		int depth = 0;
+		while ((line = readUnfoldedLine(reader)) != null) {
+			int colon = indexOfValue(line);
+			if (colon < 0) {
+				continue;
+			}
+			String value = line.substring(colon + 1);
+			String[] nameAndParameters = line.substring(0, colon).split(";");
+			String name = nameAndParameters[0].toUpperCase(Locale.ENGLISH);
+			boolean isDate = line.substring(0, colon).toUpperCase(Locale.ENGLISH).contains(VALUE_DATE);
+			if (name.equals(BEGIN)) {
+				depth++;
+			} else if (name.equals(END)) {
+				if (depth == 0) {
+					break;
+				}
+				depth--;
+			} else if (depth > 0) {
+				continue;
+			} else if (name.equals(SUMMARY)) {
+				workInfo = unescape(value);
+			} else if (name.equals(DTSTART)) {
+				startDate = parseDate(value, isDate, false);
+			} else if (name.equals(DUE) || name.equals(DTEND)) {
+				endDate = parseDate(value, isDate, name.equals(DTEND));
+			} else if (name.equals(CATEGORIES) && !value.isEmpty()) {
+				tag = Common.HASH_TAG + unescape(value.split("(?<!\\\\),")[0]);
+			} else if (name.equals(PRIORITY)) {
+				isImportant = value.trim().equals(HIGHEST_PRIORITY);
+			} else if (name.equals(RRULE)) {
+				rule = value.toUpperCase(Locale.ENGLISH);
+			} else if (name.equals(STATUS)) {
+				taskType = parseStatus(value.trim().toUpperCase(Locale.ENGLISH));
+			}
+		}
+		String repetition = Common.NULL;
+		int numOccurrences = 0;
+		if (rule != null) {
+			repetition = parseRepetition(rule);
+			String count = getRulePart(rule, "COUNT");
+			numOccurrences = count == null ? 0 : Integer.parseInt(count);
+		}
+		return createTask(workInfo, startDate, endDate, tag, repetition, isImportant, numOccurrences);
+	}
+
+	/**
+	 * @return the next content line with its continuation lines joined, null at the end of the file
+	 */
+	private String readUnfoldedLine(BufferedReader reader) throws IOException {
+		String line = nextLine == null ? reader.readLine() : nextLine;
+		nextLine = null;
+		if (line == null) {
+			return null;
+		}
+		StringBuilder unfolded = new StringBuilder(line);
+		while ((nextLine = reader.readLine()) != null
+				&& (nextLine.startsWith(" ") || nextLine.startsWith("\t"))) {
+			unfolded.append(nextLine, 1, nextLine.length());
+		}
+		return unfolded.toString();
+	}
+
+	/**
+	 * @return the position of the colon separating the name and parameters from the value
+	 */
+	private int indexOfValue(String line) {
+		boolean isQuoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				isQuoted = !isQuoted;
+			} else if (c == ':' && !isQuoted) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param isDate    whether the value is a date without time
+	 * @param isExclusiveEnd    whether the value is the end of an event, which excludes that date
+	 */
+	private CustomDate parseDate(String value, boolean isDate, boolean isExclusiveEnd) {
+		try {
+			value = value.trim();
+			if (isDate || value.length() == DATE_FORMAT.length()) {
+				long dayStart = dateFormat.parse(value).getTime();
+				// a date ends the task at the last minute of the day before its end
+				long lastMinute = isExclusiveEnd ? dayStart : dayStart + CustomDate.DAY_IN_MILLIS;
+				return createDate(lastMinute - MINUTE_IN_MILLIS);
+			} else if (value.endsWith(UTC_SUFFIX)) {
+				return createDate(utcFormat.parse(value.substring(0, value.length() - 1)).getTime());
+			} else {
+				return createDate(dateTimeFormat.parse(value).getTime());
+			}
+		} catch (ParseException pe) {
+			throw new IllegalArgumentException(MESSAGE_INVALID_DATE + value);
+		}
+	}
+
+	private String parseStatus(String status) {
+		if (status.equals(COMPLETED)) {
+			return TaskStorage.COMPLETE;
+		} else if (status.equals(CANCELLED)) {
+			return TaskStorage.TRASH;
+		} else {
+			return TaskStorage.PENDING;
+		}
+	}
+
+	/**
+	 * @return the repetition in the stored form, Common.NULL if the frequency is not supported
+	 */
+	private String parseRepetition(String rule) {
+		String frequency = getRulePart(rule, "FREQ");
+		String interval = getRulePart(rule, "INTERVAL");
+		for (int i = 0; i < FREQUENCIES.length; i++) {
+			if (FREQUENCIES[i].equals(frequency)) {
+				if (interval == null || interval.equals("1")) {
+					return REPETITIONS[i];
+				}
+				return "every" + Integer.parseInt(interval) + REPETITION_UNITS[i] + "s";
+			}
+		}
+		return Common.NULL;
+	}
+
+	private String getRulePart(String rule, String partName) {
+		for (String part : rule.split(";")) {
+			if (part.startsWith(partName + "=")) {
+				return part.substring(partName.length() + 1);
+			}
+		}
+		return null;
+	}
+
+	private String unescape(String text) {
+		StringBuilder unescaped = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\\' && i + 1 < text.length()) {
+				char next = text.charAt(++i);
+				unescaped.append(next == 'n' || next == 'N' ? '\n' : next);
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+}
@@ -0,0 +1,496 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//@author A0105667B
+/**
+ *
+ * This class keeps the append-only journal of task changes written between two
+ * checkpoints of the task storage. Each line of the journal is one record: a
+ * PUT carrying the list and the stored fields of a task, a MOV which does the
+ * same for a task that was moved to the end of a list, or a DEL of a task
+ * which is no longer in any list. Tasks are identified by keys which are stored
+ * with them in the segment files of the task lists and kept across checkpoints,
+ * so replaying a record twice leaves the task in the same state.
+ *
+ * Records are queued by the thread executing commands and appended later by
+ * the thread writing the storage, so the queue is only touched while holding
+ * the lock of this journal. Only the latest queued record of a task is kept.
+ *
+ */
+class TaskJournal {
+	static final String PUT = "PUT";
+	static final String MOVE = "MOV";
+	static final String DELETE = "DEL";
+	private static final String CHECKPOINT = "CHECKPOINT";
+	private static final String JOURNAL_SUFFIX = ".journal";
+	private static final String SEPARATOR = "\t";
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private static final String ENCODING = "UTF-8";
+
+	// Index of the information in a record
+	static final int INDEX_OPERATION = 0;
+	static final int INDEX_KEY = 1;
+	static final int INDEX_TASK_TYPE = 2;
+	static final int INDEX_FIRST_FIELD = 3;
+
+	private static Logger log = Logger.getLogger("TaskJournal");
+
+	private File journalFile;
+	// Keys of the tasks known by the segments and the journal
+	private IdentityHashMap<Task, Integer> keys;
+	// Lists of the tasks as of the last record, to tell moved tasks apart
+	private IdentityHashMap<Task, String> taskTypes;
+	private int nextKey;
+	// Generation of the checkpoint this journal belongs to
+	private long generation;
+	// Number of records appended since the last checkpoint
+	private int recordCount;
+	private boolean hasHeader;
+	// Indicator whether a checkpoint was prepared and the journal file has not been restarted for it
+	private boolean isRestartPending;
+	// Records waiting to be appended, the latest one of each key
+	private LinkedHashMap<Integer, String> pendingRecords;
+
+	public TaskJournal(File xmlFile) {
+		journalFile = new File(xmlFile.getPath() + JOURNAL_SUFFIX);
+		keys = new IdentityHashMap<Task, Integer>();
+		taskTypes = new IdentityHashMap<Task, String>();
+		pendingRecords = new LinkedHashMap<Integer, String>();
+	}
+
+	/********************************** keys of tasks ************************************/
+
+	/**
+	 * Start a new checkpoint generation. The journal is truncated on the next write,
+	 * while the keys of the tasks are kept.
+	 * @param generation   generation number written in the checkpoint
+	 */
+	synchronized void reset(long generation) {
+		this.generation = generation;
+		recordCount = 0;
+		hasHeader = false;
+		isRestartPending = true;
+		pendingRecords.clear();
+	}
+
+	/**
+	 * Bind a task in the given list to a key read from the checkpoint or the journal
+	 */
+	synchronized void register(Task task, int key, String taskType) {
+		keys.put(task, key);
+		taskTypes.put(task, taskType);
+		nextKey = Math.max(nextKey, key + 1);
+	}
+
+	/**
+	 * Bind a task in the given list to its key, giving it a new key if it has none
+	 * @return the key of the task
+	 */
+	synchronized int register(Task task, String taskType) {
+		Integer key = keys.get(task);
+		if (key == null) {
+			key = nextKey();
+			keys.put(task, key);
+		}
+		taskTypes.put(task, taskType);
+		return key;
+	}
+	
+	/**
+	 * Forget the tasks which are no longer in any of the given lists
+	 * @param taskLists    all task lists of the model
+	 */
+	synchronized void retainTasks(List<List<Task>> taskLists) {
+		IdentityHashMap<Task, Integer> retainedKeys = new IdentityHashMap<Task, Integer>();
+		for (List<Task> taskList : taskLists) {
+			for (int i = 0; i < taskList.size(); i++) {
+				Integer key = keys.get(taskList.get(i));
+				if (key != null) {
+					retainedKeys.put(taskList.get(i), key);
+				}
+			}
+		}
+		keys = retainedKeys;
+		taskTypes.keySet().retainAll(keys.keySet());
+	}
+
+	synchronized int nextKey() {
+		return nextKey++;
+	}
+	
+	/**
+	 * @return the key the next new task will get
+	 */
+	synchronized int getNextKey() {
+		return nextKey;
+	}
+	
+	/**
+	 * Keep the keys below the given one for tasks which have not been loaded yet
+	 */
+	synchronized void reserveKeys(int key) {
+		nextKey = Math.max(nextKey, key);
+	}
+	
+	/**
+	 * @return the key of the task, null if it has none
+	 */
+	synchronized Integer getKey(Task task) {
+		return keys.get(task);
+	}
+	
+	/**
+	 * Forget a task replaced by its state read from file, without recording its deletion
+	 */
+	synchronized void forget(Task task) {
+		keys.remove(task);
+		taskTypes.remove(task);
+	}
+	
+	/**
+	 * Give a task a new key, moving its queued record to the new key
+	 * @return the new key of the task
+	 */
+	synchronized int changeKey(Task task) {
+		Integer previousKey = keys.remove(task);
+		int key = nextKey();
+		keys.put(task, key);
+		String previousRecord = previousKey == null ? null : pendingRecords.remove(previousKey);
+		if (previousRecord != null) {
+			String[] record = previousRecord.split(SEPARATOR, INDEX_TASK_TYPE + 1);
+			record[INDEX_KEY] = String.valueOf(key);
+			StringBuilder newRecord = new StringBuilder(record[INDEX_OPERATION]);
+			for (int i = INDEX_KEY; i < record.length; i++) {
+				newRecord.append(SEPARATOR).append(record[i]);
+			}
+			pendingRecords.put(key, newRecord.toString());
+		}
+		return key;
+	}
+	
+	/**
+	 * @return whether a record of the key is queued and not written yet
+	 */
+	synchronized boolean hasPendingRecord(int key) {
+		return pendingRecords.containsKey(key);
+	}
+	
+	/**
+	 * Continue from a generation written by another instance, if it is newer
+	 */
+	synchronized void raiseGeneration(long generation) {
+		this.generation = Math.max(this.generation, generation);
+	}
+	
+	File getFile() {
+		return journalFile;
+	}
+	
+	/**
+	 * @return the list of the task as of its last record, null if it is unknown
+	 */
+	synchronized String getTaskType(Task task) {
+		return taskTypes.get(task);
+	}
+
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return the number of records written or queued since the last checkpoint
+	 */
+	synchronized int getRecordCount() {
+		return recordCount + pendingRecords.size();
+	}
+
+	/********************************** write records ************************************/
+
+	/**
+	 * Queue a record storing the current state of a task in the given list.
+	 * A task added to a list is appended to it, so it is recorded as moved.
+	 */
+	synchronized void recordPut(Task task, String taskType, String[] fields) {
+		Integer key = keys.get(task);
+		if (key == null) {
+			key = nextKey();
+			keys.put(task, key);
+		}
+		String previousRecord = pendingRecords.get(key);
+		boolean isMoved = !taskType.equals(taskTypes.put(task, taskType))
+				|| (previousRecord != null && previousRecord.startsWith(MOVE));
+		if (isMoved) {
+			// a moved task goes after the tasks recorded before it
+			pendingRecords.remove(key);
+		}
+		pendingRecords.put(key, createRecord(isMoved ? MOVE : PUT, key, taskType, fields));
+	}
+	
+	/**
+	 * Queue a record storing the fields of a task which is in no loaded list, by its key
+	 */
+	synchronized void recordPut(int key, String taskType, String[] fields) {
+		pendingRecords.put(key, createRecord(PUT, key, taskType, fields));
+	}
+	
+	private String createRecord(String operation, int key, String taskType, String[] fields) {
+		StringBuilder record = new StringBuilder(operation);
+		record.append(SEPARATOR).append(key).append(SEPARATOR).append(taskType);
+		for (int i = 0; i < fields.length; i++) {
+			record.append(SEPARATOR).append(escape(fields[i]));
+		}
+		return record.toString();
+	}
+
+	/**
+	 * Queue a record deleting a task which is no longer in any list
+	 */
+	synchronized void recordDelete(Task task) {
+		Integer key = keys.remove(task);
+		taskTypes.remove(task);
+		if (key != null) {
+			recordDelete(key);
+		}
+	}
+	
+	/**
+	 * Queue a record deleting the task of a key, which no task in the lists has
+	 */
+	synchronized void recordDelete(int key) {
+		pendingRecords.put(key, DELETE + SEPARATOR + key);
+	}
+
+	/**
+	 * Take all queued records, to be appended to the journal file by write(). After a checkpoint 
+	 * the journal is restarted even without records, so that its old records are not replayed.
+	 * @return the records with the header if the journal has to be restarted, null if there is nothing to write
+	 */
+	synchronized JournalBatch takePendingRecords() {
+		if (pendingRecords.isEmpty() && !isRestartPending) {
+			return null;
+		}
+		isRestartPending = false;
+		List<String> lines = new ArrayList<String>();
+		boolean isNewJournal = !hasHeader;
+		if (isNewJournal) {
+			lines.add(CHECKPOINT + SEPARATOR + generation);
+			hasHeader = true;
+		}
+		lines.addAll(pendingRecords.values());
+		recordCount += pendingRecords.size();
+		pendingRecords.clear();
+		return new JournalBatch(lines, isNewJournal);
+	}
+
+	/**
+	 * Append records taken from the queue to the journal file
+	 * @return the number of bytes written
+	 * @throws IOException
+	 */
+	long write(JournalBatch batch) throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (String line : batch.lines) {
+			text.append(line).append(LINE_SEPARATOR);
+		}
+		byte[] data = text.toString().getBytes(ENCODING);
+		FileOutputStream output = new FileOutputStream(journalFile, !batch.isNewJournal);
+		try {
+			output.write(data);
+		} finally {
+			output.close();
+		}
+		return data.length;
+	}
+
+	/********************************** read records ************************************/
+
+	/**
+	 * Read the records written after the checkpoint of the given generation. A journal 
+	 * of any other checkpoint is ignored, except the one of the checkpoint just before it 
+	 * when the keys of the loaded tasks were stored with them: that checkpoint was then 
+	 * interrupted before the journal was restarted, and its records are the changes the 
+	 * segments not written yet miss, which replay onto the others without changing them.
+	 * @param generation    newest generation of the loaded checkpoint
+	 * @param hasStoredKeys    whether the loaded tasks were read with their keys
+	 * @return the records in the order they were written
+	 * @throws IOException
+	 */
+	synchronized List<String[]> readRecords(long generation, boolean hasStoredKeys) throws IOException {
+		reset(generation);
+		isRestartPending = false;
+		List<String[]> records = new ArrayList<String[]>();
+		if (!journalFile.exists()) {
+			return records;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(journalFile), ENCODING));
+		try {
+			long journalGeneration = parseGeneration(reader.readLine());
+			if (journalGeneration < 0) {
+				log.log(Level.INFO, "Journal has no checkpoint header.");
+				return records;
+			}
+			boolean isInterruptedCheckpoint = hasStoredKeys && journalGeneration == generation - 1;
+			if (journalGeneration != generation && !isInterruptedCheckpoint) {
+				log.log(Level.INFO, "Journal does not belong to the current checkpoint.");
+				return records;
+			}
+			// new records are appended, so the records of an interrupted checkpoint are kept until the next one
+			hasHeader = true;
+			readRecords(reader, records);
+		} finally {
+			reader.close();
+		}
+		recordCount = records.size();
+		return records;
+	}
+	
+	/**
+	 * Read the complete records written to the journal file between two offsets, leaving 
+	 * this journal as it is, so that the records appended by another instance can be read 
+	 * by any thread. A record which is still being written is left for the next read.
+	 * @param offset    offset from which to read, 0 to read every record after the header
+	 * @param length    offset up to which to read
+	 * @param records    list to which the records are added in the order they were written
+	 * @return the offset after the last complete record
+	 * @throws IOException
+	 */
+	long readRecords(long offset, long length, List<String[]> records) throws IOException {
+		byte[] data = new byte[(int) Math.max(0, length - offset)];
+		RandomAccessFile input = new RandomAccessFile(journalFile, "r");
+		try {
+			input.seek(offset);
+			input.readFully(data);
+		} finally {
+			input.close();
+		}
+		int end = data.length;
+		while (end > 0 && data[end - 1] != '\n') {
+			end--;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new ByteArrayInputStream(data, 0, end), ENCODING));
+		if (offset == 0) {
+			reader.readLine();
+		}
+		readRecords(reader, records);
+		return offset + end;
+	}
+	
+	/**
+	 * @return the generation in the header of the journal file, -1 if it is missing or has no header
+	 * @throws IOException
+	 */
+	long readFileGeneration() throws IOException {
+		if (!journalFile.exists()) {
+			return -1;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(journalFile), ENCODING));
+		try {
+			return parseGeneration(reader.readLine());
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private long parseGeneration(String header) {
+		if (header == null || !header.startsWith(CHECKPOINT + SEPARATOR)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(header.substring(CHECKPOINT.length() + SEPARATOR.length()));
+		} catch (NumberFormatException nfe) {
+			return -1;
+		}
+	}
+	
+	private void readRecords(BufferedReader reader, List<String[]> records) throws IOException {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] record = line.split(SEPARATOR, -1);
+			if (isValidRecord(record)) {
+				for (int i = INDEX_TASK_TYPE; i < record.length; i++) {
+					record[i] = unescape(record[i]);
+				}
+				records.add(record);
+			} else {
+				// A record cut off by a crash can only be the last one
+				log.log(Level.WARNING, "Incomplete journal record skipped.");
+			}
+		}
+	}
+
+	private boolean isValidRecord(String[] record) {
+		if (record[INDEX_OPERATION].equals(DELETE)) {
+			return record.length == INDEX_TASK_TYPE;
+		} else if (record[INDEX_OPERATION].equals(PUT) || record[INDEX_OPERATION].equals(MOVE)) {
+			return record.length == INDEX_FIRST_FIELD + TaskStorage.NUM_FIELDS;
+		}
+		return false;
+	}
+
+	/********************************** escaping ************************************/
+
+	static String escape(String field) {
+		if (field == null) {
+			return "";
+		}
+		return field.replace("\\", "\\\\").replace("\t", "\\t")
+				.replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	static String unescape(String field) {
+		if (field.indexOf('\\') < 0) {
+			return field;
+		}
+		StringBuilder result = new StringBuilder(field.length());
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '\\' && i + 1 < field.length()) {
+				char next = field.charAt(++i);
+				if (next == 't') {
+					result.append('\t');
+				} else if (next == 'n') {
+					result.append('\n');
+				} else if (next == 'r') {
+					result.append('\r');
+				} else {
+					result.append(next);
+				}
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+}
+
+//@author A0105667B
+/**
+ *
+ * This class holds the lines taken from the journal queue for one append
+ *
+ */
+class JournalBatch {
+	List<String> lines;
+	// Indicator whether the lines start a new journal file
+	boolean isNewJournal;
+
+	public JournalBatch(List<String> lines, boolean isNewJournal) {
+		this.lines = lines;
+		this.isNewJournal = isNewJournal;
+	}
+}
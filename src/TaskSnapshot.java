@@ -0,0 +1,306 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.CRC32;
+
+//@author A0105667B
+/**
+ *
+ * This class reads and writes the compact binary snapshot of the task lists.
+ * A snapshot starts with a header (magic number, format version, checkpoint
+ * generation, next free key, and the length and CRC32 checksum of the lists)
+ * followed by the pending, complete and trash lists, each written as a count
+ * and the records of its tasks. A segment snapshot holds a single list and
+ * writes a count of zero for the others. Each record starts with the journal
+ * key of the task. A snapshot cut off or damaged after it was written does not
+ * match its checksum and is rejected as a whole.
+ * Strings are length-prefixed UTF-8, dates are epoch milliseconds and the
+ * importance and status of a task are packed into a single byte, the status
+ * being written as a fixed code rather than the position of its enum constant.
+ *
+ */
+class TaskSnapshot {
+	private static final int MAGIC = 0x69446F42;
+	private static final int VERSION = 1;
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+	private static final String ENCODING = "UTF-8";
+
+	// Value of a missing string or date, the dates being written as they are kept in columns
+	private static final int NULL_STRING = -1;
+	private static final long NO_DATE = TaskColumns.NO_DATE;
+
+	// Layout of the flags byte
+	private static final int IMPORTANT_BIT = 0x01;
+	private static final int STATUS_SHIFT = 1;
+	private static final int STATUS_MASK = 0x07;
+
+	// Statuses by the codes written for them, kept apart from the order of the enum constants
+	private static final Task.Status[] STATUSES = { Task.Status.UNCHANGED, Task.Status.NEWLY_ADDED, 
+			Task.Status.DELETED, Task.Status.ADDED_WHEN_SYNC, Task.Status.DELETED_WHEN_SYNC };
+
+	private File snapshotFile;
+
+	public TaskSnapshot(File xmlFile) {
+		snapshotFile = new File(xmlFile.getPath() + SNAPSHOT_SUFFIX);
+	}
+
+	File getFile() {
+		return snapshotFile;
+	}
+
+	/**
+	 * @return the snapshot as it was before it was last written
+	 */
+	TaskSnapshot getPrevious() {
+		TaskSnapshot previous = new TaskSnapshot(snapshotFile);
+		previous.snapshotFile = AtomicFile.getPreviousFile(snapshotFile);
+		return previous;
+	}
+
+	/********************************** header ************************************/
+
+	/**
+	 * Read the checkpoint generation from the header of the snapshot
+	 * @return the generation, -1 if there is no valid snapshot
+	 */
+	long readGeneration() {
+		if (!snapshotFile.exists()) {
+			return -1;
+		}
+		try {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+			try {
+				readVersion(input);
+				return input.readLong();
+			} finally {
+				input.close();
+			}
+		} catch (IOException io) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Read the next free key from the header of the snapshot
+	 * @return the key, LoadedTask.NO_KEY if there is no valid snapshot
+	 */
+	int readNextKey() {
+		if (!snapshotFile.exists()) {
+			return LoadedTask.NO_KEY;
+		}
+		try {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+			try {
+				readVersion(input);
+				input.readLong();
+				return input.readInt();
+			} finally {
+				input.close();
+			}
+		} catch (IOException io) {
+			return LoadedTask.NO_KEY;
+		}
+	}
+
+	private void readVersion(DataInputStream input) throws IOException {
+		if (input.readInt() != MAGIC) {
+			throw new IOException("Not a task snapshot: " + snapshotFile.getName());
+		}
+		int version = input.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported task snapshot version " + version);
+		}
+	}
+
+	/********************************** write snapshot ************************************/
+
+	/**
+	 * Write a task list in the snapshot format
+	 * @param stream    stream the snapshot is written to, closed afterwards
+	 * @param generation    checkpoint generation of the snapshot
+	 * @param taskType    "pending", "complete" or "trash"
+	 * @param taskList    tasks of the list, written from their columns without creating them
+	 * @param taskKeys    journal keys of the tasks, in the same order
+	 * @param nextKey    key the next new task will get
+	 * @throws IOException
+	 */
+	void write(OutputStream stream, long generation, String taskType, TaskColumns taskList, 
+			int[] taskKeys, int nextKey) throws IOException {
+		ByteArrayOutputStream lists = new ByteArrayOutputStream();
+		DataOutputStream listOutput = new DataOutputStream(lists);
+		for (String listType : TaskStorage.TASK_TYPES) {
+			if (!listType.equals(taskType)) {
+				listOutput.writeInt(0);
+				continue;
+			}
+			listOutput.writeInt(taskList.size());
+			for (int i = 0; i < taskList.size(); i++) {
+				listOutput.writeInt(taskKeys[i]);
+				writeTask(listOutput, taskList, i);
+			}
+		}
+		listOutput.flush();
+		byte[] listData = lists.toByteArray();
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(generation);
+			output.writeInt(nextKey);
+			output.writeInt(listData.length);
+			output.writeInt(computeChecksum(listData));
+			output.write(listData);
+			output.flush();
+		} finally {
+			output.close();
+		}
+	}
+
+	private static int computeChecksum(byte[] data) {
+		CRC32 checksum = new CRC32();
+		checksum.update(data);
+		return (int) checksum.getValue();
+	}
+
+	private void writeTask(DataOutputStream output, TaskColumns tasks, int row) throws IOException {
+		writeString(output, tasks.getIndexId(row));
+		writeString(output, tasks.getWorkInfo(row));
+		output.writeLong(tasks.getStartDate(row));
+		output.writeLong(tasks.getEndDate(row));
+		writeString(output, tasks.getTag(row).getTag());
+		writeString(output, tasks.getTag(row).getRepetition());
+		int flags = getStatusCode(tasks.getStatus(row)) << STATUS_SHIFT;
+		if (tasks.isImportant(row)) {
+			flags |= IMPORTANT_BIT;
+		}
+		output.writeByte(flags);
+		output.writeInt(tasks.getIndexInList(row));
+		output.writeLong(tasks.getModifiedDate(row));
+		output.writeInt(tasks.getCurrentOccurrence(row));
+		output.writeInt(tasks.getNumOccurrences(row));
+	}
+
+	private void writeString(DataOutputStream output, String string) throws IOException {
+		if (string == null) {
+			output.writeInt(NULL_STRING);
+		} else {
+			byte[] bytes = string.getBytes(ENCODING);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	private static int getStatusCode(Task.Status status) {
+		for (int code = 0; code < STATUSES.length; code++) {
+			if (STATUSES[code] == status) {
+				return code;
+			}
+		}
+		throw new IllegalArgumentException("Unknown task status " + status);
+	}
+
+	/********************************** read snapshot ************************************/
+
+	/**
+	 * Read the tasks of the snapshot in file order
+	 * @param loadedTasks    list to which the tasks are added with their list type and key
+	 * @return the checkpoint generation of the snapshot
+	 * @throws IOException    if the snapshot is missing, truncated, damaged or of an unknown version
+	 */
+	long read(List<LoadedTask> loadedTasks) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+		try {
+			readVersion(input);
+			long generation = input.readLong();
+			// the next free key is only needed for the lists which are not loaded
+			input.readInt();
+			input = readCheckedLists(input);
+			for (String taskType : TaskStorage.TASK_TYPES) {
+				int size = input.readInt();
+				for (int i = 0; i < size; i++) {
+					int key = input.readInt();
+					loadedTasks.add(new LoadedTask(readTask(input), taskType, key));
+				}
+			}
+			return generation;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Read the lists of the snapshot and verify them against the checksum in the header,
+	 * before any task is built from them
+	 * @return the stream of the verified lists
+	 */
+	private DataInputStream readCheckedLists(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		int checksum = input.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid task snapshot length " + length);
+		}
+		byte[] listData = new byte[length];
+		input.readFully(listData);
+		if (computeChecksum(listData) != checksum) {
+			throw new IOException("Task snapshot does not match its checksum: " + snapshotFile.getName());
+		}
+		input.close();
+		return new DataInputStream(new ByteArrayInputStream(listData));
+	}
+
+	private Task readTask(DataInputStream input) throws IOException {
+		Task newTask = new Task();
+		newTask.setIndexId(readString(input));
+		newTask.setWorkInfo(readString(input));
+		CustomDate startDate = readDate(input);
+		if (startDate != null) {
+			newTask.setStartDate(startDate);
+		}
+		CustomDate endDate = readDate(input);
+		if (endDate != null) {
+			newTask.setEndDate(endDate);
+		}
+		String tag = readString(input);
+		newTask.setTag(Tag.valueOf(tag, readString(input)));
+		int flags = input.readUnsignedByte();
+		newTask.setIsImportant((flags & IMPORTANT_BIT) != 0);
+		newTask.setIndexInList(input.readInt());
+		newTask.setLatestModifiedDate(readDate(input));
+		newTask.setCurrentOccurrence(input.readInt());
+		newTask.setNumOccurrences(input.readInt());
+		int status = (flags >> STATUS_SHIFT) & STATUS_MASK;
+		if (status >= STATUSES.length) {
+			throw new IOException("Invalid task status " + status);
+		}
+		newTask.setStatus(STATUSES[status]);
+		return newTask;
+	}
+
+	private String readString(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if (length == NULL_STRING) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, ENCODING);
+	}
+
+	private CustomDate readDate(DataInputStream input) throws IOException {
+		long millis = input.readLong();
+		if (millis == NO_DATE) {
+			return null;
+		}
+		CustomDate date = new CustomDate();
+		date.setTimeInMillis(millis);
+		return date;
+	}
+}
@@ -1,19 +1,52 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
 import java.lang.String;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javafx.collections.ObservableList;
 
-import org.jdom2.Document;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.jdom2.Element;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.JDOMException;
 
 //@author A0105667B
 public class TaskStorage extends Storage {
@@ -34,127 +67,1550 @@ public class TaskStorage extends Storage {
 	private static final String DELETED = "deleted";
 	private static final String ADDED_WHEN_SYNC = "added_when_sync";
 	private static final String DELETED_WHEN_SYNC = "deleted_when_sync";
+	private static final String CHECKPOINT = "checkpoint";
+	private static final String TASK = "task";
+	private static final String KEY = "key";
+	private static final String NEXT_KEY = "nextKey";
+	private static final String SEGMENT_SEPARATOR = "_";
+	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+	// Processing instruction holding the checksum of the XML content following it
+	private static final String CHECKSUM_START = "<?checksum ";
+	private static final String CHECKSUM_END = "?>";
+	private static final int CHECKSUM_HEADER_LENGTH = 256;
+	private static final int BUFFER_SIZE = 8192;
+	private static final String ENCODING = "UTF-8";
+	
+	static final String PENDING = "pending";
+	static final String COMPLETE = "complete";
+	static final  String TRASH = "trash";
+	// Task lists in the order of their tabs
+	static final String[] TASK_TYPES = { PENDING, COMPLETE, TRASH };
+	
+	// Order of the task fields in XML file and journal records
+	private static final String[] FIELDS = { INDEXID, WORK_INFO, START_DATE, END_DATE, TAG, REPETITION, 
+		IS_IMPORTANT, INDEX_IN_LIST, MODIFIED_DATE, CURRENT_OCCURRENCE, NUM_OCCURRENCE, STATUS };
+	static final int NUM_FIELDS = FIELDS.length;
+	private static final Map<String, Integer> FIELD_POSITIONS = new HashMap<String, Integer>();
+	static {
+		for (int i = 0; i < NUM_FIELDS; i++) {
+			FIELD_POSITIONS.put(FIELDS[i], i);
+		}
+	}
+	// Depth of the elements in XML file: root, task list, task and task field
+	private static final int DEPTH_ROOT = 1;
+	private static final int DEPTH_TASK_LIST = 2;
+	private static final int DEPTH_TASK = 3;
+	private static final int DEPTH_FIELD = 4;
+	// Number of journal records after which the changed task lists are rewritten
+	private static final int CHECKPOINT_INTERVAL = 500;
+	private static final String MESSAGE_UNSUPPORTED_FORMAT = "Only .csv and .ics files can be imported or exported.";
+
+	private static Logger log = Logger.getLogger("TaskStorage");
+	
+	private TaskJournal journal;
+	// Compressed file to which old complete and trashed tasks are moved
+	private TaskArchive archive;
+	// Archived tasks of each tab as last read, and the state of the archive they were read from
+	private TaskColumns[] archivedColumns = new TaskColumns[TASK_TYPES.length];
+	private FileState[] archivedStates = new FileState[TASK_TYPES.length];
+	// Binary snapshot of the single task file written before the lists were stored separately
+	private TaskSnapshot snapshot;
+	// Files of the task lists, in the order of their tabs
+	private TaskSegment[] segments;
+	private boolean isJournalMode = true;
+	// Indicator whether every task list has a segment the journal can refer to
+	private boolean hasCheckpoint = false;
+	// Copies of the task lists taken from model and waiting to be serialized and written, by target file
+	private Map<File, SegmentCheckpoint> pendingCheckpoints = new LinkedHashMap<File, SegmentCheckpoint>();
+	// Tasks the journal replayed into lists not loaded yet, and the keys of all replayed tasks
+	private Map<Integer, LoadedTask> deferredTasks = new LinkedHashMap<Integer, LoadedTask>();
+	private Set<Integer> replayedKeys = new HashSet<Integer>();
+	// Lock keeping the writes of prepared changes in order
+	private final Object writeLock = new Object();
+	// State of the files as this storage last read or wrote them, to tell the changes made by others
+	private Map<File, FileState> knownFileStates = new HashMap<File, FileState>();
+	// Key from which the keys were given by this storage after the files were last read or written
+	private int storedKeyLimit = 0;
+	// Length of the journal file up to which this storage read or wrote it, -1 if records of others 
+	// may be before that length
+	private long journalOffset = 0;
+	// Files which were damaged and replaced by their previous version, not reported yet
+	private List<String> restoredFileNames = new ArrayList<String>();
+	
+	public TaskStorage(String fileName, Model model) {
+		createDir();
+		xmlFile = new File(findUserDocDir() + FOLDERNAME + "/" + fileName);
+		this.model = model;
+		journal = new TaskJournal(xmlFile);
+		snapshot = new TaskSnapshot(xmlFile);
+		archive = new TaskArchive(xmlFile);
+		segments = new TaskSegment[TASK_TYPES.length];
+		for (int i = 0; i < TASK_TYPES.length; i++) {
+			segments[i] = new TaskSegment(TASK_TYPES[i], i, getSegmentFile(TASK_TYPES[i]));
+		}
+	}
+	
+	/**
+	 * @return the XML file of a task list, named after the task file and the list
+	 */
+	private File getSegmentFile(String taskType) {
+		String fileName = xmlFile.getName();
+		int extension = fileName.lastIndexOf('.');
+		if (extension < 0) {
+			extension = fileName.length();
+		}
+		String segmentName = fileName.substring(0, extension) + SEGMENT_SEPARATOR + taskType 
+				+ fileName.substring(extension);
+		return new File(xmlFile.getParentFile(), segmentName);
+	}
+	
+	/**
+	 * Enable or disable appending changes to the journal instead of rewriting the whole file
+	 */
+	public void setJournalMode(boolean isJournalMode) {
+		this.isJournalMode = isJournalMode;
+	}
+	
+	/**
+	 * Take the names of the files found damaged since the last call, which were replaced by their 
+	 * previous version. The changes stored after that version are lost unless the journal has them.
+	 * @return the names of the files, empty if there is none
+	 */
+	public synchronized List<String> takeRestoredFileNames() {
+		List<String> fileNames = restoredFileNames;
+		restoredFileNames = new ArrayList<String>();
+		return fileNames;
+	}
+	
+	// the files may also be read by the thread watching them
+	private synchronized void addRestoredFileName(String fileName) {
+		restoredFileNames.add(fileName);
+	}
+	
+	/************************** store and load task list  **************************/
+	
+	@Override
+	/**
+	 * Store every task list to its XML file, or to its binary snapshot if chosen in settings
+	 */
+	public void storeToFile() throws IOException {
+		synchronized (this) {
+			prepareCheckpoint(true);
+		}
+		writePreparedChanges();
+	}
+	
+	@Override
+	public void updateToFile() throws IOException {
+		storeToFile();
+	}
+	
+	@Override
+	/**
+	 * Append the changes of the given tasks to the journal of task storage.
+	 * The changed task lists are rewritten when the journal grows too long.
+	 * @param changedTasks     tasks modified by a command, null if unknown
+	 */
+	public void storeChangesToFile(List<Task> changedTasks) throws IOException {
+		prepareChanges(changedTasks);
+		writePreparedChanges();
+	}
+	
+	@Override
+	/**
+	 * Convert the changes of the given tasks to journal records, or the changed task lists to a 
+	 * checkpoint when the journal grows too long or is disabled. Nothing is written to disk until 
+	 * writePreparedChanges().
+	 * @param changedTasks     tasks modified by a command, null if unknown
+	 */
+	public synchronized void prepareChanges(List<Task> changedTasks) throws IOException {
+		if (changedTasks == null || !hasCheckpoint) {
+			prepareCheckpoint(true);
+			return;
+		}
+		for (Task changedTask : changedTasks) {
+			String taskType = findTaskType(changedTask);
+			// the list the task was taken from may have been changed without model knowing
+			markListDirty(journal.getTaskType(changedTask));
+			markListDirty(taskType);
+			if (taskType == null) {
+				journal.recordDelete(changedTask);
+			} else {
+				journal.recordPut(changedTask, taskType, convertToRecord(changedTask));
+			}
+		}
+		if (!isJournalMode || journal.getRecordCount() >= CHECKPOINT_INTERVAL) {
+			prepareCheckpoint(false);
+		}
+	}
+	
+	@Override
+	/**
+	 * Write the prepared segments and journal records to disk, in the order they were prepared.
+	 * The segments are converted to their file format here, so that the thread writing them 
+	 * does the conversion instead of the one executing commands. The journal is only restarted 
+	 * after every segment of the checkpoint has been written. Nothing is written while the files 
+	 * have external changes: the changes stay prepared until they are written after the merge.
+	 * @return whether there was anything to write
+	 */
+	public boolean writePreparedChanges() throws IOException {
+		synchronized (writeLock) {
+			if (hasExternalChanges()) {
+				// writing now would hide the changes of the other writer, whose keys may also collide 
+				// with those given since the files were read
+				log.log(Level.INFO, "Write deferred until the external changes are merged.");
+				return false;
+			}
+			Map<File, SegmentCheckpoint> checkpoints;
+			JournalBatch batch;
+			synchronized (this) {
+				checkpoints = pendingCheckpoints;
+				pendingCheckpoints = new LinkedHashMap<File, SegmentCheckpoint>();
+				batch = journal.takePendingRecords();
+				storedKeyLimit = journal.getNextKey();
+			}
+			if (checkpoints.isEmpty() && batch == null) {
+				return false;
+			}
+			for (Map.Entry<File, SegmentCheckpoint> entry : checkpoints.entrySet()) {
+				byte[] checkpointData = convertCheckpoint(entry.getValue());
+				writeCheckpoint(entry.getKey(), checkpointData);
+				knownFileStates.put(entry.getKey(), new FileState(entry.getKey(), checkpointData));
+				log.log(Level.INFO, "Data saved to " + entry.getKey().getName() + ".");
+			}
+			if (!checkpoints.isEmpty()) {
+				removeSingleTaskFile();
+			}
+			if (batch != null) {
+				File journalFile = journal.getFile();
+				long writtenLength = journal.write(batch);
+				long expectedLength = batch.isNewJournal ? writtenLength : journalOffset + writtenLength;
+				FileState journalState = new FileState(journalFile);
+				journalOffset = expectedLength;
+				if (journalState.length != expectedLength) {
+					// another instance appended records meanwhile, which the next merge reads again
+					journalState = new FileState(journalFile, expectedLength);
+					journalOffset = -1;
+				}
+				knownFileStates.put(journalFile, journalState);
+				log.log(Level.INFO, "Changes journaled.");
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Copy the task lists changed since they were last stored for a checkpoint and start a new 
+	 * journal for them. The segments of the other lists are still up to date, as well 
+	 * as those of the lists which have not been loaded and changed.
+	 * @param isFull    whether every loaded task list is converted, changed or not
+	 */
+	private void prepareCheckpoint(boolean isFull) throws IOException {
+		isFull = isFull || !hasCheckpoint;
+		long generation = journal.getGeneration() + 1;
+		List<TaskSegment> unreadSegments = new ArrayList<TaskSegment>();
+		for (TaskSegment segment : segments) {
+			// changes made to a list not loaded yet are merged with it before it is written
+			if (model.isListDirty(segment.tabIndex) && !model.loadList(segment.tabIndex)) {
+				log.log(Level.WARNING, "The " + segment.taskType + " list cannot be read and is left out of the checkpoint.");
+				unreadSegments.add(segment);
+			}
+		}
+		if (isFull) {
+			journal.retainTasks(getTaskLists());
+		}
+		for (TaskSegment segment : segments) {
+			boolean isDirty = model.isListDirty(segment.tabIndex);
+			boolean isLoaded = model.isListLoaded(segment.tabIndex);
+			if (isLoaded && (isDirty || isFull)) {
+				prepareSegment(segment, generation);
+				model.clearListDirty(segment.tabIndex);
+			}
+		}
+		//Start a new journal for the checkpoint just prepared
+		journal.reset(generation);
+		for (TaskSegment segment : unreadSegments) {
+			recordUnreadChanges(segment);
+		}
+		hasCheckpoint = true;
+	}
+	
+	/**
+	 * Record again in the new journal the changes of a list which could not be read for the 
+	 * checkpoint: the tasks the journal replayed into it or out of it, and the tasks added to it 
+	 * since. Its segment is kept as it is and stays dirty, so the next checkpoint tries it again.
+	 */
+	private void recordUnreadChanges(TaskSegment segment) {
+		Map<Integer, Task> keyedTasks = new HashMap<Integer, Task>();
+		Map<Integer, String> keyedTaskTypes = new HashMap<Integer, String>();
+		List<List<Task>> taskLists = getTaskLists();
+		for (TaskSegment listSegment : segments) {
+			for (Task task : taskLists.get(listSegment.tabIndex)) {
+				Integer key = journal.getKey(task);
+				if (key != null) {
+					keyedTasks.put(key, task);
+					keyedTaskTypes.put(key, listSegment.taskType);
+				}
+			}
+		}
+		for (int key : replayedKeys) {
+			LoadedTask deferredTask = deferredTasks.get(key);
+			if (deferredTask != null) {
+				if (deferredTask.taskType.equals(segment.taskType)) {
+					journal.recordPut(key, segment.taskType, convertToRecord(deferredTask.task));
+				}
+			} else if (keyedTasks.containsKey(key)) {
+				Task task = keyedTasks.get(key);
+				journal.recordPut(task, keyedTaskTypes.get(key), convertToRecord(task));
+			} else {
+				journal.recordDelete(key);
+			}
+		}
+		for (Task task : taskLists.get(segment.tabIndex)) {
+			journal.recordPut(task, segment.taskType, convertToRecord(task));
+		}
+	}
+	
+	/**
+	 * Copy a task list with the keys of its tasks, to be converted and written by writePreparedChanges()
+	 */
+	private void prepareSegment(TaskSegment segment, long generation) {
+		List<Task> taskList = getTaskLists().get(segment.tabIndex);
+		int[] taskKeys = registerTasks(taskList, segment.taskType);
+		TaskColumns taskCopies = new TaskColumns(taskList.size());
+		for (int i = 0; i < taskList.size(); i++) {
+			taskCopies.add(taskList.get(i));
+		}
+		SegmentCheckpoint checkpoint = new SegmentCheckpoint(segment, generation, taskCopies, taskKeys, 
+				journal.getNextKey(), model.hasBinaryStorage(), model.hasCompressedStorage());
+		pendingCheckpoints.put(checkpoint.getFile(), checkpoint);
+	}
+	
+	/**
+	 * Convert a copied task list to the file format chosen when it was copied
+	 * @return the content of the segment file
+	 */
+	private byte[] convertCheckpoint(SegmentCheckpoint checkpoint) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		if (checkpoint.isBinary) {
+			checkpoint.segment.snapshot.write(data, checkpoint.generation, checkpoint.segment.taskType, 
+					checkpoint.tasks, checkpoint.taskKeys, checkpoint.nextKey);
+		} else if (checkpoint.isCompressed) {
+			GZIPOutputStream compressedData = new GZIPOutputStream(data, BUFFER_SIZE);
+			writeXML(compressedData, checkpoint);
+			compressedData.finish();
+		} else {
+			writeXML(data, checkpoint);
+		}
+		return data.toByteArray();
+	}
+	
+	/**
+	 * Delete the single task file written before the lists were stored separately, and its 
+	 * binary snapshot, once every list has been written to its own file
+	 */
+	private void removeSingleTaskFile() {
+		if (!AtomicFile.exists(xmlFile) && !AtomicFile.exists(snapshot.getFile())) {
+			return;
+		}
+		for (TaskSegment segment : segments) {
+			if (!segment.isStored()) {
+				return;
+			}
+		}
+		AtomicFile.delete(xmlFile);
+		AtomicFile.delete(snapshot.getFile());
+		log.log(Level.INFO, xmlFile.getName() + " removed, the tasks being stored by list.");
+	}
+	
+	/**
+	 * Replace a segment file atomically, keeping its previous version to fall back to
+	 */
+	private void writeCheckpoint(File checkpointFile, byte[] checkpointData) throws IOException {
+		AtomicFile.write(checkpointFile, checkpointData);
+	}
+	
+	/**
+	 * @return the task lists in the order of their tabs, the lists not loaded yet being empty
+	 */
+	private List<List<Task>> getTaskLists() {
+		List<List<Task>> taskLists = new ArrayList<List<Task>>();
+		for (TaskSegment segment : segments) {
+			taskLists.add(model.getList(segment.tabIndex));
+		}
+		return taskLists;
+	}
+	
+	private void writeXML(OutputStream output, SegmentCheckpoint checkpoint) throws IOException {
+		//Initialize the elements in the XML file
+		Element root = new Element("root");
+		root.setAttribute(CHECKPOINT, String.valueOf(checkpoint.generation));
+		root.setAttribute(NEXT_KEY, String.valueOf(checkpoint.nextKey));
+		//Add task info to the element of the task list and append it to root
+		String taskType = checkpoint.segment.taskType;
+		Element tasks = addTasksToXMLFile(new Element(taskType), taskType, checkpoint.tasks, checkpoint.taskKeys);
+		root.getChildren().add(tasks);
+		//Outupt in XML format, the content being preceded by its checksum
+		XMLOutputter xmlOutput = new XMLOutputter();
+		xmlOutput.setFormat(Format.getPrettyFormat());
+		String lineSeparator = xmlOutput.getFormat().getLineSeparator();
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		content.write(lineSeparator.getBytes(ENCODING));
+		xmlOutput.output(root, content);
+		content.write(lineSeparator.getBytes(ENCODING));
+		byte[] contentData = content.toByteArray();
+		String header = XML_DECLARATION + lineSeparator + CHECKSUM_START 
+				+ Long.toHexString(computeChecksum(contentData, 0)) + CHECKSUM_END;
+		output.write(header.getBytes(ENCODING));
+		output.write(contentData);
+	}
+	
+	private long computeChecksum(byte[] data, int offset) {
+		CRC32 checksum = new CRC32();
+		checksum.update(data, offset, data.length - offset);
+		return checksum.getValue();
+	}
+	
+	/**
+	 * Open an XML file of a task list, decompressing it if it was written compressed. 
+	 * Both kinds of files are read whatever the current setting is.
+	 */
+	private InputStream openXMLFile(File checkpointFile) throws IOException {
+		InputStream input = new BufferedInputStream(new FileInputStream(checkpointFile), BUFFER_SIZE);
+		input.mark(2);
+		int magic = input.read() | (input.read() << 8);
+		input.reset();
+		if (magic == GZIPInputStream.GZIP_MAGIC) {
+			return new BufferedInputStream(new GZIPInputStream(input, BUFFER_SIZE), BUFFER_SIZE);
+		}
+		return input;
+	}
+	
+	/**
+	 * @return the XML file of a task list, or its previous version if it is missing after an interrupted write
+	 */
+	private File getStoredXMLFile(File checkpointFile) {
+		File previousFile = AtomicFile.getPreviousFile(checkpointFile);
+		if (checkpointFile.exists() || !previousFile.exists()) {
+			return checkpointFile;
+		}
+		log.log(Level.WARNING, checkpointFile.getName() + " is missing, its previous version is read.");
+		return previousFile;
+	}
+	
+	/**
+	 * @return the binary snapshot of a task list, or its previous version if it is missing
+	 */
+	private TaskSnapshot getStoredSnapshot(TaskSnapshot checkpointSnapshot) {
+		if (checkpointSnapshot.getFile().exists()) {
+			return checkpointSnapshot;
+		}
+		return checkpointSnapshot.getPrevious();
+	}
+	
+	/**
+	 * @return the list holding the task, null if it is in none. A task cannot have been changed 
+	 * in a list which is not loaded yet, so such lists are not searched.
+	 */
+	private String findTaskType(Task task) {
+		for (TaskSegment segment : segments) {
+			if (model.isListLoaded(segment.tabIndex) && model.getIndexFromTab(task, segment.tabIndex) >= 0) {
+				return segment.taskType;
+			}
+		}
+		return null;
+	}
+	
+	private void markListDirty(String taskType) {
+		TaskSegment segment = getSegment(taskType);
+		if (segment != null) {
+			model.markListDirty(segment.tabIndex);
+		}
+	}
+	
+	/**
+	 * @return the journal keys of the tasks in the list, new tasks getting new keys
+	 */
+	private int[] registerTasks(List<Task> taskList, String taskType) {
+		int[] taskKeys = new int[taskList.size()];
+		for (int i = 0; i < taskList.size(); i++) {
+			taskKeys[i] = journal.register(taskList.get(i), taskType);
+		}
+		return taskKeys;
+	}
+	
+	@Override
+	/**
+	 * Load each task list from its XML file, or from its binary snapshot if that one was written 
+	 * last. The complete and trash lists are only read on their first access. The single task file 
+	 * written before the lists were stored separately is read as well until every list has its own 
+	 * file. The XML files are read as a stream, so each task is built from its fields without 
+	 * keeping the whole document in memory. Old tasks of the loaded lists are moved to the archive.
+	 */
+	public synchronized void loadFromFile() throws IOException {
+		model.setListStorage(this);
+		//Retrieve tasks from the newest checkpoint, replay the journal and add them to model
+		Map<Integer, LoadedTask> loadedTasks = new LinkedHashMap<Integer, LoadedTask>();
+		long generation = 0;
+		boolean hasAllSegments = true;
+		boolean hasSegments = false;
+		for (TaskSegment segment : segments) {
+			hasAllSegments = hasAllSegments && segment.isStored();
+			hasSegments = hasSegments || segment.isStored();
+		}
+		if (!hasAllSegments && (AtomicFile.exists(xmlFile) || AtomicFile.exists(snapshot.getFile()))) {
+			generation = loadCheckpointToMap(xmlFile, snapshot, loadedTasks);
+		}
+		Set<String> deferredTaskTypes = new HashSet<String>();
+		for (TaskSegment segment : segments) {
+			if (!segment.isStored()) {
+				continue;
+			}
+			long deferredGeneration = -1;
+			if (hasAllSegments && segment.tabIndex != Common.PENDING_TAB) {
+				deferredGeneration = deferSegment(segment);
+			}
+			if (deferredGeneration >= 0) {
+				generation = Math.max(generation, deferredGeneration);
+				deferredTaskTypes.add(segment.taskType);
+			} else {
+				generation = Math.max(generation, loadCheckpointToMap(segment.xmlFile, segment.snapshot, loadedTasks));
+			}
+		}
+		int deferredKeyLimit = journal.getNextKey();
+		List<String[]> records = journal.readRecords(generation, hasSegments);
+		Set<String> changedTaskTypes = replayJournal(loadedTasks, records, deferredTaskTypes, deferredKeyLimit);
+		addTasksToModel(loadedTasks);
+		for (TaskSegment segment : segments) {
+			model.clearListDirty(segment.tabIndex);
+		}
+		//The lists changed by the journal are rewritten on the next checkpoint
+		for (String taskType : changedTaskTypes) {
+			markListDirty(taskType);
+		}
+		hasCheckpoint = hasAllSegments;
+		storedKeyLimit = journal.getNextKey();
+		recordFileStates();
+		for (TaskSegment segment : segments) {
+			if (model.isListLoaded(segment.tabIndex)) {
+				archiveOldTasks(segment);
+			}
+		}
+	}
+	
+	@Override
+	/**
+	 * Load a task list left to be read when it is needed, together with the tasks the journal 
+	 * replayed into it when the other lists were loaded. Its old tasks are moved to the archive.
+	 * @throws IOException    if the list cannot be read, nothing being added to it then
+	 */
+	public synchronized void loadListFromFile(int tabIndex) throws IOException {
+		TaskSegment segment = segments[tabIndex];
+		Map<Integer, LoadedTask> loadedTasks = new LinkedHashMap<Integer, LoadedTask>();
+		try {
+			readCheckpointToMap(segment.xmlFile, segment.snapshot, loadedTasks);
+		} catch (XMLStreamException xmlex) {
+			throw new IOException(segment.xmlFile.getName() + ": " + xmlex.getMessage(), xmlex);
+		}
+		//The journal holds a newer state of the tasks it replayed
+		loadedTasks.keySet().removeAll(replayedKeys);
+		Iterator<Map.Entry<Integer, LoadedTask>> iterator = deferredTasks.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Integer, LoadedTask> entry = iterator.next();
+			if (entry.getValue().taskType.equals(segment.taskType)) {
+				loadedTasks.put(entry.getKey(), entry.getValue());
+				iterator.remove();
+			}
+		}
+		boolean isDirty = model.isListDirty(tabIndex);
+		addTasksToModel(loadedTasks, tabIndex);
+		if (!isDirty) {
+			model.clearListDirty(tabIndex);
+		}
+		log.log(Level.INFO, "Loaded " + loadedTasks.size() + " tasks of " + segment.taskType + " list.");
+		try {
+			archiveOldTasks(segment);
+		} catch (IOException io) {
+			// the list is loaded all the same, its old tasks being archived on the next load
+			log.log(Level.WARNING, "Cannot archive the old tasks: " + io.getMessage());
+		}
+	}
+	
+	/**
+	 * leave a task list to be loaded on its first access, if the next free key stored with it 
+	 * keeps new tasks from getting the keys of the tasks in it
+	 * @return the checkpoint generation of the segment, -1 if it has to be loaded now
+	 */
+	private long deferSegment(TaskSegment segment) throws IOException {
+		TaskSnapshot segmentSnapshot = getStoredSnapshot(segment.snapshot);
+		File segmentFile = getStoredXMLFile(segment.xmlFile);
+		long snapshotGeneration = segmentSnapshot.readGeneration();
+		long xmlGeneration = readXMLGeneration(segmentFile);
+		int nextKey;
+		if (snapshotGeneration > xmlGeneration) {
+			nextKey = segmentSnapshot.readNextKey();
+		} else {
+			nextKey = readXMLNextKey(segmentFile);
+		}
+		if (nextKey == LoadedTask.NO_KEY) {
+			return -1;
+		}
+		journal.reserveKeys(nextKey);
+		model.deferListLoading(segment.tabIndex, this);
+		return Math.max(snapshotGeneration, xmlGeneration);
+	}
+	
+	/**
+	 * read the tasks of an XML file or of its binary snapshot, whichever was written last. A file 
+	 * damaged or left missing by an interrupted write is replaced by its previous version.
+	 * @return the checkpoint generation of the tasks read
+	 */
+	private long loadCheckpointToMap(File checkpointFile, TaskSnapshot checkpointSnapshot, 
+			Map<Integer, LoadedTask> loadedTasks) throws IOException {
+		try {
+			return readCheckpointToMap(checkpointFile, checkpointSnapshot, loadedTasks);
+		} catch (XMLStreamException xmlex) {
+			log.log(Level.WARNING, checkpointFile.getName() + ": " + xmlex.getMessage());
+			return 0;
+		}
+	}
+	
+	private long readCheckpointToMap(File checkpointFile, TaskSnapshot checkpointSnapshot, 
+			Map<Integer, LoadedTask> loadedTasks) throws IOException, XMLStreamException {
+		checkpointFile = getStoredXMLFile(checkpointFile);
+		checkpointSnapshot = getStoredSnapshot(checkpointSnapshot);
+		if (checkpointSnapshot.readGeneration() > readXMLGeneration(checkpointFile)) {
+			return loadSnapshotToMap(checkpointFile, checkpointSnapshot, loadedTasks);
+		} else {
+			return loadXMLFileToMap(checkpointFile, loadedTasks);
+		}
+	}
+	
+	/**
+	 * read the tasks of the binary snapshot, falling back to its previous version if that one is 
+	 * newer than the XML file, else to the XML file, if it cannot be read
+	 * @return the checkpoint generation of the tasks read
+	 */
+	private long loadSnapshotToMap(File checkpointFile, TaskSnapshot checkpointSnapshot, 
+			Map<Integer, LoadedTask> loadedTasks) throws IOException, XMLStreamException {
+		List<LoadedTask> snapshotTasks = new ArrayList<LoadedTask>();
+		try {
+			long generation = checkpointSnapshot.read(snapshotTasks);
+			for (LoadedTask loadedTask : snapshotTasks) {
+				putLoadedTask(loadedTasks, loadedTask);
+			}
+			return generation;
+		} catch (IOException io) {
+			log.log(Level.WARNING, "Snapshot cannot be read: " + io.getMessage());
+			TaskSnapshot previousSnapshot = checkpointSnapshot.getPrevious();
+			addRestoredFileName(checkpointSnapshot.getFile().getName());
+			if (previousSnapshot.readGeneration() > readXMLGeneration(checkpointFile)) {
+				return loadSnapshotToMap(checkpointFile, previousSnapshot, loadedTasks);
+			}
+			return loadXMLFileToMap(checkpointFile, loadedTasks);
+		}
+	}
+	
+	/**
+	 * keep a loaded task by its journal key. Tasks read without a key get keys in file order, 
+	 * the same way the keys were given to them when the file was written.
+	 */
+	private void putLoadedTask(Map<Integer, LoadedTask> loadedTasks, LoadedTask loadedTask) {
+		if (loadedTask.key == LoadedTask.NO_KEY) {
+			loadedTask.key = journal.nextKey();
+		}
+		loadedTasks.put(loadedTask.key, loadedTask);
+	}
+	
+	/**
+	 * read the checkpoint generation from the root of the XML file
+	 * @return the generation, 0 if the file has none and -1 if it is missing or cannot be parsed
+	 */
+	private long readXMLGeneration(File checkpointFile) throws IOException {
+		if (!checkpointFile.exists()) {
+			return -1;
+		}
+		try {
+			String checkpoint = readXMLRootAttribute(checkpointFile, CHECKPOINT);
+			return checkpoint == null ? 0 : Long.parseLong(checkpoint);
+		} catch (XMLStreamException xmlex) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * read the next free key from the root of the XML file
+	 * @return the key, LoadedTask.NO_KEY if the file has none or cannot be parsed
+	 */
+	private int readXMLNextKey(File checkpointFile) throws IOException {
+		if (!checkpointFile.exists()) {
+			return LoadedTask.NO_KEY;
+		}
+		try {
+			String nextKey = readXMLRootAttribute(checkpointFile, NEXT_KEY);
+			return nextKey == null ? LoadedTask.NO_KEY : Integer.parseInt(nextKey);
+		} catch (XMLStreamException xmlex) {
+			return LoadedTask.NO_KEY;
+		}
+	}
+	
+	private String readXMLRootAttribute(File checkpointFile, String attribute) 
+			throws IOException, XMLStreamException {
+		InputStream input;
+		try {
+			input = openXMLFile(checkpointFile);
+		} catch (ZipException zipex) {
+			throw new XMLStreamException("Damaged compressed file", zipex);
+		} catch (EOFException eof) {
+			throw new XMLStreamException("Damaged compressed file", eof);
+		}
+		try {
+			XMLStreamReader reader = createXMLReader(input);
+			try {
+				reader.nextTag();
+				return reader.getAttributeValue(null, attribute);
+			} finally {
+				reader.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+	
+	private long loadXMLFileToMap(File checkpointFile, Map<Integer, LoadedTask> loadedTasks) 
+			throws IOException, XMLStreamException {
+		Map<Integer, LoadedTask> fileTasks = new LinkedHashMap<Integer, LoadedTask>();
+		long generation;
+		try {
+			generation = readCheckedXMLFile(checkpointFile, fileTasks);
+		} catch (XMLStreamException xmlex) {
+			File previousFile = AtomicFile.getPreviousFile(checkpointFile);
+			if (!previousFile.exists()) {
+				throw xmlex;
+			}
+			// the changes stored after the previous version are only kept if the journal still has them
+			log.log(Level.WARNING, checkpointFile.getName() + " is damaged, its previous version is read: " 
+					+ xmlex.getMessage());
+			addRestoredFileName(checkpointFile.getName());
+			return loadXMLFileToMap(previousFile, loadedTasks);
+		}
+		loadedTasks.putAll(fileTasks);
+		return generation;
+	}
+	
+	/**
+	 * Parse an XML file while computing the checksum of the content following its checksum header, 
+	 * the content being read once. Files written before the checksums were stored are not checked.
+	 * @throws XMLStreamException    if the file cannot be parsed or does not match its checksum
+	 */
+	private long readCheckedXMLFile(File checkpointFile, Map<Integer, LoadedTask> loadedTasks) 
+			throws IOException, XMLStreamException {
+		InputStream input;
+		try {
+			input = openXMLFile(checkpointFile);
+		} catch (ZipException zipex) {
+			throw new XMLStreamException("Damaged compressed file", zipex);
+		} catch (EOFException eof) {
+			throw new XMLStreamException("Damaged compressed file", eof);
+		}
+		try {
+			byte[] header = readChecksumHeader(input);
+			String headerText = new String(header, ENCODING);
+			int checksumStart = headerText.indexOf(CHECKSUM_START);
+			CheckedInputStream content = new CheckedInputStream(input, new CRC32());
+			// the parser may close the stream it reads, which the rest of the content is still read from
+			InputStream parsedContent = new FilterInputStream(content) {
+				@Override
+				public void close() {
+				}
+			};
+			XMLStreamReader reader = createXMLReader(new SequenceInputStream(new ByteArrayInputStream(header), 
+					parsedContent));
+			long generation;
+			try {
+				generation = readTasksToMap(reader, loadedTasks);
+			} finally {
+				reader.close();
+			}
+			if (checksumStart < 0) {
+				return generation;
+			}
+			// the parser may stop before the white space ending the file
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (content.read(buffer) > 0) {
+			}
+			try {
+				long checksum = Long.parseLong(headerText.substring(checksumStart + CHECKSUM_START.length(), 
+						headerText.length() - CHECKSUM_END.length()), 16);
+				if (checksum != content.getChecksum().getValue()) {
+					throw new XMLStreamException(checkpointFile.getName() + " does not match its checksum");
+				}
+			} catch (NumberFormatException nfe) {
+				throw new XMLStreamException(checkpointFile.getName() + " has an invalid checksum");
+			}
+			return generation;
+		} catch (ZipException zipex) {
+			throw new XMLStreamException("Damaged compressed file", zipex);
+		} catch (EOFException eof) {
+			throw new XMLStreamException("Damaged compressed file", eof);
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Read the start of an XML file up to the end of its checksum header, or nothing if it has none
+	 * @param input    stream of the file, which is left after the returned bytes
+	 */
+	private byte[] readChecksumHeader(InputStream input) throws IOException {
+		input.mark(CHECKSUM_HEADER_LENGTH);
+		byte[] start = new byte[CHECKSUM_HEADER_LENGTH];
+		int length = 0;
+		int count;
+		while (length < start.length && (count = input.read(start, length, start.length - length)) > 0) {
+			length += count;
+		}
+		input.reset();
+		// the header is ASCII, so the position of a character is the position of its byte
+		String startText = new String(start, 0, length, ENCODING);
+		int checksumStart = startText.indexOf(CHECKSUM_START);
+		int checksumEnd = checksumStart < 0 ? -1 : startText.indexOf(CHECKSUM_END, checksumStart);
+		byte[] header = new byte[checksumEnd < 0 ? 0 : checksumEnd + CHECKSUM_END.length()];
+		new DataInputStream(input).readFully(header);
+		return header;
+	}
+	
+	private XMLStreamReader createXMLReader(InputStream input) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		return factory.createXMLStreamReader(input);
+	}
+	
+	private long getGeneration(XMLStreamReader reader) {
+		String checkpoint = reader.getAttributeValue(null, CHECKPOINT);
+		return checkpoint == null ? 0 : Long.parseLong(checkpoint);
+	}
+
+	/************************** archive old complete and trashed tasks  **************************/
+	
+	/**
+	 * Move the tasks of the complete or trash list which were last modified before the archive age 
+	 * set in model to the archive. The tasks are written to the archive before they are removed 
+	 * from the list, so that they are never lost if the list is not stored afterwards. Deleted tasks 
+	 * stay in the list until they have been deleted from Google Calendar.
+	 */
+	private void archiveOldTasks(TaskSegment segment) throws IOException {
+		if (segment.tabIndex == Common.PENDING_TAB || model.getArchiveAge() <= 0) {
+			return;
+		}
+		long archiveTime = System.currentTimeMillis() - model.getArchiveAge() * CustomDate.DAY_IN_MILLIS;
+		ObservableList<Task> taskList = model.getList(segment.tabIndex);
+		List<Task> archivedTasks = new ArrayList<Task>();
+		List<Integer> taskKeys = new ArrayList<Integer>();
+		List<String[]> taskFields = new ArrayList<String[]>();
+		for (Task task : taskList) {
+			if (isArchivable(task, archiveTime)) {
+				archivedTasks.add(task);
+				taskKeys.add(journal.register(task, segment.taskType));
+				taskFields.add(convertToRecord(task));
+			}
+		}
+		if (archivedTasks.isEmpty()) {
+			return;
+		}
+		archiveTasks(segment.taskType, taskKeys, taskFields);
+		Common.removeTasks(taskList, archivedTasks);
+		for (Task archivedTask : archivedTasks) {
+			journal.recordDelete(archivedTask);
+		}
+		model.markListDirty(segment.tabIndex);
+		log.log(Level.INFO, "Archived " + archivedTasks.size() + " tasks of " + segment.taskType + " list.");
+	}
+	
+	/**
+	 * Append the given tasks of a list to the archive
+	 * @param taskKeys    journal keys of the tasks
+	 * @param taskFields    fields of the tasks as convertToRecord() gives them, in the same order
+	 */
+	protected void archiveTasks(String taskType, List<Integer> taskKeys, List<String[]> taskFields) 
+			throws IOException {
+		archive.append(taskType, taskKeys, taskFields);
+		archivedColumns[getSegment(taskType).tabIndex] = null;
+	}
+	
+	/**
+	 * @return the archive file the archived tasks are appended to
+	 */
+	protected TaskArchive getArchive() {
+		return archive;
+	}
+	
+	private boolean isArchivable(Task task, long archiveTime) {
+		boolean isSynced = task.getStatus() == Task.Status.UNCHANGED || task.getStatus() == Task.Status.NEWLY_ADDED;
+		CustomDate modifiedDate = task.getLatestModifiedDate();
+		return isSynced && modifiedDate != null && modifiedDate.getTimeInMillis() < archiveTime;
+	}
+	
+	@Override
+	/**
+	 * Read the tasks moved from the complete or trash list to the archive. They are kept in 
+	 * columns, a task being only created when its row is read.
+	 * @return the archived tasks in the order they were archived
+	 */
+	public List<Task> loadArchivedTasks(int tabIndex) throws IOException {
+		FileState archiveState = new FileState(archive.getFile());
+		if (archivedColumns[tabIndex] == null || archivedStates[tabIndex].isChanged(archiveState)) {
+			archivedColumns[tabIndex] = readArchivedColumns(TASK_TYPES[tabIndex]);
+			archivedStates[tabIndex] = archiveState;
+		}
+		return Collections.unmodifiableList(archivedColumns[tabIndex]);
+	}
+	
+	private TaskColumns readArchivedColumns(String taskType) throws IOException {
+		return convertToColumns(archive.read(taskType), TaskArchive.INDEX_FIRST_FIELD);
+	}
+	
+	/**
+	 * Fill the columns straight from the fields of archived records, with no task being 
+	 * created for them. The archived tasks are not in any list, so their index in list is 
+	 * invalid.
+	 * @param offset    position of the first task field in the records
+	 */
+	protected static TaskColumns convertToColumns(List<String[]> records, int offset) {
+		TaskColumns archivedTasks = new TaskColumns(records.size());
+		Calendar calendar = new GregorianCalendar();
+		for (String[] record : records) {
+			archivedTasks.addRow(getField(record, offset, INDEXID), getField(record, offset, WORK_INFO),
+					parseDate(getField(record, offset, START_DATE), calendar),
+					parseDate(getField(record, offset, END_DATE), calendar),
+					Tag.valueOf(getField(record, offset, TAG), getField(record, offset, REPETITION)),
+					getField(record, offset, IS_IMPORTANT).equals(Common.TRUE),
+					TwoWayCommand.INVALID,
+					parseDate(getField(record, offset, MODIFIED_DATE), calendar),
+					Integer.parseInt(getField(record, offset, CURRENT_OCCURRENCE)),
+					Integer.parseInt(getField(record, offset, NUM_OCCURRENCE)),
+					parseStatus(getField(record, offset, STATUS), Task.Status.NEWLY_ADDED));
+		}
+		archivedTasks.trimToSize();
+		return archivedTasks;
+	}
+	
+	/**
+	 * @param dateString    date stored as "d/M/yyyy H:m", optionally followed by ":s", or "-"
+	 * @return the milliseconds of the date, TaskColumns.NO_DATE for "-"
+	 */
+	private static long parseDate(String dateString, Calendar calendar) {
+		if (dateString.equals("-")) {
+			return TaskColumns.NO_DATE;
+		}
+		String[] parts = dateString.split("[/ :]");
+		calendar.clear();
+		calendar.set(Integer.parseInt(parts[2]), Integer.parseInt(parts[1]) - 1, Integer.parseInt(parts[0]),
+				Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), 
+				parts.length > 5 ? Integer.parseInt(parts[5]) : 0);
+		return calendar.getTimeInMillis();
+	}
+	
+	/************************** import and export other formats  **************************/
+	
+	/**
+	 * Add the tasks of a CSV or iCalendar file to their lists in model. The file is read as a
+	 * stream and the tasks of each list are gathered, then merged into the sorted list at once.
+	 * The records which cannot be converted to a task are skipped. Every list is loaded first, 
+	 * so that the tasks added to it are kept when it is read and written with it. Nothing is 
+	 * written to disk: the caller stores the changes of the imported tasks afterwards.
+	 * @return the tasks imported
+	 */
+	public List<Task> importTasks(File file) throws IOException {
+		TaskFormat format = getTransferFormat(file);
+		for (TaskSegment segment : segments) {
+			if (!model.loadList(segment.tabIndex)) {
+				throw new IOException("The " + segment.taskType + " list cannot be read.");
+			}
+		}
+		List<List<Task>> importedLists = new ArrayList<List<Task>>();
+		for (int i = 0; i < segments.length; i++) {
+			importedLists.add(new ArrayList<Task>());
+		}
+		int numSkipped = 0;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+		try {
+			while (true) {
+				Task task;
+				try {
+					task = format.readTask(reader);
+				} catch (IllegalArgumentException iae) {
+					log.log(Level.WARNING, "Record skipped: " + iae.getMessage());
+					numSkipped++;
+					continue;
+				}
+				if (task == null) {
+					break;
+				}
+				importedLists.get(getSegment(format.getTaskType()).tabIndex).add(task);
+			}
+		} finally {
+			reader.close();
+		}
+		List<Task> importedTasks = new ArrayList<Task>();
+		for (TaskSegment segment : segments) {
+			List<Task> importedList = importedLists.get(segment.tabIndex);
+			if (!importedList.isEmpty()) {
+				model.insertTasks(importedList, segment.tabIndex);
+				importedTasks.addAll(importedList);
+			}
+		}
+		log.log(Level.INFO, importedTasks.size() + " tasks imported, " + numSkipped + " records skipped.");
+		return importedTasks;
+	}
+	
+	/**
+	 * Write the tasks of every list, the archived ones excepted, to a CSV or iCalendar file.
+	 * The tasks are converted one at a time while they are written.
+	 * @return the number of tasks exported
+	 */
+	public int exportTasks(File file) throws IOException {
+		TaskFormat format = getTransferFormat(file);
+		for (TaskSegment segment : segments) {
+			if (!model.loadList(segment.tabIndex)) {
+				throw new IOException("The " + segment.taskType + " list cannot be read.");
+			}
+		}
+		int numExported = 0;
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+		try {
+			format.writeHeader(writer);
+			for (String taskType : TASK_TYPES) {
+				for (Task task : getTaskList(taskType)) {
+					format.writeTask(writer, task, taskType);
+					numExported++;
+				}
+			}
+			format.writeFooter(writer);
+		} finally {
+			writer.close();
+		}
+		log.log(Level.INFO, numExported + " tasks exported to " + file.getName() + ".");
+		return numExported;
+	}
 	
-	static final String PENDING = "pending";
-	static final String COMPLETE = "complete";
-	static final  String TRASH = "trash";
-
-	private static Logger log = Logger.getLogger("TaskStorage");
+	private TaskFormat getTransferFormat(File file) {
+		TaskFormat format = TaskFormat.getFormat(file);
+		if (format == null) {
+			throw new IllegalArgumentException(MESSAGE_UNSUPPORTED_FORMAT);
+		}
+		return format;
+	}
 	
-	public TaskStorage(String fileName, Model model) {
-		createDir();
-		xmlFile = new File(findUserDocDir() + FOLDERNAME + "/" + fileName);
-		checkIfFileExists(xmlFile);
-		this.model = model;
+	/**
+	 * @return the list of model for the given task type
+	 */
+	private ObservableList<Task> getTaskList(String taskType) {
+		if (taskType.equals(COMPLETE)) {
+			return model.getCompleteList();
+		} else if (taskType.equals(TRASH)) {
+			return model.getTrashList();
+		} else {
+			return model.getPendingList();
+		}
 	}
 	
-	/************************** store and load task list  **************************/
+	/************************** merge the changes made by others  **************************/
 	
-	@Override
 	/**
-	 * Store task list to XML file of task storage
+	 * @return the folder holding the files of this storage
 	 */
-	public void storeToFile() throws IOException {
-		//Initialize the elements in the XML file
-		Element root = new Element("root");
-		Document doc = new Document(root);
-		Element pending = new Element(PENDING);
-		Element complete = new Element(COMPLETE);
-		Element trash = new Element(TRASH);
-		//Add task info to its corresponding element in XML file
-		pending = addTasksToXMLFile(pending, PENDING, model.getPendingList());
-		complete = addTasksToXMLFile(complete, COMPLETE, model.getCompleteList());
-		trash = addTasksToXMLFile(trash, TRASH, model.getTrashList());
-		//append elements to root
-		doc.getRootElement().getChildren().add(pending);
-		doc.getRootElement().getChildren().add(complete);
-		doc.getRootElement().getChildren().add(trash);
-		//Outupt to XML file
-		XMLOutputter xmlOutput = new XMLOutputter();
-		xmlOutput.setFormat(Format.getPrettyFormat());
-		xmlOutput.output(doc, new FileWriter(xmlFile));
-		log.log(Level.INFO, "Data saved.");
+	public File getFolder() {
+		return xmlFile.getAbsoluteFile().getParentFile();
 	}
 	
-	@Override
-	public void updateToFile() throws IOException {
-		storeToFile();
+	/**
+	 * @return the files read when loading the task lists: the segments, their snapshots and the journal
+	 */
+	private List<File> getWatchedFiles() {
+		List<File> watchedFiles = new ArrayList<File>();
+		for (TaskSegment segment : segments) {
+			watchedFiles.add(segment.xmlFile);
+			watchedFiles.add(segment.snapshot.getFile());
+		}
+		watchedFiles.add(journal.getFile());
+		return watchedFiles;
+	}
+	
+	private void recordFileStates() {
+		for (File watchedFile : getWatchedFiles()) {
+			knownFileStates.put(watchedFile, new FileState(watchedFile));
+		}
+		FileState journalState = knownFileStates.get(journal.getFile());
+		journalOffset = journalState.exists() ? journalState.length : 0;
 	}
 	
-	@Override
 	/**
-	 * Load task list from XML file of task storage
-	 */
-	public void loadFromFile() throws IOException {
-		SAXBuilder builder = new SAXBuilder();
-		try {//retrieve the elements
-			Document doc = (Document) builder.build(xmlFile);
-			Element rootNode = doc.getRootElement();
-			Element pending = rootNode.getChild(PENDING);
-			Element trash = rootNode.getChild(TRASH);
-			Element complete = rootNode.getChild(COMPLETE);
-			//Retrieve tasks from the elements and add to model
-			addTasksToModel(pending, PENDING);
-			addTasksToModel(complete, COMPLETE);
-			addTasksToModel(trash, TRASH);
-			} catch (IOException io) {
-			throw io;
-		  } catch (JDOMException jdomex) {
-			log.log(Level.WARNING, jdomex.getMessage());
-		  }
+	 * @return whether the file of the given name belongs to this storage
+	 */
+	public boolean isStorageFile(String fileName) {
+		for (File watchedFile : getWatchedFiles()) {
+			if (watchedFile.getName().equals(fileName)) {
+				return true;
+			}
+		}
+		return false;
 	}
-
-/**********************************Generate tasks from XML file and add them to model **************************/
 	
 	/**
-	 * retrieve the elements in the XML file of task storage, building the corresponding tasks and store them to model
-	 * @param element   task list element in XML file: pending, complete or trash
-	 * @param taskType    "pending", "complete" or "trash"  
+	 * Check the size and the modification time, and the checksum while the modification time 
+	 * may not tell two writes apart, of each file against the state in which this storage last 
+	 * read or wrote it
+	 * @return whether a file was changed by another instance or a script
+	 */
+	public boolean hasExternalChanges() {
+		synchronized (writeLock) {
+			for (File watchedFile : getWatchedFiles()) {
+				if (isExternallyChanged(watchedFile, new FileState(watchedFile))) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	private boolean isExternallyChanged(File watchedFile, FileState currentState) {
+		FileState knownState = knownFileStates.get(watchedFile);
+		return knownState == null ? currentState.exists() : knownState.isChanged(currentState);
+	}
+	
+	/**
+	 * Read the changes made in the files by another instance or a script since this storage last 
+	 * read or wrote them. Model is left as it is, so that the files are parsed off the thread 
+	 * executing commands. Only the journal records appended after those this storage knows are 
+	 * read, unless the other instance wrote a checkpoint: the segments it rewrote are then read 
+	 * for the loaded lists, with its whole new journal.
+	 * @return the changes to merge with mergeExternalChanges(), null if there are none
 	 * @throws IOException
 	 */
-	private void addTasksToModel(Element element, String taskType)
-			throws IOException {
-		List<Element> taskList = element.getChildren();
-		for(int i = 0; i<taskList.size();i++) {
-			Task newTask = new Task();
-			Element targetElement = taskList.get(i);
-			newTask = setTaskInfo(newTask, targetElement);
-			addToTaskList(newTask, taskType);
+	public ExternalChanges readExternalChanges() throws IOException {
+		synchronized (writeLock) {
+			if (!hasExternalChanges()) {
+				return null;
+			}
+			ExternalChanges changes = new ExternalChanges();
+			// the states are taken before reading, so that a change made meanwhile is found again
+			for (File watchedFile : getWatchedFiles()) {
+				changes.fileStates.put(watchedFile, new FileState(watchedFile));
+			}
+			for (TaskSegment segment : segments) {
+				File snapshotFile = segment.snapshot.getFile();
+				if (!isExternallyChanged(segment.xmlFile, changes.fileStates.get(segment.xmlFile)) 
+						&& !isExternallyChanged(snapshotFile, changes.fileStates.get(snapshotFile))) {
+					continue;
+				}
+				changes.isNewCheckpoint = true;
+				if (model.isListLoaded(segment.tabIndex)) {
+					Map<Integer, LoadedTask> segmentTasks = new LinkedHashMap<Integer, LoadedTask>();
+					try {
+						changes.generation = Math.max(changes.generation, 
+								readCheckpointToMap(segment.xmlFile, segment.snapshot, segmentTasks));
+					} catch (XMLStreamException xmlex) {
+						throw new IOException(segment.xmlFile.getName() + ": " + xmlex.getMessage(), xmlex);
+					}
+					changes.segmentTasks.put(segment.taskType, segmentTasks);
+					for (int key : segmentTasks.keySet()) {
+						changes.addKey(key);
+					}
+				}
+			}
+			readExternalRecords(changes);
+			return changes;
+		}
+	}
+	
+	/**
+	 * Read the journal records written by the other instance, from the end of those this storage 
+	 * knows, or from the start of the journal if it was restarted or the end is unknown
+	 */
+	private void readExternalRecords(ExternalChanges changes) throws IOException {
+		File journalFile = journal.getFile();
+		FileState journalState = changes.fileStates.get(journalFile);
+		long offset = journalOffset;
+		if (changes.isNewCheckpoint || offset < 0 || journalState.length < offset) {
+			offset = 0;
+		}
+		changes.journalOffset = offset;
+		if (!journalState.exists()) {
+			return;
+		}
+		if (offset == 0) {
+			changes.generation = Math.max(changes.generation, journal.readFileGeneration());
+		}
+		List<String[]> records = new ArrayList<String[]>();
+		changes.journalOffset = journal.readRecords(offset, journalState.length, records);
+		// a record still being written is read again with the rest of it
+		changes.fileStates.put(journalFile, new FileState(journalFile, changes.journalOffset));
+		for (String[] record : records) {
+			int key = Integer.parseInt(record[TaskJournal.INDEX_KEY]);
+			Task task = null;
+			if (!record[TaskJournal.INDEX_OPERATION].equals(TaskJournal.DELETE)) {
+				task = convertFromRecord(record, TaskJournal.INDEX_FIRST_FIELD);
+			}
+			String taskType = task == null ? null : record[TaskJournal.INDEX_TASK_TYPE];
+			changes.records.add(new LoadedTask(task, taskType, key));
+			changes.addKey(key);
+		}
+	}
+	
+	/**
+	 * Merge the changes read by readExternalChanges() into model, instead of reloading the lists 
+	 * or overwriting the files on the next write. Tasks are matched by their journal keys. A task 
+	 * changed here and not written yet keeps its state in model, and a task added here which got 
+	 * the key of a task added by the other instance gets a new key. The tasks of the lists not 
+	 * loaded yet are kept until those lists are loaded.
+	 * @param changes    changes read from the files, null if there are none
+	 * @throws IOException
+	 */
+	public void mergeExternalChanges(ExternalChanges changes) throws IOException {
+		if (changes == null) {
+			return;
+		}
+		synchronized (writeLock) {
+			synchronized (this) {
+				journal.reserveKeys(changes.nextKey);
+				Map<Integer, LoadedTask> localTasks = getLoadedTasksByKey();
+				boolean[] isChanged = new boolean[segments.length];
+				int numChanges = 0;
+				if (changes.isNewCheckpoint) {
+					// the checkpoint holds the changes of the previous journal, whichever list they were in
+					deferredTasks.clear();
+					replayedKeys.clear();
+					journal.raiseGeneration(changes.generation);
+					numChanges += mergeSegments(changes.segmentTasks, localTasks, isChanged);
+				}
+				for (LoadedTask record : changes.records) {
+					numChanges += mergeRecord(record, localTasks, isChanged);
+				}
+				for (TaskSegment segment : segments) {
+					if (isChanged[segment.tabIndex]) {
+						Common.sortList(model.getList(segment.tabIndex));
+					}
+				}
+				knownFileStates.putAll(changes.fileStates);
+				journalOffset = changes.journalOffset;
+				if (changes.isNewCheckpoint || !pendingCheckpoints.isEmpty()) {
+					// the lists are stored again over the checkpoint of the other instance, or the one 
+					// prepared before merging
+					prepareCheckpoint(true);
+				}
+				log.log(Level.INFO, "Merged " + numChanges + " tasks changed in file.");
+			}
+		}
+	}
+	
+	/**
+	 * @return the tasks of the loaded lists by their journal keys
+	 */
+	private Map<Integer, LoadedTask> getLoadedTasksByKey() {
+		Map<Integer, LoadedTask> tasksByKey = new HashMap<Integer, LoadedTask>();
+		for (TaskSegment segment : segments) {
+			if (!model.isListLoaded(segment.tabIndex)) {
+				continue;
+			}
+			for (Task task : model.getList(segment.tabIndex)) {
+				Integer key = journal.getKey(task);
+				if (key != null) {
+					tasksByKey.put(key, new LoadedTask(task, segment.taskType, key));
+				}
+			}
+		}
+		return tasksByKey;
+	}
+	
+	/**
+	 * replace the tasks of the rewritten lists which differ from the tasks in file with the same 
+	 * key, remove those no longer in file and add those new in file. Tasks with records not written 
+	 * yet are kept.
+	 * @param segmentTasks    tasks read from the rewritten segments of the loaded lists, by list
+	 * @param localTasks    tasks of the loaded lists by key, updated with the merged tasks
+	 * @return the number of tasks changed in model
+	 */
+	private int mergeSegments(Map<String, Map<Integer, LoadedTask>> segmentTasks, 
+			Map<Integer, LoadedTask> localTasks, boolean[] isChanged) {
+		Map<Integer, LoadedTask> fileTasks = new HashMap<Integer, LoadedTask>();
+		for (Map<Integer, LoadedTask> tasks : segmentTasks.values()) {
+			fileTasks.putAll(tasks);
+		}
+		int numChanges = 0;
+		for (LoadedTask localTask : new ArrayList<LoadedTask>(localTasks.values())) {
+			LoadedTask fileTask = fileTasks.get(localTask.key);
+			if (fileTask == null && !segmentTasks.containsKey(localTask.taskType)) {
+				continue;
+			}
+			if (journal.hasPendingRecord(localTask.key)) {
+				if (fileTask != null && localTask.key >= storedKeyLimit) {
+					// both instances gave the same key to a new task
+					journal.changeKey(localTask.task);
+					localTasks.remove(localTask.key);
+				}
+				continue;
+			}
+			if (fileTask != null && isSameTask(fileTask, localTask)) {
+				continue;
+			}
+			removeMergedTask(localTask, localTasks, isChanged);
+			numChanges++;
+		}
+		for (LoadedTask fileTask : fileTasks.values()) {
+			if (!localTasks.containsKey(fileTask.key) && !journal.hasPendingRecord(fileTask.key)) {
+				addMergedTask(fileTask, localTasks, isChanged);
+				numChanges++;
+			}
+		}
+		return numChanges;
+	}
+	
+	/**
+	 * apply a journal record of the other instance. The lists it changes are rewritten on the next 
+	 * checkpoint, as the journal holding it is restarted then.
+	 * @param record    task put by the record, without task if the record deletes it
+	 * @param localTasks    tasks of the loaded lists by key, updated with the merged task
+	 * @return the number of tasks changed in model
+	 */
+	private int mergeRecord(LoadedTask record, Map<Integer, LoadedTask> localTasks, boolean[] isChanged) {
+		LoadedTask localTask = localTasks.get(record.key);
+		if (journal.hasPendingRecord(record.key)) {
+			if (record.task == null || localTask == null || record.key < storedKeyLimit) {
+				return 0;
+			}
+			// both instances gave the same key to a new task
+			journal.changeKey(localTask.task);
+			localTasks.remove(record.key);
+			localTask = null;
+		}
+		if (localTask != null && record.task != null && isSameTask(record, localTask)) {
+			return 0;
+		}
+		if (localTask != null) {
+			removeMergedTask(localTask, localTasks, isChanged);
+			markListDirty(localTask.taskType);
+		} else {
+			// the task may be in a list which is not loaded, from which it is left out when loaded
+			replayedKeys.add(record.key);
+			deferredTasks.remove(record.key);
+			if (record.key < storedKeyLimit) {
+				for (TaskSegment segment : segments) {
+					if (!model.isListLoaded(segment.tabIndex)) {
+						model.markListDirty(segment.tabIndex);
+					}
+				}
+			}
+		}
+		if (record.task != null) {
+			markListDirty(record.taskType);
+			if (model.isListLoaded(getSegment(record.taskType).tabIndex)) {
+				addMergedTask(record, localTasks, isChanged);
+			} else {
+				replayedKeys.add(record.key);
+				deferredTasks.put(record.key, record);
+			}
+		}
+		return 1;
+	}
+	
+	private boolean isSameTask(LoadedTask fileTask, LoadedTask localTask) {
+		return fileTask.taskType.equals(localTask.taskType) 
+				&& Arrays.equals(convertToRecord(fileTask.task), convertToRecord(localTask.task));
+	}
+	
+	private void removeMergedTask(LoadedTask localTask, Map<Integer, LoadedTask> localTasks, 
+			boolean[] isChanged) {
+		model.getList(getSegment(localTask.taskType).tabIndex).remove(localTask.task);
+		journal.forget(localTask.task);
+		localTasks.remove(localTask.key);
+		isChanged[getSegment(localTask.taskType).tabIndex] = true;
+	}
+	
+	private void addMergedTask(LoadedTask fileTask, Map<Integer, LoadedTask> localTasks, boolean[] isChanged) {
+		addToTaskList(fileTask.task, fileTask.taskType);
+		journal.register(fileTask.task, fileTask.key, fileTask.taskType);
+		localTasks.put(fileTask.key, fileTask);
+		isChanged[getSegment(fileTask.taskType).tabIndex] = true;
+	}
+	
+/**********************************Generate tasks from XML file and add them to model **************************/
+	
+	/**
+	 * read an XML file of task storage event by event, building each task as soon as its 
+	 * element ends and keeping them with their journal keys in file order
+	 * @param reader    stream reader of the XML file
+	 * @param loadedTasks   tasks loaded so far, by journal key
+	 * @return the checkpoint generation of the file, 0 if it has none
+	 * @throws XMLStreamException
+	 */
+	private long readTasksToMap(XMLStreamReader reader, Map<Integer, LoadedTask> loadedTasks) 
+			throws XMLStreamException {
+		long generation = 0;
+		String taskType = null;
+		String[] fields = null;
+		String key = null;
+		int depth = 0;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				if (depth == DEPTH_ROOT) {
+					generation = getGeneration(reader);
+				} else if (depth == DEPTH_TASK_LIST) {
+					taskType = reader.getLocalName();
+				} else if (depth == DEPTH_TASK) {
+					fields = new String[NUM_FIELDS];
+					key = reader.getAttributeValue(null, KEY);
+				} else if (depth == DEPTH_FIELD) {
+					Integer position = FIELD_POSITIONS.get(reader.getLocalName());
+					// getElementText() moves the reader to the end of the field element
+					String text = reader.getElementText();
+					if (position != null) {
+						fields[position] = text;
+					}
+					depth--;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (depth == DEPTH_TASK && isTaskType(taskType)) {
+					Task newTask = setTaskInfo(new Task(), fields, 0);
+					int taskKey = key == null ? LoadedTask.NO_KEY : Integer.parseInt(key);
+					putLoadedTask(loadedTasks, new LoadedTask(newTask, taskType, taskKey));
+				}
+				depth--;
+			}
+		}
+		return generation;
+	}
+	
+	private boolean isTaskType(String taskType) {
+		return PENDING.equals(taskType) || COMPLETE.equals(taskType) || TRASH.equals(taskType);
+	}
+	
+	/**
+	 * apply the journal records written after the checkpoint to the loaded tasks
+	 * @param loadedTasks   tasks loaded from the segments, by journal key
+	 * @param records    journal records in the order they were written
+	 * @param deferredTaskTypes    lists not loaded yet
+	 * @param deferredKeyLimit    key below which a task not loaded may be in those lists
+	 * @return the lists changed by the records
+	 */
+	private Set<String> replayJournal(Map<Integer, LoadedTask> loadedTasks, List<String[]> records, 
+			Set<String> deferredTaskTypes, int deferredKeyLimit) {
+		Set<String> changedTaskTypes = new HashSet<String>();
+		for (String[] record : records) {
+			int key = Integer.parseInt(record[TaskJournal.INDEX_KEY]);
+			replayedKeys.add(key);
+			LoadedTask previousTask = loadedTasks.get(key);
+			if (previousTask != null) {
+				changedTaskTypes.add(previousTask.taskType);
+			} else if (key < deferredKeyLimit) {
+				// the task may have been taken from a list which is not loaded
+				changedTaskTypes.addAll(deferredTaskTypes);
+			}
+			if (record[TaskJournal.INDEX_OPERATION].equals(TaskJournal.DELETE)) {
+				loadedTasks.remove(key);
+			} else {
+				if (record[TaskJournal.INDEX_OPERATION].equals(TaskJournal.MOVE)) {
+					// a moved task was appended to its list, after the tasks loaded so far
+					loadedTasks.remove(key);
+				}
+				Task newTask = convertFromRecord(record, TaskJournal.INDEX_FIRST_FIELD);
+				loadedTasks.put(key, new LoadedTask(newTask, record[TaskJournal.INDEX_TASK_TYPE], key));
+				changedTaskTypes.add(record[TaskJournal.INDEX_TASK_TYPE]);
+			}
+		}
+		return changedTaskTypes;
+	}
+	
+	/**
+	 * add the loaded tasks to model and bind them to their journal keys. Tasks of the lists not 
+	 * loaded yet are kept until those lists are loaded. The lists are sorted again, as the journal 
+	 * and the segments of unchanged lists may be in an older order.
+	 * @param loadedTasks   tasks loaded from file, by journal key
+	 */
+	private void addTasksToModel(Map<Integer, LoadedTask> loadedTasks) {
+		addTasksToModel(loadedTasks, -1);
+	}
+	
+	/**
+	 * @param loadingTabIndex    tab of the list being loaded, which gets its tasks although it is 
+	 *                           not loaded yet, -1 if there is none
+	 */
+	private void addTasksToModel(Map<Integer, LoadedTask> loadedTasks, int loadingTabIndex) {
+		boolean[] hasNewTasks = new boolean[segments.length];
+		for (Map.Entry<Integer, LoadedTask> entry : loadedTasks.entrySet()) {
+			LoadedTask loadedTask = entry.getValue();
+			int tabIndex = getSegment(loadedTask.taskType).tabIndex;
+			if (!model.isListLoaded(tabIndex) && tabIndex != loadingTabIndex) {
+				deferredTasks.put(entry.getKey(), loadedTask);
+				continue;
+			}
+			addToTaskList(loadedTask.task, loadedTask.taskType);
+			journal.register(loadedTask.task, entry.getKey(), loadedTask.taskType);
+			hasNewTasks[tabIndex] = true;
 		}
+		for (TaskSegment segment : segments) {
+			if (hasNewTasks[segment.tabIndex]) {
+				Common.sortList(model.getList(segment.tabIndex));
+			}
+		}
+	}
+	
+	private TaskSegment getSegment(String taskType) {
+		for (TaskSegment segment : segments) {
+			if (segment.taskType.equals(taskType)) {
+				return segment;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * build a task from the fields of a journal record, in the same way as from a task element
+	 */
+	private Task convertFromRecord(String[] record, int offset) {
+		return setTaskInfo(new Task(), record, offset);
 	}
 	
 	/**
-	 * set the attributes of a task according to info from the task element retrieved from XML file.
+	 * set the attributes of a task according to the fields of a task element retrieved from XML file.
 	 * @param newTask
-	 * @param targetElement
+	 * @param fields    texts of the task fields, in the order of FIELDS
+	 * @param offset    position of the first task field in the array
 	 * @return
 	 */
-	private Task setTaskInfo(Task newTask, Element targetElement) {
-		newTask.setIndexId(targetElement.getChildText(INDEXID));
-		newTask.setWorkInfo(targetElement.getChildText(WORK_INFO));
-		newTask = setDateInfo(newTask, targetElement);
-		newTask.setTag(new Tag(targetElement.getChildText(TAG),targetElement.getChildText(REPETITION)));
-		newTask.setIsImportant(targetElement.getChildText(IS_IMPORTANT).equals(Common.TRUE) ? true : false);
-		newTask.setIndexInList(Integer.parseInt(targetElement.getChildText(INDEX_IN_LIST)));
-		newTask = setLastModifiedDate(newTask, targetElement);
-		newTask.setCurrentOccurrence(Integer.parseInt(targetElement.getChildText(CURRENT_OCCURRENCE)));
-		newTask.setNumOccurrences(Integer.parseInt(targetElement.getChildText(NUM_OCCURRENCE)));
-		newTask = setStatus(newTask, targetElement);
+	private Task setTaskInfo(Task newTask, String[] fields, int offset) {
+		newTask.setIndexId(getField(fields, offset, INDEXID));
+		newTask.setWorkInfo(getField(fields, offset, WORK_INFO));
+		newTask = setDateInfo(newTask, fields, offset);
+		newTask.setTag(Tag.valueOf(getField(fields, offset, TAG), getField(fields, offset, REPETITION)));
+		newTask.setIsImportant(getField(fields, offset, IS_IMPORTANT).equals(Common.TRUE) ? true : false);
+		newTask.setIndexInList(Integer.parseInt(getField(fields, offset, INDEX_IN_LIST)));
+		newTask = setLastModifiedDate(newTask, fields, offset);
+		newTask.setCurrentOccurrence(Integer.parseInt(getField(fields, offset, CURRENT_OCCURRENCE)));
+		newTask.setNumOccurrences(Integer.parseInt(getField(fields, offset, NUM_OCCURRENCE)));
+		newTask = setStatus(newTask, fields, offset);
 		return newTask;
 	}
 	
-	private Task setDateInfo(Task newTask, Element targetElement) {
-		if(!targetElement.getChildText(START_DATE).equals("-")) {
-			newTask.setStartDate(new CustomDate(targetElement.getChildText(START_DATE)));
+	private static String getField(String[] fields, int offset, String fieldName) {
+		return fields[offset + FIELD_POSITIONS.get(fieldName)];
+	}
+	
+	private Task setDateInfo(Task newTask, String[] fields, int offset) {
+		if(!getField(fields, offset, START_DATE).equals("-")) {
+			newTask.setStartDate(new CustomDate(getField(fields, offset, START_DATE)));
 		}
-		if(!targetElement.getChildText(END_DATE).equals("-")) {
-			newTask.setEndDate(new CustomDate(targetElement.getChildText(END_DATE)));
+		if(!getField(fields, offset, END_DATE).equals("-")) {
+			newTask.setEndDate(new CustomDate(getField(fields, offset, END_DATE)));
 		}
 		return newTask;
 	}
 	
-	private Task setLastModifiedDate(Task newTask, Element targetElement) {
-		String latestDateString = targetElement.getChildText(MODIFIED_DATE);
+	private Task setLastModifiedDate(Task newTask, String[] fields, int offset) {
+		String latestDateString = getField(fields, offset, MODIFIED_DATE);
 		String second = latestDateString.substring(latestDateString.lastIndexOf(":") + 1);
 		String remains = latestDateString.substring(0, latestDateString.lastIndexOf(":"));
 		newTask.setLatestModifiedDate(new CustomDate(remains));
@@ -162,20 +1618,27 @@ public class TaskStorage extends Storage {
 		return newTask;
 	}
 	
-	private Task setStatus(Task newTask, Element targetElement) {
-		String statusString = targetElement.getChildText(STATUS);
+	private Task setStatus(Task newTask, String[] fields, int offset) {
+		newTask.setStatus(parseStatus(getField(fields, offset, STATUS), newTask.getStatus()));
+		return newTask;
+	}
+	
+	/**
+	 * @param defaultStatus    status kept if the stored one is not known
+	 */
+	static Task.Status parseStatus(String statusString, Task.Status defaultStatus) {
 		if (statusString.equals(NEW)) {
-			newTask.setStatus(Task.Status.NEWLY_ADDED);
+			return Task.Status.NEWLY_ADDED;
 		} else if (statusString.equals(UNCHANGED)) {
-			newTask.setStatus(Task.Status.UNCHANGED);
+			return Task.Status.UNCHANGED;
 		} else if(statusString.equals(DELETED)) {
-			newTask.setStatus(Task.Status.DELETED);
+			return Task.Status.DELETED;
 		} else if (statusString.equals(ADDED_WHEN_SYNC)) {
-			newTask.setStatus(Task.Status.ADDED_WHEN_SYNC);
+			return Task.Status.ADDED_WHEN_SYNC;
 		} else if (statusString.equals(DELETED_WHEN_SYNC)) {
-			newTask.setStatus(Task.Status.DELETED_WHEN_SYNC);
+			return Task.Status.DELETED_WHEN_SYNC;
 		}
-		return newTask;
+		return defaultStatus;
 	}
 	
 	private void addToTaskList(Task newTask, String taskType) {
@@ -199,91 +1662,140 @@ public class TaskStorage extends Storage {
 	 * Retrieve the tasks from model and store their task informations to the XML file of task storage 
 	 * @param element    task list element in XML file: pending, complete or trash
 	 * @param taskType    "pending", "complete" or "trash"  
-	 * @param taskList    pendingList, completeList or trashList
+	 * @param taskList    copy of pendingList, completeList or trashList, written from its columns
+	 * @param taskKeys    journal keys of the tasks, stored as attribute of their elements
 	 * @return
 	 */
 	private Element addTasksToXMLFile(Element element, String taskType,
-			List<Task> taskList) {
+			TaskColumns taskList, int[] taskKeys) {
+		// the dates are converted by one calendar instead of a CustomDate for each of them
+		Calendar calendar = new GregorianCalendar();
 		for (int i = 0; i < taskList.size(); i++) {
-			Task targetTask = taskList.get(i);
 			Element newTask = new Element(taskType+""+i);
+			newTask.setAttribute(KEY, String.valueOf(taskKeys[i]));
 			element.getChildren().add(newTask);
-			newTask = recordInfo(newTask, targetTask);
+			newTask = recordInfo(newTask, convertToRecord(taskList, i, calendar));
 		}
 		return element;
 	}
 	
-	private Element recordInfo(Element newTask, Task targetTask) {
-		newTask.addContent(new Element(INDEXID).setText(targetTask.getIndexId()));
-		newTask.addContent(new Element(WORK_INFO).setText((targetTask.getWorkInfo())));
-		newTask.addContent(new Element(START_DATE).setText((CustomDate.convertString(targetTask.getStartDate()))));
-		newTask.addContent(new Element(END_DATE).setText((CustomDate.convertString(targetTask.getEndDate()))));
-		newTask.addContent(new Element(TAG).setText((targetTask.getTag().getTag())));
-		newTask.addContent(new Element(REPETITION).setText((targetTask.getTag().getRepetition())));
-		newTask.addContent(new Element(IS_IMPORTANT).setText(((targetTask.isImportantTask() == true ? Common.TRUE : Common.FALSE))));
-		newTask.addContent(new Element(INDEX_IN_LIST).setText((targetTask.getIndexInList()+"")));
-		newTask.addContent(new Element(MODIFIED_DATE).setText((CustomDate.convertString(targetTask.getLatestModifiedDate()) +":"+ targetTask.getLatestModifiedDate().getSecond())));
-		newTask.addContent(new Element(CURRENT_OCCURRENCE).setText((targetTask.getCurrentOccurrence()+"")));
-		newTask.addContent(new Element(NUM_OCCURRENCE).setText((targetTask.getNumOccurrences()+"")));
-		newTask = recordStatus(newTask, targetTask);
+	private Element recordInfo(Element newTask, String[] record) {
+		for (int i = 0; i < NUM_FIELDS; i++) {
+			newTask.addContent(new Element(FIELDS[i]).setText(record[i]));
+		}
 		return newTask;
 	}
 	
-	private Element recordStatus(Element newTask, Task targetTask) {
-		if(targetTask.getStatus() == Task.Status.NEWLY_ADDED) {
-			newTask.addContent(new Element(STATUS).setText((NEW)));
-		} else if(targetTask.getStatus() == Task.Status.UNCHANGED) {
-			newTask.addContent(new Element(STATUS).setText((UNCHANGED)));
-		} else if(targetTask.getStatus() == Task.Status.DELETED) {
-			newTask.addContent(new Element(STATUS).setText((DELETED)));
-		} else if(targetTask.getStatus() == Task.Status.ADDED_WHEN_SYNC) {
-			newTask.addContent(new Element(STATUS).setText((ADDED_WHEN_SYNC)));
+	/**
+	 * convert a task to the fields of a journal record, in the order of FIELDS and in the same 
+	 * format as its task element
+	 */
+	static String[] convertToRecord(Task targetTask) {
+		return new String[] {
+			targetTask.getIndexId(),
+			targetTask.getWorkInfo(),
+			CustomDate.convertString(targetTask.getStartDate()),
+			CustomDate.convertString(targetTask.getEndDate()),
+			targetTask.getTag().getTag(),
+			targetTask.getTag().getRepetition(),
+			targetTask.isImportantTask() ? Common.TRUE : Common.FALSE,
+			String.valueOf(targetTask.getIndexInList()),
+			CustomDate.convertString(targetTask.getLatestModifiedDate()) + ":" 
+					+ targetTask.getLatestModifiedDate().getSecond(),
+			String.valueOf(targetTask.getCurrentOccurrence()),
+			String.valueOf(targetTask.getNumOccurrences()),
+			recordStatus(targetTask.getStatus()) };
+	}
+	
+	/**
+	 * convert a row of copied tasks to the same fields as convertToRecord(Task), without creating its task
+	 */
+	private String[] convertToRecord(TaskColumns tasks, int row, Calendar calendar) {
+		calendar.setTimeInMillis(tasks.getModifiedDate(row));
+		String modifiedDate = CustomDate.convertString(calendar) + ":" + calendar.get(Calendar.SECOND);
+		return new String[] {
+			tasks.getIndexId(row),
+			tasks.getWorkInfo(row),
+			convertDate(tasks.getStartDate(row), calendar),
+			convertDate(tasks.getEndDate(row), calendar),
+			tasks.getTag(row).getTag(),
+			tasks.getTag(row).getRepetition(),
+			tasks.isImportant(row) ? Common.TRUE : Common.FALSE,
+			String.valueOf(tasks.getIndexInList(row)),
+			modifiedDate,
+			String.valueOf(tasks.getCurrentOccurrence(row)),
+			String.valueOf(tasks.getNumOccurrences(row)),
+			recordStatus(tasks.getStatus(row)) };
+	}
+	
+	/**
+	 * @param millis    milliseconds of the date, TaskColumns.NO_DATE if there is none
+	 * @return the date as "d/M/yyyy H:m", as CustomDate.convertString() gives it, or "-"
+	 */
+	private static String convertDate(long millis, Calendar calendar) {
+		if (millis == TaskColumns.NO_DATE) {
+			return "-";
+		}
+		calendar.setTimeInMillis(millis);
+		return CustomDate.convertString(calendar);
+	}
+	
+	static String recordStatus(Task.Status status) {
+		if(status == Task.Status.NEWLY_ADDED) {
+			return NEW;
+		} else if(status == Task.Status.UNCHANGED) {
+			return UNCHANGED;
+		} else if(status == Task.Status.DELETED) {
+			return DELETED;
+		} else if(status == Task.Status.ADDED_WHEN_SYNC) {
+			return ADDED_WHEN_SYNC;
 		} else {
-			newTask.addContent(new Element(STATUS).setText((DELETED_WHEN_SYNC)));
+			return DELETED_WHEN_SYNC;
 		}
-		return newTask;
 	}
 	
 	
 	/*******************************Methods for testing**********************************************/
 	
+	/**
+	 * Write the pending changes, then load the content of the task file, including its journal,
+	 * into a separate model with all of its lists
+	 */
+	private Model loadFileForTest() throws IOException {
+		writePreparedChanges();
+		Model modelInFile = new Model();
+		//The tasks are compared as they are in file, without archiving them again
+		modelInFile.setArchiveAge(0);
+		TaskStorage fileReader = new TaskStorage(xmlFile.getName(), modelInFile);
+		fileReader.loadFromFile();
+		for (TaskSegment segment : segments) {
+			modelInFile.loadList(segment.tabIndex);
+		}
+		return fileReader.model;
+	}
+	
 	public boolean compareModelAndFileForTest() throws IOException {
-		SAXBuilder builder = new SAXBuilder();
-		try {//retrieve the elements
-			Document doc = (Document) builder.build(xmlFile);
-			Element rootNode = doc.getRootElement();
-			Element pending = rootNode.getChild(PENDING);
-			Element trash = rootNode.getChild(TRASH);
-			Element complete = rootNode.getChild(COMPLETE);
-			//Retrieve tasks from the elements and add to model
-			if (!compareListAndElement(pending, model.getPendingList())) {
-				return false;
-			} else if (!compareListAndElement(complete, model.getCompleteList())) {
-				return false;
-			} else if (!compareListAndElement(trash, model.getTrashList())) {
-				return false;
-			} else {
-				return true;
-			}
-			} catch (IOException io) {
-			throw io;
-		  } catch (JDOMException jdomex) {
-			log.log(Level.WARNING, jdomex.getMessage());
+		for (TaskSegment segment : segments) {
+			model.loadList(segment.tabIndex);
+		}
+		Model modelInFile = loadFileForTest();
+		if (!compareLists(modelInFile.getPendingList(), model.getPendingList())) {
+			return false;
+		} else if (!compareLists(modelInFile.getCompleteList(), model.getCompleteList())) {
 			return false;
-		  }
+		} else if (!compareLists(modelInFile.getTrashList(), model.getTrashList())) {
+			return false;
+		} else {
+			return true;
+		}
 	}
 	
-	private boolean compareListAndElement (Element element, ObservableList<Task> taskListInModel){
-		List<Element> taskListInFile = element.getChildren();
+	private boolean compareLists(ObservableList<Task> taskListInFile, ObservableList<Task> taskListInModel){
 		if (taskListInModel.size() != taskListInFile.size()) {
 			return false;
 		}
 		for(int i = 0; i<taskListInFile.size();i++) {
-			Task taskInFile = new Task();
-			Element targetElement = taskListInFile.get(i);
-			taskInFile = setTaskInfo(taskInFile, targetElement);
-			Task taskInModel = taskListInModel.get(i);
-			if(!Task.equalTask(taskInFile,taskInModel)) {
+			if(!Task.equalTask(taskListInFile.get(i),taskListInModel.get(i))) {
 				return false;
 			}
 		}
@@ -291,65 +1803,220 @@ public class TaskStorage extends Storage {
 	}	
 	
 	boolean checkTaskListEmptyForTest(String taskListType) throws IOException {
-		SAXBuilder builder = new SAXBuilder();
-		try {//retrive the elements
-			Document doc = (Document) builder.build(xmlFile);
-			Element rootNode = doc.getRootElement();
-			if (taskListType.equals(PENDING)) {
-				Element pending = rootNode.getChild(PENDING);
-				return pending.getChildren().isEmpty();
-			} else if (taskListType.equals(COMPLETE)) {
-				Element complete = rootNode.getChild(COMPLETE);
-				return complete.getChildren().isEmpty();
-			} else if (taskListType.equals(TRASH)) {
-				Element trash = rootNode.getChild(TRASH);
-				return trash.getChildren().isEmpty();
-			} else {
-				return false;
-			}
-		} catch (IOException io) {
-			throw io;
-		  } catch (JDOMException jdomex) {
-			log.log(Level.WARNING, jdomex.getMessage());
-			return false;
-		  }
+		ObservableList<Task> taskList = getListForTest(loadFileForTest(), taskListType);
+		return taskList != null && taskList.isEmpty();
 	}
 	
 	boolean searchTaskInFileForTest(Task task, String taskListType) throws IOException {
-		SAXBuilder builder = new SAXBuilder();
-		try {//retrive the elements
-			Document doc = (Document) builder.build(xmlFile);
-			Element rootNode = doc.getRootElement();
-			if (taskListType.equals(PENDING)) {
-				Element pending = rootNode.getChild(PENDING);
-				return searchTaskInElement(pending, task);
-			} else if (taskListType.equals(COMPLETE)) {
-				Element complete = rootNode.getChild(COMPLETE);
-				return searchTaskInElement(complete,task);
-			} else if (taskListType.equals(TRASH)) {
-				Element trash = rootNode.getChild(TRASH);
-				return searchTaskInElement(trash, task);
-			} else {
-				return false;
-			}
-		} catch (IOException io) {
-			throw io;
-		  } catch (JDOMException jdomex) {
-			log.log(Level.WARNING, jdomex.getMessage());
+		ObservableList<Task> taskList = getListForTest(loadFileForTest(), taskListType);
+		if (taskList == null) {
 			return false;
-		  }
-	}
-
-	private boolean searchTaskInElement(Element element, Task targetTask) {
-		List<Element> taskList = element.getChildren();
+		}
 		for(int i = 0; i<taskList.size();i++) {
-			Task taskInFile = new Task();
-			Element targetElement = taskList.get(i);
-			taskInFile = setTaskInfo(taskInFile, targetElement);
-			if(Task.equalTask(taskInFile, targetTask)) {
+			if(Task.equalTask(taskList.get(i), task)) {
 				return true;
 			}
 		}
 		return false;
+	}
+	
+	/**
+	 * @return the file the task list is stored in with the chosen file format
+	 */
+	File getSegmentFileForTest(String taskListType) {
+		TaskSegment segment = getSegment(taskListType);
+		return model.hasBinaryStorage() ? segment.snapshot.getFile() : segment.xmlFile;
+	}
+	
+	private ObservableList<Task> getListForTest(Model modelInFile, String taskListType) {
+		if (taskListType.equals(PENDING)) {
+			return modelInFile.getPendingList();
+		} else if (taskListType.equals(COMPLETE)) {
+			return modelInFile.getCompleteList();
+		} else if (taskListType.equals(TRASH)) {
+			return modelInFile.getTrashList();
+		} else {
+			return null;
+		}
+	}
+}
+
+//@author A0105667B
+/**
+ * 
+ * This class holds a task read from the task file together with the list it belongs to
+ *
+ */
+class LoadedTask {
+	// Key of a task read from a file written before the keys were stored
+	static final int NO_KEY = -1;
+	
+	Task task;
+	String taskType;
+	int key;
+	
+	public LoadedTask(Task task, String taskType, int key) {
+		this.task = task;
+		this.taskType = taskType;
+		this.key = key;
+	}
+}
+
+//@author A0105667B
+/**
+ * 
+ * This class holds the size, the modification time and the checksum of a file, the
+ * checksum being only known for the files written from data in memory
+ *
+ */
+class FileState {
+	// Size of a missing file
+	private static final long MISSING = -1;
+	// Coarsest modification time granularity of the file systems, two seconds on FAT
+	private static final long TIMESTAMP_GRANULARITY_IN_MILLIS = 2000;
+	
+	File file;
+	long length;
+	long lastModified;
+	Long checksum;
+	// Indicator whether a write after this state would change the modification time
+	private boolean isTimestampSettled = false;
+	
+	public FileState(File file) {
+		this.file = file;
+		length = file.exists() ? file.length() : MISSING;
+		lastModified = file.lastModified();
+	}
+	
+	public FileState(File file, byte[] data) {
+		this(file);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		checksum = crc.getValue();
+	}
+	
+	/**
+	 * @param length    size the file is known to have, whatever its current size is
+	 */
+	public FileState(File file, long length) {
+		this(file);
+		this.length = length;
+	}
+	
+	boolean exists() {
+		return length != MISSING;
+	}
+	
+	/**
+	 * @return whether the file is no longer in this state. The size and the modification time are 
+	 * compared first. As the modification time may not change between two writes close together, 
+	 * a file with the same ones is compared with its checksum, if that one is known, until the 
+	 * time has moved past the granularity of the modification time. It is read once then at most.
+	 */
+	boolean isChanged(FileState currentState) {
+		if (length != currentState.length || lastModified != currentState.lastModified) {
+			return true;
+		} else if (checksum == null || isTimestampSettled) {
+			return false;
+		}
+		long checkTime = System.currentTimeMillis();
+		if (checksum.longValue() != currentState.readChecksum()) {
+			return true;
+		}
+		isTimestampSettled = checkTime - lastModified >= TIMESTAMP_GRANULARITY_IN_MILLIS;
+		return false;
+	}
+	
+	private long readChecksum() {
+		// the file may be replaced or removed while being read
+		try {
+			return new FileState(file, Files.readAllBytes(file.toPath())).checksum;
+		} catch (IOException io) {
+			return MISSING;
+		}
+	}
+}
+
+//@author A0105667B
+/**
+ *
+ * This class holds the changes read from the files written by another instance, to be
+ * merged into model by the thread executing commands
+ *
+ */
+class ExternalChanges {
+	// Indicator whether the other instance wrote a checkpoint, restarting the journal
+	boolean isNewCheckpoint = false;
+	long generation = 0;
+	// Tasks of the segments rewritten by the checkpoint, for the lists which are loaded
+	Map<String, Map<Integer, LoadedTask>> segmentTasks = new HashMap<String, Map<Integer, LoadedTask>>();
+	// Tasks put by the journal records in the order they were written, without task for a deletion
+	List<LoadedTask> records = new ArrayList<LoadedTask>();
+	// Key after the keys of the tasks read
+	int nextKey = 0;
+	// Offset of the journal file up to which its records were read
+	long journalOffset = 0;
+	// State of the files when they were read
+	Map<File, FileState> fileStates = new HashMap<File, FileState>();
+	
+	void addKey(int key) {
+		nextKey = Math.max(nextKey, key + 1);
+	}
+}
+
+//@author A0105667B
+/**
+ * 
+ * This class holds the XML file and the binary snapshot in which one task list is stored
+ *
+ */
+class TaskSegment {
+	String taskType;
+	// Index of the tab showing the task list
+	int tabIndex;
+	File xmlFile;
+	TaskSnapshot snapshot;
+	
+	public TaskSegment(String taskType, int tabIndex, File xmlFile) {
+		this.taskType = taskType;
+		this.tabIndex = tabIndex;
+		this.xmlFile = xmlFile;
+		snapshot = new TaskSnapshot(xmlFile);
+	}
+	
+	boolean isStored() {
+		return AtomicFile.exists(xmlFile) || AtomicFile.exists(snapshot.getFile());
+	}
 }
+
+//@author A0105667B
+/**
+ *
+ * This class holds a copy of a task list taken for a checkpoint, with everything
+ * needed to convert it to its segment file later
+ *
+ */
+class SegmentCheckpoint {
+	TaskSegment segment;
+	long generation;
+	TaskColumns tasks;
+	int[] taskKeys;
+	int nextKey;
+	boolean isBinary;
+	boolean isCompressed;
+	
+	public SegmentCheckpoint(TaskSegment segment, long generation, TaskColumns tasks, int[] taskKeys, 
+			int nextKey, boolean isBinary, boolean isCompressed) {
+		this.segment = segment;
+		this.generation = generation;
+		this.tasks = tasks;
+		this.taskKeys = taskKeys;
+		this.nextKey = nextKey;
+		this.isBinary = isBinary;
+		this.isCompressed = isCompressed;
+	}
+	
+	File getFile() {
+		return isBinary ? segment.snapshot.getFile() : segment.xmlFile;
+	}
 }
@@ -1,4 +1,13 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import javafx.collections.ObservableList;
+
 import org.junit.Test;
 
 //@author A0098077N
@@ -26,6 +35,212 @@ public class TestCommand {
 		// INCOMPLETE command
 		testIncompleteCommand();
 	}
+	
+	//@author A0105667B
+	@Test
+	public void testSortedInsertion() {
+		Model model = new Model();
+		long now = System.currentTimeMillis();
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		for (int i = 0; i < 20; i++) {
+			Task task = new Task();
+			task.setWorkInfo("task " + i);
+			if (i % 4 != 0) {
+				CustomDate endDate = new CustomDate();
+				endDate.setTimeInMillis(now + ((i * 7) % 10 - 5) * 60 * Common.MINUTE_IN_MILLIS);
+				task.setEndDate(endDate);
+			}
+			tasks.add(task);
+			model.insertTask(task, Common.PENDING_TAB);
+		}
+		assertSortedList(model.getPendingList());
+		
+		// the edited task moves to its new position
+		Task editedTask = model.getTaskFromPending(3);
+		CustomDate endDate = new CustomDate();
+		endDate.setTimeInMillis(now + 100 * 60 * Common.MINUTE_IN_MILLIS);
+		editedTask.setEndDate(endDate);
+		Common.repositionTask(model.getPendingList(), editedTask);
+		assertSortedList(model.getPendingList());
+		
+		model.removeTaskFromPendingNoTrash(5);
+		assertSortedList(model.getPendingList());
+		assertEquals("Test size after remove", 19, model.getPendingList().size());
+	}
+	
+	@Test
+	public void testMultipleTasks() {
+		Model model = new Model();
+		for (int i = 1; i <= 6; i++) {
+			new AddCommand(Parser.parseCommand("add task " + i + " by " + i + "/1/2030",
+					Common.COMMAND_TYPES.ADD, model, 0), model, 0).execute();
+		}
+		Task secondTask = model.getTaskFromPending(1);
+		
+		// the tasks are moved between the lists together, keeping both lists sorted
+		TwoWayCommand complete = new CompleteCommand(Parser.parseCommand("complete 2 4 5",
+				Common.COMMAND_TYPES.COMPLETE, model, 0), model, 0);
+		complete.execute();
+		assertEquals("Test pending after complete", 3, model.getPendingList().size());
+		assertEquals("Test complete after complete", 3, model.getCompleteList().size());
+		assertSame("Test completed task", secondTask, model.getTaskFromComplete(0));
+		assertSortedList(model.getPendingList());
+		assertSortedList(model.getCompleteList());
+		
+		TwoWayCommand remove = new RemoveCommand(Parser.parseCommand("remove 1 3",
+				Common.COMMAND_TYPES.REMOVE, model, 0), model, 0);
+		remove.execute();
+		assertEquals("Test pending after remove", 1, model.getPendingList().size());
+		assertEquals("Test trash after remove", 2, model.getTrashList().size());
+		assertSortedList(model.getTrashList());
+		
+		remove.undo();
+		complete.undo();
+		assertEquals("Test pending after undo", 6, model.getPendingList().size());
+		assertEquals("Test trash after undo", 0, model.getTrashList().size());
+		assertEquals("Test complete after undo", 0, model.getCompleteList().size());
+		assertSame("Test task after undo", secondTask, model.getTaskFromPending(1));
+		assertSortedList(model.getPendingList());
+		
+		TwoWayCommand clear = new ClearAllCommand(model, 0);
+		clear.execute();
+		assertEquals("Test trash after clear", 6, model.getTrashList().size());
+		assertSortedList(model.getTrashList());
+		clear.undo();
+		assertEquals("Test pending after undo of clear", 6, model.getPendingList().size());
+		assertEquals("Test trash after undo of clear", 0, model.getTrashList().size());
+		assertSortedList(model.getPendingList());
+	}
+	
+	@Test
+	public void testOverdueLine() throws InterruptedException {
+		Model model = new Model();
+		CustomDate.updateCurrentDate();
+		long now = System.currentTimeMillis();
+		long[] endTimes = { now - 60 * Common.MINUTE_IN_MILLIS, now + 1000,
+				now + 60 * Common.MINUTE_IN_MILLIS, now + 120 * Common.MINUTE_IN_MILLIS };
+		Task[] tasks = new Task[endTimes.length];
+		for (int i = 0; i < tasks.length; i++) {
+			tasks[i] = new Task();
+			CustomDate endDate = new CustomDate();
+			endDate.setTimeInMillis(endTimes[i]);
+			tasks[i].setEndDate(endDate);
+			model.insertTask(tasks[i], Common.PENDING_TAB);
+		}
+		assertTrue("Check the last overdue task", tasks[0].isLastOverdueTask());
+		
+		// the line moves forward over the tasks which became overdue
+		Thread.sleep(1500);
+		CustomDate.updateCurrentDate();
+		Common.updateLastOverdueTask(model.getPendingList());
+		assertFalse("Check the previous last overdue task", tasks[0].isLastOverdueTask());
+		assertTrue("Check the new last overdue task", tasks[1].isLastOverdueTask());
+		Common.updateIndexInList(model.getPendingList());
+		assertSortedList(model.getPendingList());
+	}
+	
+	@Test
+	public void testRefinedSearch() {
+		Model model = new Model();
+		String[] commands = { "add watch football game #sport", "add write football report #work",
+				"add read news #work", "add football final", "complete 1" };
+		for (String command : commands) {
+			Common.COMMAND_TYPES commandType = Parser.determineCommandType(command);
+			String[] parsedCommand = Parser.parseCommand(command, commandType, model, Common.PENDING_TAB);
+			if (commandType == Common.COMMAND_TYPES.ADD) {
+				new AddCommand(parsedCommand, model, Common.PENDING_TAB).execute();
+			} else {
+				new CompleteCommand(parsedCommand, model, Common.PENDING_TAB).execute();
+			}
+		}
+		
+		// a longer work info or an added tag narrows down the previous results
+		SearchCommand search = search(model, "search foot", Common.PENDING_TAB, null);
+		assertFalse("Test first search", search.isRefinedSearchForTest());
+		search = search(model, "search footb", Common.PENDING_TAB, search);
+		assertTrue("Test longer work info", search.isRefinedSearchForTest());
+		assertSameResults("Test longer work info", model, "search footb", Common.PENDING_TAB, search);
+		search = search(model, "search football #work", Common.PENDING_TAB, search);
+		assertTrue("Test added tag", search.isRefinedSearchForTest());
+		assertSameResults("Test added tag", model, "search football #work", Common.PENDING_TAB, search);
+		assertEquals("Test added tag", 1, search.getSearchListForTest().size());
+		
+		// deleted characters, another tab or a changed list need a full search
+		search = search(model, "search foot", Common.PENDING_TAB, search);
+		assertFalse("Test deleted characters", search.isRefinedSearchForTest());
+		assertSameResults("Test deleted characters", model, "search foot", Common.PENDING_TAB, search);
+		search = search(model, "search footb", Common.COMPLETE_TAB, search);
+		assertFalse("Test changed tab", search.isRefinedSearchForTest());
+		assertSameResults("Test changed tab", model, "search footb", Common.COMPLETE_TAB, search);
+		search = search(model, "search foot", Common.PENDING_TAB, null);
+		Task match = new Task();
+		match.setWorkInfo("football match");
+		model.insertTask(match, Common.PENDING_TAB);
+		search = search(model, "search footb", Common.PENDING_TAB, search);
+		assertFalse("Test added task", search.isRefinedSearchForTest());
+		assertSameResults("Test added task", model, "search footb", Common.PENDING_TAB, search);
+		assertTrue("Test added task", search.getSearchListForTest().contains(match));
+		match.setWorkInfo("tennis match");
+		search = search(model, "search footba", Common.PENDING_TAB, search);
+		assertFalse("Test changed work info", search.isRefinedSearchForTest());
+		assertSameResults("Test changed work info", model, "search footba", Common.PENDING_TAB, search);
+		
+		// tasks which are not in the list do not change it
+		new Task().setWorkInfo("football");
+		search = search(model, "search footbal", Common.PENDING_TAB, search);
+		assertTrue("Test task not in list", search.isRefinedSearchForTest());
+		assertSameResults("Test task not in list", model, "search footbal", Common.PENDING_TAB, search);
+	}
+	
+	@Test
+	public void testEndDateSearch() {
+		// the tasks ending by the date are found in the sorted list by binary search
+		Model model = new Model();
+		String[] endDates = { "6/12/2013 9:00", null, "21/10/2013 10:00", "5/12/2013 12:30", "5/12/2013 23:59" };
+		for (String endDate : endDates) {
+			Task task = new Task();
+			task.setWorkInfo("task ending " + endDate);
+			task.setEndDate(endDate == null ? null : new CustomDate(endDate));
+			model.insertTask(task, Common.PENDING_TAB);
+		}
+		ObservableList<Task> results = search(model, "search by 5/12/2013", Common.PENDING_TAB, null).getSearchListForTest();
+		assertEquals("Test tasks ending by the date", new ArrayList<Task>(model.getPendingList().subList(0, 3)),
+				new ArrayList<Task>(results));
+		results = search(model, "search by 1/10/2013", Common.PENDING_TAB, null).getSearchListForTest();
+		assertTrue("Test no task ending by the date", results.isEmpty());
+	}
+	
+	// A real time search of the tab, narrowing down the previous one when it can
+	private SearchCommand search(Model model, String command, int tabIndex, SearchCommand previousSearch) {
+		String[] parsedCommand = Parser.parseCommand(command, Common.COMMAND_TYPES.SEARCH, model, tabIndex);
+		SearchCommand search = new SearchCommand(parsedCommand, model, null, tabIndex, true, previousSearch);
+		search.processSearch();
+		return search;
+	}
+	
+	// The results of a search are those of a full search of the tab
+	private void assertSameResults(String message, Model model, String command, int tabIndex, SearchCommand search) {
+		SearchCommand fullSearch = search(model, command, tabIndex, null);
+		assertFalse(message, fullSearch.isRefinedSearchForTest());
+		assertEquals(message, new ArrayList<Task>(fullSearch.getSearchListForTest()),
+				new ArrayList<Task>(search.getSearchListForTest()));
+	}
+	
+	private void assertSortedList(ObservableList<Task> list) {
+		ArrayList<Task> sortedList = new ArrayList<Task>(list);
+		Collections.sort(sortedList);
+		int lastOverdue = -1;
+		for (int i = 0; i < list.size(); i++) {
+			assertSame("Test sorted position", sortedList.get(i), list.get(i));
+			assertEquals("Test index in list", i, list.get(i).getIndexInList());
+			if (list.get(i).isOverdueTask()) {
+				lastOverdue = i;
+			}
+		}
+		for (int i = 0; i < list.size(); i++) {
+			assertEquals("Test last overdue task", i == lastOverdue, list.get(i).isLastOverdueTask());
+		}
+	}
 
 	private void testIncompleteCommand() {
 		parsedInfo = Parser.parseCommand("incomplete 1", Common.COMMAND_TYPES.INCOMPLETE, testModel, 1);
@@ -22,6 +22,8 @@ public class TestEncryptor {
 		testCase3();
 		testCase4();
 		testCase5();
+		testCase6();
+		testCase7();
 	}
 	
 	public void testCase1() {
@@ -68,6 +70,48 @@ public class TestEncryptor {
 		}
 	}
 	
+	public void testCase6() {
+		// strings encoded before were broken into lines of 76 characters
+		String plainText = "a password long enough to be encoded on more than one line of text";
+		try {
+			String encryptedString = encryptor.encrypt(plainText);
+			String brokenString = encryptedString.substring(0, 76) + "\n" + encryptedString.substring(76);
+			assertEquals("Decrypted text is different from original plain text",encryptor.decrypt(brokenString), plainText);
+		} catch (Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+	}
+	
+	public void testCase7() {
+		// each thread uses its own ciphers
+		final String[] decryptedTexts = new String[4];
+		Thread[] threads = new Thread[decryptedTexts.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 500; j++) {
+							decryptedTexts[index] = encryptor.decrypt(encryptor.encrypt("Thread" + index + "#" + j));
+						}
+					} catch (Exception e) {
+						decryptedTexts[index] = e.getMessage();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		try {
+			for (int i = 0; i < threads.length; i++) {
+				threads[i].join();
+				assertEquals("Decrypted text is different from original plain text", "Thread" + i + "#499", decryptedTexts[i]);
+			}
+		} catch (InterruptedException e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+	}
+	
 	public void testCase5() {
 		String plainText = "!@#$%^&wertyuioiopip[]jkljl()\';.,/]:|?>";
 		try {
@@ -74,7 +74,7 @@ public class TestIntegrated  {
 		newTask.setWorkInfo("go to gym");
 		newTask.setStartDate(new CustomDate("9pm"));
 		newTask.setEndDate(new CustomDate("10pm"));
-		newTask.setTag(new Tag(Common.HYPHEN,"every3days"));
+		newTask.setTag(Tag.valueOf(Common.HYPHEN,"every3days"));
 		newTask.setNumOccurrences(3);
 		newTask.setCurrentOccurrence(1);
 		try {
@@ -170,7 +170,7 @@ public class TestIntegrated  {
 		}
 		//More edit case
 		controlTest.executeCommand("edit 1 #UEFAchampion");
-		newTask.setTag(new Tag("#UEFAchampion",Common.NULL));
+		newTask.setTag(Tag.valueOf("#UEFAchampion",Common.NULL));
 		try {
 			assertTrue("Task not edited successfully 2",taskFile.searchTaskInFileForTest(newTask, TaskStorage.PENDING));
 		} catch(Exception e){
@@ -224,7 +224,7 @@ public class TestIntegrated  {
 		controlTest.executeCommand("complete 1 2");
 		Task newTask1 = new Task();
 		newTask1.setWorkInfo("do project");
-		newTask1.setTag(new Tag("#Computing", Common.NULL));
+		newTask1.setTag(Tag.valueOf("#Computing", Common.NULL));
 		Task newTask2 = new Task();
 		newTask2.setWorkInfo("watch football game");
 		newTask2.setStartDate(new CustomDate("5pm"));
@@ -279,7 +279,7 @@ public class TestIntegrated  {
 		
 		Task newTask = new Task();
 		newTask.setWorkInfo("go to music concert");
-		newTask.setTag(new Tag("#artCenter",Common.NULL));
+		newTask.setTag(Tag.valueOf("#artCenter",Common.NULL));
 		try {
 			taskFile.storeToFile();
 			assertTrue("Task not recovered to pending successfully", taskFile.searchTaskInFileForTest(newTask, TaskStorage.PENDING));
@@ -312,7 +312,7 @@ public class TestIntegrated  {
 		controlTest.executeCommand("complete 1");
 		Task newTask = new Task();
 		newTask.setWorkInfo("go to music concert");
-		newTask.setTag(new Tag("#artCenter",Common.NULL));
+		newTask.setTag(Tag.valueOf("#artCenter",Common.NULL));
 		try {
 			assertTrue("Task not removed from pending",!taskFile.searchTaskInFileForTest(newTask, TaskStorage.PENDING));
 			assertTrue("Task not completed to complete",taskFile.searchTaskInFileForTest(newTask, TaskStorage.COMPLETE));
@@ -0,0 +1,129 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+//@author A0105667B
+public class TestModel {
+
+	@Test
+	public void testIndexOfTasks() {
+		Model model = new Model();
+		Task first = new Task();
+		first.setWorkInfo("first");
+		first.setIndexId("id1");
+		Task second = new Task();
+		second.setWorkInfo("second");
+		second.setIndexId("id2");
+		model.addTaskToPending(second);
+		model.addTaskToPending(first);
+		assertEquals("Test index of task", 0, model.getIndexFromPending(second));
+		assertEquals("Test index of ID", 1, model.getIndexFromPendingById("id1"));
+
+		// the positions follow sorting, removing and changing IDs in place
+		Common.sortList(model.getPendingList());
+		assertEquals("Test index after sort", 0, model.getIndexFromPending(first));
+		assertEquals("Test index of ID after sort", 1, model.getIndexFromPendingById("id2"));
+		model.removeTask(0, 0);
+		assertEquals("Test index after remove", 0, model.getIndexFromPending(second));
+		assertEquals("Test removed task", -1, model.getIndexFromPending(first));
+		assertEquals("Test removed task in trash", 0, model.getIndexFromTrash(first));
+		second.setIndexId("id3");
+		assertEquals("Test changed ID", 0, model.getIndexFromPendingById("id3"));
+		assertEquals("Test old ID", -1, model.getIndexFromPendingById("id2"));
+		first.setIndexId("id4");
+		assertEquals("Test changed ID in trash", -1, model.getIndexFromPendingById("id4"));
+	}
+
+	@Test
+	public void testIndexOfSharedIds() {
+		// the first task of an index ID shared by several tasks is found, wherever tasks are inserted
+		Model model = new Model();
+		Task[] tasks = new Task[4];
+		for (int i = 0; i < tasks.length; i++) {
+			tasks[i] = new Task();
+			tasks[i].setWorkInfo("task " + i);
+			model.addTaskToPending(tasks[i]);
+		}
+		assertEquals("Test first empty ID", 0, model.getIndexFromPendingById(""));
+		tasks[0].setIndexId("id0");
+		assertEquals("Test next empty ID", 1, model.getIndexFromPendingById(""));
+		Task inserted = new Task();
+		inserted.setWorkInfo("inserted");
+		model.getPendingList().add(1, inserted);
+		assertEquals("Test inserted empty ID", 1, model.getIndexFromPendingById(""));
+		assertEquals("Test index after insertion", 4, model.getIndexFromPending(tasks[3]));
+		assertEquals("Test ID before insertion", 0, model.getIndexFromPendingById("id0"));
+		model.getPendingList().remove(0);
+		assertEquals("Test removed ID", -1, model.getIndexFromPendingById("id0"));
+		assertEquals("Test index after removal", 0, model.getIndexFromPending(inserted));
+		assertEquals("Test index after removal", 3, model.getIndexFromPending(tasks[3]));
+	}
+
+	@Test
+	public void testIndexOfMovedTasks() {
+		// a task added to another list before it is removed from its own is followed by the new list
+		Model model = new Model();
+		Task task = new Task();
+		task.setWorkInfo("moved task");
+		model.addTaskToPending(task);
+		model.getCompleteList().add(task);
+		model.getPendingList().remove(task);
+		task.setIndexId("id1");
+		assertEquals("Test moved task", 0, model.getIndexFromComplete(task));
+		assertEquals("Test ID of moved task", -1, model.getIndexFromPendingById("id1"));
+		task.setWorkInfo("renamed task");
+		assertEquals("Test words of moved task", Collections.singletonList(task), model.getTasksWithWords("renamed", Common.COMPLETE_TAB));
+		
+		// the tasks stay indexed when the list is set again, and positions set outside are corrected
+		Task other = new Task();
+		other.setWorkInfo("other task");
+		model.getCompleteList().setAll(other, task);
+		assertEquals("Test index after setAll", 1, model.getIndexFromComplete(task));
+		task.setIndexInList(5);
+		assertEquals("Test index set outside", 1, model.getIndexFromComplete(task));
+		assertEquals("Test words after setAll", Collections.singletonList(task), model.getTasksWithWords("renamed", Common.COMPLETE_TAB));
+	}
+
+	@Test
+	public void testWordIndex() {
+		Model model = new Model();
+		Task football = new Task();
+		football.setWorkInfo("Watch football game");
+		Task report = new Task();
+		report.setWorkInfo("write report");
+		report.setTag(Tag.valueOf("#work", "null"));
+		model.insertTask(football, Common.PENDING_TAB);
+		model.insertTask(report, Common.PENDING_TAB);
+		
+		// the words of the work info are looked up as parts of the indexed words
+		assertEquals("Test part of a word", Collections.singletonList(football), model.getTasksWithWords("BALL ga", Common.PENDING_TAB));
+		assertEquals("Test word of tag", Collections.singletonList(report), model.getTasksWithWords("wor", Common.PENDING_TAB));
+		assertEquals("Test short part", Arrays.asList(football, report), model.getTasksWithWords("t", Common.PENDING_TAB));
+		assertEquals("Test long part", Collections.singletonList(football), model.getTasksWithWords("otball", Common.PENDING_TAB));
+		assertTrue("Test parts of a word out of order", model.getTasksWithWords("ballfoot", Common.PENDING_TAB).isEmpty());
+		assertTrue("Test missing word", model.getTasksWithWords("game tennis", Common.PENDING_TAB).isEmpty());
+		assertEquals("Test no word", null, model.getTasksWithWords(" - ", Common.PENDING_TAB));
+		
+		// the index follows the changed work info and tags and the removed tasks
+		int listChanges = model.getListChanges(Common.PENDING_TAB);
+		new Task().setWorkInfo("football");
+		assertEquals("Test task not in list", listChanges, model.getListChanges(Common.PENDING_TAB));
+		football.setWorkInfo("watch tennis game");
+		assertTrue("Test changed list", model.getListChanges(Common.PENDING_TAB) != listChanges);
+		assertTrue("Test changed work info", model.getTasksWithWords("football", Common.PENDING_TAB).isEmpty());
+		assertEquals("Test changed work info", Collections.singletonList(football), model.getTasksWithWords("tennis", Common.PENDING_TAB));
+		report.setTag(Tag.valueOf("#office", "null"));
+		assertTrue("Test changed tag", model.getTasksWithWords("work", Common.PENDING_TAB).isEmpty());
+		assertEquals("Test changed tag", Collections.singletonList(report), model.getTasksWithWords("offi", Common.PENDING_TAB));
+		model.removeTasks(Collections.singletonList(report), Common.PENDING_TAB);
+		assertTrue("Test removed task", model.getTasksWithWords("report", Common.PENDING_TAB).isEmpty());
+		assertEquals("Test removed task in trash", Collections.singletonList(report), model.getTasksWithWords("report", Common.TRASH_TAB));
+		report.setWorkInfo("write summary");
+		assertEquals("Test changed task in trash", Collections.singletonList(report), model.getTasksWithWords("summ", Common.TRASH_TAB));
+		assertTrue("Test changed task removed from list", model.getTasksWithWords("summ", Common.PENDING_TAB).isEmpty());
+	}
+}
@@ -59,6 +59,9 @@ public class TestParser {
 		// Check SYNC command type
 		testParsingSync();
 		
+		// Check IMPORT and EXPORT command types
+		testParsingImportExport();
+		
 		// Check TODAY command type
 		testParsingToday();
 		
@@ -99,6 +102,13 @@ public class TestParser {
 	}
 	
 	
+	public void testParsingImportExport() {
+		assertEquals("Check IMPORT command type", Common.COMMAND_TYPES.IMPORT, Parser.determineCommandType("import tasks.csv"));
+		assertEquals("Check EXPORT command type", Common.COMMAND_TYPES.EXPORT, Parser.determineCommandType("Export tasks.ics"));
+		String[] parsedInfo = {"my  tasks.csv"};
+		assertArrayEquals("Compare IMPORT command parsed result", parsedInfo, Parser.parseCommand("import my  tasks.csv", Common.COMMAND_TYPES.IMPORT, null, 0));
+	}
+	
 	public void testParsingSync() {
 		assertEquals("Check SYNC command type", Common.COMMAND_TYPES.SYNC, Parser.determineCommandType("sYnc JUnit Test"));
 		assertNull(Parser.parseCommand("sync JUnit Test", Common.COMMAND_TYPES.SYNC, null, 0));
@@ -1,6 +1,9 @@
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -39,5 +42,28 @@ public class TestSettingsStorage {
 			fail("Some exception thrown "+e.getMessage());
 		}
 	}
+	
+	@Test
+	public void testUpdate() {
+		// the file is only written again when a setting changed
+		File previousFile = AtomicFile.getPreviousFile(new File(Storage.findUserDocDir() + Storage.FOLDERNAME, Common.setting_fileName));
+		try {
+			settingStore.storeToFile();
+			previousFile.delete();
+			settingStore.updateToFile();
+			assertFalse("Unchanged settings are written", previousFile.exists());
+			String password = model.getPassword();
+			model.setPassword(password + "#");
+			model.setSyncPeriod(model.getSyncPeriod() + 1);
+			settingStore.updateToFile();
+			assertTrue("Changed settings are not written", previousFile.exists());
+			assertTrue("Settings are not updated successfully", settingStore.compareModelAndFileForTest());
+			model.setPassword(password);
+			model.setSyncPeriod(model.getSyncPeriod() - 1);
+			settingStore.updateToFile();
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+	}
 
 }
@@ -49,7 +49,7 @@ public class TestSynchronization {
 		task2.setWorkInfo("timed task");
 		task2.setStartDate(new CustomDate("4pm"));
 		task2.setEndDate(new CustomDate("6pm"));
-		task2.setTag(new Tag(Common.HYPHEN, "weekly"));
+		task2.setTag(Tag.valueOf(Common.HYPHEN, "weekly"));
 		model.getPendingList().clear();
 		model.addTaskToPending(task2);
 		
@@ -3,6 +3,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -43,16 +44,16 @@ public class TestTask {
 		
 		// Update the tag
 		assertEquals("Compare the tag", "-", testTask.getTag().getTag());
-		testTask.setTag(new Tag("JUnitTest", "null"));
+		testTask.setTag(Tag.valueOf("JUnitTest", "null"));
 		assertEquals("Compare the updated tag", "JUnitTest", testTask.getTag().getTag());
 		
 		// Update the tag and the type of repetition
-		testTask.setTag(new Tag("iDo", "weekly"));
+		testTask.setTag(Tag.valueOf("iDo", "weekly"));
 		assertEquals("Compare the updated tag", "iDo", testTask.getTag().getTag());
 		assertEquals("Compare the updated type of repetition","weekly", testTask.getTag().getRepetition());
 		
 		// Update only the type of repetition
-		testTask.getTag().setRepetition("every3weeks");
+		testTask.setTag(Tag.valueOf(testTask.getTag().getTag(), "every3weeks"));
 		assertEquals("Compare the updated tag", "iDo", testTask.getTag().getTag());
 		assertEquals("Compare the updated type of repetition","every3weeks", testTask.getTag().getRepetition());
 		
@@ -78,7 +79,7 @@ public class TestTask {
 		
 		// Check indicator for recurring task
 		assertTrue("Check if it is a recurring task", testTask.isRecurringTask());
-		testTask.getTag().setRepetition("null");
+		testTask.setTag(Tag.valueOf(testTask.getTag().getTag(), "null"));
 		assertFalse("Check if it is a timed task", testTask.isRecurringTask());
 		
 		// Compare status
@@ -88,4 +89,67 @@ public class TestTask {
 		testTask.setStatus(Task.Status.UNCHANGED);
 		assertEquals("Check the updated status", Task.Status.UNCHANGED, testTask.getStatus());
 	}	
+	
+	//@author A0105667B
+	@Test
+	public void testCompareTo() {
+		String[] workInfos = { "alpha", "Alpha", "beta", "\u00e9t\u00e9", "\u00c9T\u00c9" };
+		String[] dates = { null, "21/10/2013", "21/10/2013 12:30", "5/12/2013 12:30" };
+		Task[] tasks = new Task[workInfos.length * dates.length * dates.length];
+		int count = 0;
+		for (String workInfo : workInfos) {
+			for (String startDate : dates) {
+				for (String endDate : dates) {
+					Task task = new Task();
+					task.setWorkInfo(workInfo);
+					task.setStartDate(startDate == null ? null : new CustomDate(startDate));
+					task.setEndDate(endDate == null ? null : new CustomDate(endDate));
+					tasks[count++] = task;
+				}
+			}
+		}
+		// the keys give the same order as comparing the dates and the work info themselves
+		for (Task task1 : tasks) {
+			for (Task task2 : tasks) {
+				int expected = CustomDate.compare(task1.getEndDate(), task2.getEndDate());
+				if (expected == 0) {
+					expected = CustomDate.compare(task1.getStartDate(), task2.getStartDate());
+				}
+				if (expected == 0) {
+					expected = task1.getWorkInfo().compareToIgnoreCase(task2.getWorkInfo());
+				}
+				assertEquals("Compare the order of tasks", Integer.signum(expected), Integer.signum(task1.compareTo(task2)));
+			}
+		}
+	}
+	
+	@Test
+	public void testSharedTags() {
+		Tag tag = Tag.valueOf("#project", "every week");
+		assertSame("Check the tags are shared", tag, Tag.valueOf(new String("#project"), new String("every week")));
+		assertFalse("Check different tags are not equal", tag.equals(Tag.valueOf("#project", "null")));
+		assertEquals("Compare equal tags", tag, Tag.valueOf("#project", "every week"));
+	}
+	
+	@Test
+	public void testLazyProperties() {
+		Task task = new Task();
+		task.setWorkInfo("before binding");
+		task.setIsImportant(true);
+		// a property created later starts with the value set before
+		assertEquals("Compare the work info property", "before binding", task.workInfoProperty().get());
+		assertTrue("Check the row status property", task.rowStatusProperty().get().getIsImportant());
+		// and the values set afterwards go through the property
+		task.setWorkInfo("after binding");
+		assertEquals("Compare the updated work info property", "after binding", task.workInfoProperty().get());
+		assertEquals("Compare the updated work info", "after binding", task.getWorkInfo());
+		task.setEndDate(new CustomDate("5/12/2013 12:30"));
+		assertEquals("Compare the end date property", task.getEndDate(), task.endDateProperty().get());
+		assertEquals("Compare the end date string property", task.getEndDateString(), task.endDateStringProperty().get());
+		// a task whose tag property was never bound still reads its repetition
+		Task unboundTask = new Task();
+		assertFalse("Check an unbound non-recurring task", unboundTask.isRecurringTask());
+		unboundTask.setTag(Tag.valueOf("iDo", "weekly"));
+		assertTrue("Check an unbound recurring task", unboundTask.isRecurringTask());
+	}
 }
@@ -1,15 +1,27 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 //@author A0105667B
 public class TestTaskStorage {
+	// Number of days after which the tasks are archived in testArchive
+	private static final int ARCHIVE_AGE = 30;
 
 	static Control controlTest;
-	static Storage dataFile;
+	static TaskStorage dataFile;
 
 	@BeforeClass
 	public static void testSetup() {
@@ -40,5 +52,453 @@ public class TestTaskStorage {
 		controlTest.executeCommand("undo");
 	}
 	
+	@Test
+	public void testJournal() {
+		// changes made by commands are only appended to the journal
+		controlTest.executeCommand("add watch movie from 8pm to 10pm");
+		controlTest.executeCommand("mark 1");
+		controlTest.executeCommand("remove 1");
+		controlTest.executeCommand("undo");
+		try {
+			assertTrue("Journal is not replayed successfully", dataFile.compareModelAndFileForTest());
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+		controlTest.executeCommand("undo");
+		controlTest.executeCommand("undo");
+	}
+	
+	@Test
+	public void testWriteBehind() {
+		// changes of commands are written in the background and flushed on demand
+		controlTest.executeCommand("add buy groceries from 6pm to 7pm");
+		controlTest.executeCommand("mark 1");
+		try {
+			controlTest.getTaskWriter().flush();
+			assertFalse("Changes are not flushed", dataFile.writePreparedChanges());
+			assertTrue("Model are not stored successfully", dataFile.compareModelAndFileForTest());
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+		controlTest.executeCommand("undo");
+		controlTest.executeCommand("undo");
+	}
+	
+	@Test
+	public void testBinarySnapshot() {
+		// tasks written to the binary snapshot are converted back to XML losslessly
+		controlTest.executeCommand("add read book from 9am to 11am #reading");
+		try {
+			controlTest.getModel().setBinaryStorage(true);
+			dataFile.storeToFile();
+			assertTrue("Snapshot is not stored successfully", dataFile.compareModelAndFileForTest());
+			controlTest.getModel().setBinaryStorage(false);
+			dataFile.storeToFile();
+			assertTrue("Snapshot is not converted successfully", dataFile.compareModelAndFileForTest());
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		} finally {
+			controlTest.getModel().setBinaryStorage(false);
+		}
+		controlTest.executeCommand("undo");
+	}
+	
+	@Test
+	public void testDirtyLists() {
+		// only the lists changed since the last checkpoint are rewritten
+		controlTest.executeCommand("add clean room from 1pm to 2pm");
+		try {
+			dataFile.storeToFile();
+			assertFalse("Pending list is not stored", controlTest.getModel().isListDirty(Common.PENDING_TAB));
+			controlTest.executeCommand("remove 1");
+			assertTrue("Pending list is not marked", controlTest.getModel().isListDirty(Common.PENDING_TAB));
+			assertTrue("Trash list is not marked", controlTest.getModel().isListDirty(Common.TRASH_TAB));
+			assertFalse("Complete list is marked", controlTest.getModel().isListDirty(Common.COMPLETE_TAB));
+			assertTrue("Model are not stored successfully", dataFile.compareModelAndFileForTest());
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+		controlTest.executeCommand("undo");
+		controlTest.executeCommand("undo");
+	}
+	
+	@Test
+	public void testLazyLoading() {
+		// the complete and trash lists are only read from file when they are loaded
+		try {
+			dataFile.storeToFile();
+			Control lazyControl = new Control();
+			lazyControl.loadData();
+			Model lazyModel = lazyControl.getModel();
+			assertFalse("Trash list is loaded", lazyModel.isListLoaded(Common.TRASH_TAB));
+			assertTrue("Trash list is loaded", lazyModel.getTrashList().isEmpty());
+			assertTrue("Trash list is not loaded", lazyModel.loadList(Common.TRASH_TAB));
+			assertTrue("Trash list is not loaded", lazyModel.getTrashList().size() == controlTest.getModel().getTrashList().size());
+			assertTrue("Trash list is not loaded", lazyModel.isListLoaded(Common.TRASH_TAB));
+			assertTrue("Model are not stored successfully", lazyControl.getTaskFile().compareModelAndFileForTest());
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testCompressedStorage() {
+		// compressed and plain list files are both read, whatever the current setting is
+		File pendingFile = dataFile.getSegmentFileForTest(TaskStorage.PENDING);
+		try {
+			controlTest.getModel().setCompressedStorage(true);
+			dataFile.storeToFile();
+			RandomAccessFile compressedFile = new RandomAccessFile(pendingFile, "r");
+			try {
+				assertEquals("List file is not compressed", GZIPInputStream.GZIP_MAGIC, 
+						compressedFile.read() | (compressedFile.read() << 8));
+			} finally {
+				compressedFile.close();
+			}
+			assertTrue("Compressed file is not read", dataFile.compareModelAndFileForTest());
+			controlTest.getModel().setCompressedStorage(false);
+			assertTrue("Compressed file is not read", dataFile.compareModelAndFileForTest());
+			dataFile.storeToFile();
+			assertTrue("Model are not stored successfully", dataFile.compareModelAndFileForTest());
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		} finally {
+			controlTest.getModel().setCompressedStorage(false);
+		}
+	}
+	
+	@Test
+	public void testArchive() {
+		// trashed tasks not modified for longer than the archive age are moved to the archive
+		Model model = controlTest.getModel();
+		int previousArchiveAge = model.getArchiveAge();
+		Task oldTask = new Task();
+		oldTask.setWorkInfo("read old newspaper " + System.currentTimeMillis());
+		CustomDate modifiedDate = new CustomDate();
+		modifiedDate.setTimeInMillis(System.currentTimeMillis() - (ARCHIVE_AGE + 1) * CustomDate.DAY_IN_MILLIS);
+		oldTask.setLatestModifiedDate(modifiedDate);
+		model.addTaskToTrash(oldTask);
+		try {
+			// the archive age is read from settings with the tasks
+			model.setArchiveAge(ARCHIVE_AGE);
+			controlTest.getSettingsFile().storeToFile();
+			dataFile.storeToFile();
+			Control archiveControl = new Control();
+			archiveControl.loadData();
+			Model archiveModel = archiveControl.getModel();
+			archiveModel.loadList(Common.TRASH_TAB);
+			assertFalse("Task is not archived", containsTask(archiveModel.getTrashList(), oldTask));
+			assertTrue("Task is not in archive", containsTask(archiveModel.getArchivedTasks(Common.TRASH_TAB), oldTask));
+			// the columns are filled from the archived fields and kept until the archive grows
+			List<Task> archivedTasks = archiveModel.getArchivedTasks(Common.TRASH_TAB);
+			for (Task archivedTask : archivedTasks) {
+				if (archivedTask.getWorkInfo().equals(oldTask.getWorkInfo())) {
+					assertEquals("Archived date is not read", modifiedDate.getTimeInMillis() / 1000, 
+							archivedTask.getLatestModifiedDate().getTimeInMillis() / 1000);
+					assertNull("Archived start date is not read", archivedTask.getStartDate());
+				}
+			}
+			assertEquals("Archived tasks are not kept", archivedTasks.size(), 
+					archiveModel.getArchivedTasks(Common.TRASH_TAB).size());
+			archiveControl.getTaskFile().writePreparedChanges();
+			assertTrue("Model are not stored successfully", archiveControl.getTaskFile().compareModelAndFileForTest());
+			// the other instance removed the archived task from the trash list
+			dataFile.mergeExternalChanges(dataFile.readExternalChanges());
+			assertFalse("Archived task is not merged", containsTask(model.getTrashList(), oldTask));
+			dataFile.storeToFile();
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		} finally {
+			model.setArchiveAge(previousArchiveAge);
+			try {
+				controlTest.getSettingsFile().storeToFile();
+			} catch (IOException io) {
+				fail("Some exception thrown "+io.getMessage());
+			}
+		}
+	}
+	
+	@Test
+	public void testTaskColumns() {
+		// archived tasks kept in columns are created again with the same information
+		TaskColumns columns = new TaskColumns();
+		Task firstTask = new Task();
+		firstTask.setIndexId("abc123");
+		firstTask.setWorkInfo("read archived report");
+		firstTask.setStartDate(new CustomDate("21/10/2013 09:00"));
+		firstTask.setEndDate(new CustomDate("21/10/2013 11:30"));
+		firstTask.setTag(Tag.valueOf("#work", "every2weeks"));
+		firstTask.setIsImportant(true);
+		firstTask.setOccurrence(5, 2);
+		firstTask.setStatus(Task.Status.UNCHANGED);
+		Task secondTask = new Task();
+		secondTask.setWorkInfo("floating task");
+		columns.add(firstTask);
+		columns.add(secondTask);
+		columns.trimToSize();
+		
+		assertEquals(2, columns.size());
+		Task firstRow = columns.get(0);
+		assertTrue("Task is not kept in columns", Task.equalTask(firstTask, firstRow));
+		assertTrue("Row is created again", firstRow == columns.get(0));
+		assertTrue("Tag is not shared", firstRow.getTag() == firstTask.getTag());
+		assertEquals(Task.Status.UNCHANGED, firstRow.getStatus());
+		assertEquals(firstTask.getLatestModifiedDate().getTimeInMillis(), firstRow.getLatestModifiedDate().getTimeInMillis());
+		Task secondRow = columns.get(1);
+		assertTrue("Task is not kept in columns", Task.equalTask(secondTask, secondRow));
+		// a row held elsewhere gives the same task after other rows were read
+		assertTrue("Row is created again after another row", firstRow == columns.get(0));
+		assertTrue("Row is created again after another row", secondRow == columns.get(1));
+		assertEquals("Column differs from task", firstTask.getEndDate().getTimeInMillis(), columns.getEndDate(0));
+		assertEquals("Missing date is kept", TaskColumns.NO_DATE, columns.getStartDate(1));
+		assertTrue("Floating task has dates", secondRow.getStartDate() == null && secondRow.getEndDate() == null);
+		assertFalse("Task is important", secondRow.isImportantTask());
+		// the rows are read-only, as their changes would be lost
+		assertTrue("Row is not read-only", secondRow.isReadOnly());
+		try {
+			secondRow.setWorkInfo("changed floating task");
+			fail("Row is changed");
+		} catch (UnsupportedOperationException uoe) {
+			assertEquals("Row is changed", "floating task", columns.get(1).getWorkInfo());
+		}
+	}
+	
+	@Test
+	public void testArchiveQuery() {
+		// the archived tasks are looked up in the database by their end date and tag
+		DatabaseStorage storage = new DatabaseStorage("test_archive_query.xml", new Model());
+		File databaseFile = new File(storage.getArchive().getFile().getPath() + ".h2.db");
+		databaseFile.delete();
+		String[] tags = { "#work", "#home", "#work" };
+		String[] endDates = { "21/10/2013 11:30", "21/10/2013 11:30", "5/12/2013 12:30" };
+		List<Integer> taskKeys = new ArrayList<Integer>();
+		List<String[]> taskFields = new ArrayList<String[]>();
+		for (int i = 0; i < tags.length; i++) {
+			Task task = new Task();
+			task.setWorkInfo("archived task " + i);
+			task.setEndDate(new CustomDate(endDates[i]));
+			task.setTag(Tag.valueOf(tags[i], "null"));
+			taskKeys.add(i);
+			taskFields.add(TaskStorage.convertToRecord(task));
+		}
+		try {
+			storage.archiveTasks(TaskStorage.TRASH, taskKeys, taskFields);
+			List<Task> archivedTasks = storage.loadArchivedTasks(Common.TRASH_TAB, "#WORK", new CustomDate("21/10/2013"));
+			assertEquals("Tasks are not filtered", 1, archivedTasks.size());
+			assertEquals("archived task 0", archivedTasks.get(0).getWorkInfo());
+			assertEquals("Tag is not searched inside", 2, 
+					storage.loadArchivedTasks(Common.TRASH_TAB, "ork", null).size());
+			assertTrue("Task is in another list", storage.loadArchivedTasks(Common.COMPLETE_TAB).isEmpty());
+			// a task archived again keeps its place with its latest fields
+			Task changedTask = new Task();
+			changedTask.setWorkInfo("changed archived task");
+			storage.archiveTasks(TaskStorage.TRASH, taskKeys.subList(0, 1), 
+					Collections.singletonList(TaskStorage.convertToRecord(changedTask)));
+			archivedTasks = storage.loadArchivedTasks(Common.TRASH_TAB);
+			assertEquals("Task is archived twice", tags.length, archivedTasks.size());
+			assertEquals("changed archived task", archivedTasks.get(0).getWorkInfo());
+			assertNull("Missing date is not kept", archivedTasks.get(0).getEndDate());
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		} finally {
+			databaseFile.delete();
+		}
+	}
+	
+	@Test
+	public void testAtomicWrite() {
+		// a list file damaged after it was written is replaced by its previous version
+		Model model = controlTest.getModel();
+		Task newTask = new Task();
+		newTask.setWorkInfo("water the plants " + System.currentTimeMillis());
+		try {
+			dataFile.storeToFile();
+			model.addTaskToPending(newTask);
+			dataFile.storeToFile();
+			File pendingFile = dataFile.getSegmentFileForTest(TaskStorage.PENDING);
+			assertTrue("Previous version is not kept", AtomicFile.getPreviousFile(pendingFile).exists());
+			assertTrue("Task is not stored", dataFile.searchTaskInFileForTest(newTask, TaskStorage.PENDING));
+			RandomAccessFile damagedFile = new RandomAccessFile(pendingFile, "rw");
+			try {
+				damagedFile.seek(damagedFile.length() / 2);
+				damagedFile.write('#');
+			} finally {
+				damagedFile.close();
+			}
+			assertFalse("Previous version is not read", dataFile.searchTaskInFileForTest(newTask, TaskStorage.PENDING));
+			model.getPendingList().remove(newTask);
+			assertTrue("Previous version is not read", dataFile.compareModelAndFileForTest());
+			// the damaged file is not written over until it is merged
+			assertTrue("Damaged file is not detected", dataFile.hasExternalChanges());
+			dataFile.mergeExternalChanges(dataFile.readExternalChanges());
+			dataFile.storeToFile();
+			assertFalse("Removed task is stored", dataFile.searchTaskInFileForTest(newTask, TaskStorage.PENDING));
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testExternalChanges() {
+		// a task added by another instance is merged from its journal record
+		String externalWorkInfo = "call the landlord " + System.currentTimeMillis();
+		Task externalTask = new Task();
+		externalTask.setWorkInfo(externalWorkInfo);
+		Task localTask = new Task();
+		localTask.setWorkInfo("buy a new lamp");
+		try {
+			dataFile.storeToFile();
+			Control externalControl = new Control();
+			externalControl.loadData();
+			externalControl.executeCommand("add " + externalWorkInfo);
+			externalControl.getTaskWriter().flush();
+			assertTrue("External change is not detected", dataFile.hasExternalChanges());
+			ExternalChanges changes = dataFile.readExternalChanges();
+			assertFalse("Journal records are read as a checkpoint", changes.isNewCheckpoint);
+			assertEquals("Only the new journal record is read", 1, changes.records.size());
+			controlTest.executeCommand("add " + localTask.getWorkInfo());
+			assertFalse("Changes are written over the external changes", dataFile.writePreparedChanges());
+			dataFile.mergeExternalChanges(changes);
+			assertFalse("External change is merged twice", dataFile.hasExternalChanges());
+			Model model = controlTest.getModel();
+			assertTrue("External task is not merged", containsTask(model.getPendingList(), externalTask));
+			dataFile.writePreparedChanges();
+			assertTrue("Model are not stored successfully", dataFile.compareModelAndFileForTest());
+			
+			// the task removed by a checkpoint of the other instance is removed from the rewritten list
+			externalControl.getTaskFile().mergeExternalChanges(externalControl.getTaskFile().readExternalChanges());
+			Model externalModel = externalControl.getModel();
+			for (Task task : externalModel.getPendingList()) {
+				if (task.getWorkInfo().equals(externalWorkInfo)) {
+					externalModel.getPendingList().remove(task);
+					break;
+				}
+			}
+			externalControl.getTaskFile().storeToFile();
+			changes = dataFile.readExternalChanges();
+			assertTrue("Checkpoint is not detected", changes.isNewCheckpoint);
+			dataFile.mergeExternalChanges(changes);
+			assertFalse("External task is not removed", containsTask(model.getPendingList(), externalTask));
+			assertTrue("Local task is lost", containsTask(model.getPendingList(), localTask));
+			dataFile.storeToFile();
+			assertTrue("Model are not stored successfully", dataFile.compareModelAndFileForTest());
+			for (Task task : model.getPendingList()) {
+				if (task.getWorkInfo().equals(localTask.getWorkInfo())) {
+					model.getPendingList().remove(task);
+					break;
+				}
+			}
+			dataFile.storeToFile();
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testImportExport() {
+		// the tasks exported to a file are imported into the same lists
+		controlTest.executeCommand("add read \"Dune\", chapter 3 from 8pm to 9pm #books");
+		Model model = controlTest.getModel();
+		for (String extension : new String[] { TaskFormat.CSV_EXTENSION, TaskFormat.ICS_EXTENSION }) {
+			File exportFile = new File(dataFile.getFolder(), "testExport" + extension);
+			try {
+				int numTasks = model.getPendingList().size() + model.getCompleteList().size() 
+						+ model.getTrashList().size();
+				assertEquals("Tasks are not exported", numTasks, dataFile.exportTasks(exportFile));
+				Model importModel = new Model();
+				importModel.setArchiveAge(0);
+				TaskStorage importFile = new TaskStorage("testImport.xml", importModel);
+				assertEquals("Tasks are not imported", numTasks, importFile.importTasks(exportFile).size());
+				assertEquals("Tasks are not imported to their lists", model.getCompleteList().size(), 
+						importModel.getCompleteList().size());
+				for (Task task : model.getPendingList()) {
+					assertTrue("Task is not imported", containsTask(importModel.getPendingList(), task));
+				}
+			} catch(Exception e) {
+				fail("Some exception thrown "+e.getMessage());
+			} finally {
+				deleteTestFiles("testExport");
+				deleteTestFiles("testImport");
+			}
+		}
+		controlTest.executeCommand("undo");
+	}
+
+	@Test
+	public void testImportUnloadedLists() {
+		// the tasks imported into the complete and trash lists before they are loaded are stored with them
+		Model exportModel = new Model();
+		Task completeTask = new Task();
+		completeTask.setWorkInfo("file the tax return " + System.currentTimeMillis());
+		exportModel.addTaskToComplete(completeTask);
+		Task trashTask = new Task();
+		trashTask.setWorkInfo("book the old hotel " + System.currentTimeMillis());
+		exportModel.addTaskToTrash(trashTask);
+		File exportFile = new File(dataFile.getFolder(), "testExport" + TaskFormat.CSV_EXTENSION);
+		try {
+			new TaskStorage("testExport.xml", exportModel).exportTasks(exportFile);
+			dataFile.storeToFile();
+			Control lazyControl = new Control();
+			lazyControl.loadData();
+			Model lazyModel = lazyControl.getModel();
+			assertFalse("Complete list is loaded", lazyModel.isListLoaded(Common.COMPLETE_TAB));
+			assertFalse("Trash list is loaded", lazyModel.isListLoaded(Common.TRASH_TAB));
+			List<Task> importedTasks = lazyControl.getTaskFile().importTasks(exportFile);
+			assertEquals("Tasks are not imported", 2, importedTasks.size());
+			lazyControl.getTaskFile().storeChangesToFile(importedTasks);
+
+			Control reloadedControl = new Control();
+			reloadedControl.loadData();
+			Model reloadedModel = reloadedControl.getModel();
+			reloadedModel.loadList(Common.COMPLETE_TAB);
+			reloadedModel.loadList(Common.TRASH_TAB);
+			assertTrue("Complete task is not stored", containsTask(reloadedModel.getCompleteList(), completeTask));
+			assertTrue("Trash task is not stored", containsTask(reloadedModel.getTrashList(), trashTask));
+			assertEquals("Complete list is not kept", lazyModel.getCompleteList().size(),
+					reloadedModel.getCompleteList().size());
+			assertEquals("Trash list is not kept", lazyModel.getTrashList().size(),
+					reloadedModel.getTrashList().size());
+
+			// the imported tasks are removed again from the lists of this instance
+			dataFile.mergeExternalChanges(dataFile.readExternalChanges());
+			Model model = controlTest.getModel();
+			model.loadList(Common.COMPLETE_TAB);
+			model.loadList(Common.TRASH_TAB);
+			removeTask(model.getCompleteList(), completeTask);
+			removeTask(model.getTrashList(), trashTask);
+			dataFile.storeToFile();
+		} catch(Exception e) {
+			fail("Some exception thrown "+e.getMessage());
+		} finally {
+			deleteTestFiles("testExport");
+		}
+	}
+
+	// Delete the files a test created in the folder of iDo files, whose names start with the given prefix
+	private void deleteTestFiles(String prefix) {
+		for (File file : dataFile.getFolder().listFiles()) {
+			if (file.getName().startsWith(prefix)) {
+				file.delete();
+			}
+		}
+	}
+
+	private void removeTask(List<Task> taskList, Task task) {
+		for (Task listedTask : taskList) {
+			if (listedTask.getWorkInfo().equals(task.getWorkInfo())) {
+				taskList.remove(listedTask);
+				return;
+			}
+		}
+	}
+
+	private boolean containsTask(List<Task> taskList, Task task) {
+		for (Task listedTask : taskList) {
+			if (listedTask.getWorkInfo().equals(task.getWorkInfo())) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 }
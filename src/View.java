@@ -1026,13 +1026,13 @@ public class View implements HotkeyListener {
 	// Create the table showing trash tasks
 	private void createTrashTable() {
 		taskTrashList = new TableView<Task>();
-		createTable(taskTrashList, model.getTrashList());
+		createTable(taskTrashList, model.getList(Common.TRASH_TAB));
 	}
 
 	// Create the table showing completed tasks
 	private void createCompleteTable() {
 		taskCompleteList = new TableView<Task>();
-		createTable(taskCompleteList, model.getCompleteList());
+		createTable(taskCompleteList, model.getList(Common.COMPLETE_TAB));
 	}
 
 	// Create the table showing pending tasks
@@ -2165,6 +2165,7 @@ public class View implements HotkeyListener {
 				.addListener(new ChangeListener<Number>() {
 					public void changed(ObservableValue<? extends Number> ov,
 							Number oldValue, Number newValue) {
+						model.loadList(newValue.intValue());
 						clearSearchLists();
 					}
 					
@@ -2172,8 +2173,8 @@ public class View implements HotkeyListener {
 					private void clearSearchLists() {
 						TwoWayCommand.setIndexType(TwoWayCommand.SHOWN);
 						taskPendingList.setItems(model.getPendingList());
-						taskCompleteList.setItems(model.getCompleteList());
-						taskTrashList.setItems(model.getTrashList());
+						taskCompleteList.setItems(model.getList(Common.COMPLETE_TAB));
+						taskTrashList.setItems(model.getList(Common.TRASH_TAB));
 					}
 				});
 	}